@@ -0,0 +1,67 @@
+package nava.polak.onik;
+
+import nava.polak.onik.model.ResultsPerType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Find the similar sentences of a whole file. Each run is measured once.
+ * The input files are generated into the temp directory on the first run, and reused by the next runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class EndToEndBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public long lines;
+
+    @Param({"PAIRWISE", "SIGNATURE", "SHARDED"})
+    public String index;
+
+    @Param({"LINES", "MAPPED"})
+    public String reader;
+
+    private Path inputPath;
+    private RunOptions options;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        inputPath = Paths.get(System.getProperty("java.io.tmpdir"), "similarity-benchmark-" + lines + ".txt");
+        if (!Files.exists(inputPath)) {
+            Path partial = Paths.get(inputPath + ".partial");
+            new SyntheticLogGenerator().writeFile(partial, lines);
+            Files.move(partial, inputPath);
+        }
+        options = new RunOptions();
+        options.set("index", index);
+        options.set("reader", reader);
+    }
+
+    @Benchmark
+    public HashMap<String, ResultsPerType> findSentensesWithSingleDifference() {
+        return new PatternSimilarity(inputPath.toString(), System.getProperty("java.io.tmpdir") + File.separator
+                + "similarity-benchmark-output.txt", options).findSentensesWithSingleDifference();
+    }
+}
@@ -0,0 +1,66 @@
+package nava.polak.onik;
+
+import nava.polak.onik.model.Record;
+import nava.polak.onik.parse.SentenceTemplate;
+import nava.polak.onik.parse.TemplateMatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index parsed records and find their matches. The time of a record depends on the records indexed before it,
+ * so each invocation indexes the same records from an empty index, and the time is reported per record.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HandleRecordBenchmark {
+
+    private static final int RECORDS = 100_000;
+
+    @Param({"PAIRWISE", "SIGNATURE"})
+    public String index;
+
+    private Record[] records;
+    private RunOptions options;
+
+    @Setup
+    public void setup() {
+        options = new RunOptions();
+        options.set("index", index);
+        //the records are parsed once, their ids are kept by the dictionary of this instance
+        PatternSimilarity parser = new PatternSimilarity("", "");
+        TemplateMatch match = new SentenceTemplate(SentenceTemplate.DEFAULT).newMatch();
+        SyntheticLogGenerator generator = new SyntheticLogGenerator();
+        generator.set("malformedShare", "0");
+        List<Record> parsed = new ArrayList<>(RECORDS);
+        for (String line : generator.lines(RECORDS))
+            parsed.add(parser.parseRecord(line, -1, match));
+        records = parsed.toArray(new Record[0]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public PatternSimilarity handleRecords() {
+        PatternSimilarity patternSimilarity = new PatternSimilarity("", "", options);
+        for (Record record : records)
+            patternSimilarity.handleRecord(record);
+        return patternSimilarity;
+    }
+}
@@ -0,0 +1,56 @@
+package nava.polak.onik;
+
+import nava.polak.onik.model.Record;
+import nava.polak.onik.parse.SentenceTemplate;
+import nava.polak.onik.parse.TemplateMatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse a line into a record: match the template and map the words into ids
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+    private static final int LINES = 100_000;
+
+    @Param({"0.01"})
+    public String malformedShare;
+
+    private String[] lines;
+    private PatternSimilarity patternSimilarity;
+    private TemplateMatch match;
+    private int next;
+
+    @Setup
+    public void setup() {
+        SyntheticLogGenerator generator = new SyntheticLogGenerator();
+        generator.set("malformedShare", malformedShare);
+        lines = generator.lines(LINES).toArray(new String[0]);
+        patternSimilarity = new PatternSimilarity("", "");
+        match = new SentenceTemplate(SentenceTemplate.DEFAULT).newMatch();
+    }
+
+    @Benchmark
+    public Record parseRecord() {
+        String line = lines[next];
+        next = next + 1 == LINES ? 0 : next + 1;
+        return patternSimilarity.parseRecord(line, -1, match);
+    }
+}
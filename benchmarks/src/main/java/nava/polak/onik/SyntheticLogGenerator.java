@@ -0,0 +1,182 @@
+package nava.polak.onik;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generate sentences in the format: [date time] [name] is [action] [rest].
+ * The names, actions and rest words are drawn from Zipfian distributions, so few of them are very common
+ * and many sentences are similar, like in real logs. A share of the lines is malformed.
+ * The settings are given in format --[name]=[value], see set().
+ */
+public class SyntheticLogGenerator {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    private long seed = 1;
+    private int names = 1_000;
+    private int actions = 100;
+    private int vocabulary = 10_000;
+
+    /**
+     * The exponent of the Zipfian distributions. Higher is more skewed, 0 is uniform
+     */
+    private double zipfExponent = 1.0;
+    private int minRestWords = 1;
+    private int maxRestWords = 8;
+
+    /**
+     * The share of the lines which do not match the format
+     */
+    private double malformedShare = 0.01;
+
+    private Random random;
+    private ZipfSampler nameSampler;
+    private ZipfSampler actionSampler;
+    private ZipfSampler wordSampler;
+    private LocalDateTime time = LocalDateTime.of(2012, 1, 1, 0, 0);
+
+    public void set(String name, String value) {
+        switch (name) {
+            case "seed":
+                seed = Long.parseLong(value);
+                break;
+            case "names":
+                names = Integer.parseInt(value);
+                break;
+            case "actions":
+                actions = Integer.parseInt(value);
+                break;
+            case "vocabulary":
+                vocabulary = Integer.parseInt(value);
+                break;
+            case "zipfExponent":
+                zipfExponent = Double.parseDouble(value);
+                break;
+            case "minRestWords":
+                minRestWords = Integer.parseInt(value);
+                break;
+            case "maxRestWords":
+                maxRestWords = Integer.parseInt(value);
+                break;
+            case "malformedShare":
+                malformedShare = Double.parseDouble(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown setting " + name);
+        }
+        random = null;
+    }
+
+    /**
+     * @return the next line. Lines are created with increasing time
+     */
+    public String nextLine() {
+        if (random == null)
+            start();
+        time = time.plusSeconds(random.nextInt(3));
+        StringBuilder line = new StringBuilder(64);
+        line.append(TIME_FORMAT.format(time)).append(' ');
+        if (random.nextDouble() < malformedShare)
+            return appendMalformed(line);
+
+        line.append("Name").append(nameSampler.next(random)).append(" is ")
+                .append("action").append(actionSampler.next(random)).append("ing");
+        int restWords = minRestWords + random.nextInt(maxRestWords - minRestWords + 1);
+        for (int i = 0; i < restWords; i++)
+            line.append(' ').append("word").append(wordSampler.next(random));
+        return line.toString();
+    }
+
+    public List<String> lines(int count) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            lines.add(nextLine());
+        return lines;
+    }
+
+    public void writeFile(Path path, long count) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (long i = 0; i < count; i++) {
+                out.write(nextLine());
+                out.write('\n');
+            }
+        }
+    }
+
+    private void start() {
+        random = new Random(seed);
+        nameSampler = new ZipfSampler(names, zipfExponent);
+        actionSampler = new ZipfSampler(actions, zipfExponent);
+        wordSampler = new ZipfSampler(vocabulary, zipfExponent);
+    }
+
+    /**
+     * lines which are wrong in different ways: plural sentence, missing action or bad time
+     */
+    private String appendMalformed(StringBuilder line) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return line.append("Name").append(nameSampler.next(random)).append(" and Name")
+                        .append(nameSampler.next(random)).append(" are action").append(actionSampler.next(random))
+                        .append("ing word").append(wordSampler.next(random)).toString();
+            case 1:
+                return line.append("Name").append(nameSampler.next(random)).append(" is").toString();
+            default:
+                return "99-99-99 " + line.substring(11) + "Name" + nameSampler.next(random) + " is action"
+                        + actionSampler.next(random) + "ing word" + wordSampler.next(random);
+        }
+    }
+
+    /**
+     * Draw 0..n-1 where the probability of k is proportional to 1/(k+1)^exponent
+     */
+    private static class ZipfSampler {
+        private final double[] cumulative;
+
+        private ZipfSampler(int n, double exponent) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += 1 / Math.pow(k + 1, exponent);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < n; k++)
+                cumulative[k] /= sum;
+        }
+
+        private int next(Random random) {
+            int found = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(found >= 0 ? found : -found - 1, cumulative.length - 1);
+        }
+    }
+
+    /**
+     * Usage: SyntheticLogGenerator [output file path] [line count] [--name=value ...]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: SyntheticLogGenerator [output file path] [line count] [--seed=n] [--names=n] [--actions=n] "
+                    + "[--vocabulary=n] [--zipfExponent=x] [--minRestWords=n] [--maxRestWords=n] [--malformedShare=x]");
+            System.exit(-1);
+        }
+        SyntheticLogGenerator generator = new SyntheticLogGenerator();
+        for (int i = 2; i < args.length; i++) {
+            int sep = args[i].indexOf('=');
+            if (!args[i].startsWith("--") || sep < 0)
+                throw new IllegalArgumentException("Setting should be in format --[name]=[value]: " + args[i]);
+            generator.set(args[i].substring(2, sep), args[i].substring(sep + 1));
+        }
+        generator.writeFile(Paths.get(args[0]), Long.parseLong(args[1]));
+    }
+}
@@ -0,0 +1,68 @@
+package nava.polak.onik;
+
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.TokenDictionary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compare the rest of 2 sentences with the same number of words.
+ * Half of the pairs differ in a single word and half in 2 words, at random positions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WordDifferenceBenchmark {
+
+    private static final int PAIRS = 1024;
+
+    @Param({"4", "16"})
+    public int restWords;
+
+    private Record[] first;
+    private Record[] second;
+    private PatternSimilarity patternSimilarity;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        TokenDictionary dictionary = new TokenDictionary();
+        first = new Record[PAIRS];
+        second = new Record[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            String[] words = new String[restWords];
+            for (int w = 0; w < restWords; w++)
+                words[w] = "word" + random.nextInt(1000);
+            first[i] = new Record("01-01-2012 00:00:00", "Name", "acting", String.join(" ", words), dictionary);
+            int differences = 1 + (i & 1);
+            for (int d = 0; d < differences; d++)
+                words[random.nextInt(restWords)] = "other" + d;
+            second[i] = new Record("01-01-2012 00:00:00", "Name", "acting", String.join(" ", words), dictionary);
+        }
+        patternSimilarity = new PatternSimilarity("", "");
+    }
+
+    @Benchmark
+    public boolean is1wordDifferent() {
+        int i = next;
+        next = (next + 1) & (PAIRS - 1);
+        return patternSimilarity.is1wordDifferent(first[i], second[i], PatternType.REST);
+    }
+}
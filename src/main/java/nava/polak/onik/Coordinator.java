@@ -0,0 +1,249 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.ResultsPerType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Find the groups in several local worker JVMs, each with the index of a part of the input.
+ * Each sentence is written into the partition file of the worker of each of its 3 group keys, by the hash of the key,
+ * so a worker has all the sentences of the groups it owns. The workers run PatternSimilarity on their partition
+ * and write the groups they own with the indexes of their sentences in the whole input, which are merged by the key.
+ * The workers get and return only files in the work directory, so it can be on a shared file system.
+ */
+@Slf4j
+public class Coordinator implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path workDir;
+    private final int workers;
+    private final List<String> workerOptions;
+    private final String workerHeap;
+
+    private final OutputStream[] lines;
+    private final DataOutputStream[] indexes;
+    private boolean partitionsClosed;
+
+    /**
+     * @param workerOptions the options of the workers, in format --[name]=[value]
+     * @param workerHeap the max heap of each worker JVM, e.g. 2g, or null for the default
+     */
+    public Coordinator(Path workDir, int workers, List<String> workerOptions, String workerHeap) throws IOException {
+        if (workers <= 0)
+            throw new IllegalArgumentException("The number of workers should be positive, got " + workers);
+        this.workDir = workDir;
+        this.workers = workers;
+        this.workerOptions = workerOptions;
+        this.workerHeap = workerHeap;
+        lines = new OutputStream[workers];
+        indexes = new DataOutputStream[workers];
+        for (int i = 0; i < workers; i++) {
+            lines[i] = new BufferedOutputStream(Files.newOutputStream(linesFile(i)), BUFFER_SIZE);
+            indexes[i] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexesFile(i)), BUFFER_SIZE));
+        }
+    }
+
+    /**
+     * @return the worker owning the group of the record of the type
+     */
+    public static int workerOf(Record record, PatternType type, int workers) {
+        //the hash of a string is the same in all the JVMs
+        return Math.floorMod(31 * type.ordinal() + record.constructKeyStrAccordingType(type).hashCode(), workers);
+    }
+
+    /**
+     * write the sentence into the partitions of the workers of its group keys
+     * @param line the line of the sentence in the input, trimmed as the template parser trims it (see OffsetRecordStore.getLine)
+     * @param index the index of the sentence in the input
+     */
+    public void add(Record record, ByteBuffer line, int index) throws IOException {
+        PatternType[] types = PatternType.values();
+        int[] owners = new int[types.length];
+        for (int t = 0; t < types.length; t++) {
+            int worker = workerOf(record, types[t], workers);
+            owners[t] = worker;
+            //a worker of several keys gets the sentence once
+            if (ownedBefore(owners, t))
+                continue;
+            ByteBuffer bytes = line.duplicate();
+            if (bytes.hasArray()) {
+                lines[worker].write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            } else {
+                byte[] copy = new byte[bytes.remaining()];
+                bytes.get(copy);
+                lines[worker].write(copy);
+            }
+            lines[worker].write('\n');
+            indexes[worker].writeInt(index);
+        }
+    }
+
+    private static boolean ownedBefore(int[] owners, int t) {
+        for (int i = 0; i < t; i++) {
+            if (owners[i] == owners[t])
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * run the workers on their partitions, and wait until all of them end
+     */
+    public void runWorkers() throws IOException {
+        closePartitions();
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (int i = 0; i < workers; i++) {
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                if (workerHeap != null)
+                    command.add("-Xmx" + workerHeap);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(Worker.class.getName());
+                command.add(linesFile(i).toString());
+                command.add(indexesFile(i).toString());
+                command.add(resultsFile(i).toString());
+                command.add(String.valueOf(i));
+                command.add(String.valueOf(workers));
+                command.addAll(workerOptions);
+                processes.add(new ProcessBuilder(command)
+                        .redirectErrorStream(true)
+                        .redirectOutput(logFile(i).toFile())
+                        .start());
+            }
+            for (int i = 0; i < workers; i++) {
+                int exitCode = processes.get(i).waitFor();
+                if (exitCode != 0)
+                    throw new IOException("Worker " + i + " failed with exit code " + exitCode + ":\n" + tail(logFile(i)));
+            }
+            log.debug("The " + workers + " workers ended");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the workers", e);
+        } finally {
+            processes.forEach(Process::destroy);
+        }
+    }
+
+    /**
+     * add the groups of the workers into the results, by the key of their type and identical parts. A group is owned
+     * by a single worker, so the groups of the workers have different keys
+     */
+    public void mergeResults(Map<String, ResultsPerType> keyToResults) throws IOException {
+        for (int i = 0; i < workers; i++) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(resultsFile(i)), BUFFER_SIZE))) {
+                int groupCount = in.readInt();
+                for (int group = 0; group < groupCount; group++) {
+                    PatternType type = PatternType.values()[in.readByte()];
+                    String key = in.readUTF();
+                    ResultsPerType results = new ResultsPerType(type);
+                    int size = in.readInt();
+                    for (int j = 0; j < size; j++)
+                        results.addRecord(in.readInt());
+                    ResultsPerType existing = keyToResults.get(key);
+                    if (existing == null)
+                        keyToResults.put(key, results);
+                    else
+                        existing.addRecords(results);
+                }
+            }
+        }
+    }
+
+    /**
+     * write the groups found by a worker, with the indexes of their sentences in the whole input
+     * @param globalIndexes the index in the input of each sentence of the worker
+     */
+    static void writeResults(Path path, List<Map.Entry<String, ResultsPerType>> groups, int[] globalIndexes) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE))) {
+            out.writeInt(groups.size());
+            for (Map.Entry<String, ResultsPerType> group : groups) {
+                ResultsPerType results = group.getValue();
+                out.writeByte(results.getType().ordinal());
+                out.writeUTF(group.getKey());
+                out.writeInt(results.size());
+                for (int i = 0; i < results.size(); i++)
+                    out.writeInt(globalIndexes[results.getRecord(i)]);
+            }
+        }
+    }
+
+    static int[] readIndexes(Path path) throws IOException {
+        int[] globalIndexes = new int[(int) (Files.size(path) / Integer.BYTES)];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))) {
+            for (int i = 0; i < globalIndexes.length; i++)
+                globalIndexes[i] = in.readInt();
+        }
+        return globalIndexes;
+    }
+
+    private void closePartitions() throws IOException {
+        if (partitionsClosed)
+            return;
+        partitionsClosed = true;
+        for (int i = 0; i < workers; i++) {
+            lines[i].close();
+            indexes[i].close();
+        }
+    }
+
+    private static String tail(Path log) {
+        try {
+            List<String> logLines = Files.readAllLines(log, StandardCharsets.UTF_8);
+            return String.join("\n", logLines.subList(Math.max(0, logLines.size() - 20), logLines.size()));
+        } catch (IOException e) {
+            return "(the log " + log + " could not be read: " + e.getMessage() + ")";
+        }
+    }
+
+    private Path linesFile(int worker) {
+        return workDir.resolve("part-" + worker + ".txt");
+    }
+
+    private Path indexesFile(int worker) {
+        return workDir.resolve("part-" + worker + ".idx");
+    }
+
+    private Path resultsFile(int worker) {
+        return workDir.resolve("groups-" + worker + ".bin");
+    }
+
+    private Path logFile(int worker) {
+        return workDir.resolve("worker-" + worker + ".log");
+    }
+
+    /**
+     * delete the files of the workers
+     */
+    @Override
+    public void close() throws IOException {
+        closePartitions();
+        try (Stream<Path> files = Files.walk(workDir)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                Files.deleteIfExists(path);
+        }
+    }
+}
@@ -3,21 +3,62 @@ package nava.polak.onik;
 import com.google.common.annotations.VisibleForTesting;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
-import nava.polak.onik.model.KeyToSetMap;
+import nava.polak.onik.external.ExternalEngine;
+import nava.polak.onik.index.GroupTable;
+import nava.polak.onik.index.IntPostingList;
+import nava.polak.onik.io.ChunkParser;
+import nava.polak.onik.io.InputFiles;
+import nava.polak.onik.io.LinePipeline;
+import nava.polak.onik.io.MappedChunkReader;
+import nava.polak.onik.io.MultiFileReader;
+import nava.polak.onik.io.OffsetRecordStore;
+import nava.polak.onik.metrics.Metrics;
+import nava.polak.onik.metrics.Phase;
+import nava.polak.onik.metrics.Stage;
+import nava.polak.onik.index.LshIndex;
+import nava.polak.onik.index.PartitionPostings;
+import nava.polak.onik.index.ShardedEngine;
+import nava.polak.onik.index.SignatureIndex;
+import nava.polak.onik.index.TopKGroups;
+import nava.polak.onik.model.DedupRecordStore;
+import nava.polak.onik.model.IndexMode;
+import nava.polak.onik.model.LogTime;
+import nava.polak.onik.model.OutputFormat;
+import nava.polak.onik.model.PartitionedRecordStore;
 import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.ReaderMode;
 import nava.polak.onik.model.Record;
+import nava.polak.onik.model.RecordBatch;
+import nava.polak.onik.model.RecordStore;
 import nava.polak.onik.model.ResultsPerType;
+import nava.polak.onik.model.SentenceStore;
+import nava.polak.onik.model.StoreMode;
+import nava.polak.onik.model.TimePartition;
+import nava.polak.onik.model.TokenDictionary;
+import nava.polak.onik.output.ResultWriter;
+import nava.polak.onik.parse.LineFormat;
+import nava.polak.onik.parse.SentenceTemplate;
+import nava.polak.onik.parse.TemplateMatch;
+import nava.polak.onik.parse.TemplateRouter;
+import nava.polak.onik.snapshot.IndexSnapshot;
+import nava.polak.onik.snapshot.InputPosition;
+import nava.polak.onik.stream.FileTailer;
+import nava.polak.onik.stream.TimeWindow;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
 
 /**
  * This class finds the similarity between sentences and aggregate the results.
@@ -32,18 +73,70 @@ import java.util.stream.Stream;
 public class PatternSimilarity {
 
     /**
-     * regular expression to match with each sentence
+     * template to match with each sentence
      */
-    private static final String patternStr = "(\\d\\d-\\d\\d-\\d\\d\\d\\d \\d\\d:\\d\\d:\\d\\d) ([^\\s]+) is ([^\\s]+) (.*)";
+    private final SentenceTemplate template;
 
-    private final Pattern pattern;
+    /**
+     * offsets of the fields in the current sentence, and the index of each field
+     */
+    private final TemplateMatch match;
+    private final int logField;
+    private final int nameField;
+    private final int actionField;
+    private final int restField;
+
+    /**
+     * the layout of the lines of the template, to write the records back
+     */
+    private final LineFormat lineFormat;
     private final String outputFilePath;
     private final String inputFilePath;
+    private final RunOptions options;
+
+    /**
+     * Counters and timers of the run. Disabled unless asked in the options
+     */
+    @Getter
+    private final Metrics metrics;
+
+    /**
+     * Sentences out of the window are removed from the index in batches of at least this size
+     */
+    private static final int MIN_EVICTION = 4096;
+
+    /**
+     * Store all sentences read from file. With StoreMode.OFFSETS only their offsets are kept
+     */
+    private final SentenceStore sentences;
+
+    /**
+     * The sentences by their time partition, when partitioned by RunOptions.getTimePartition(). Otherwise null
+     */
+    private final PartitionedRecordStore partitionedSentences;
+
+    /**
+     * The sentences where identical sentences are kept once, when RunOptions.isDedup(). Otherwise null
+     */
+    private final DedupRecordStore dedupSentences;
+
+    /**
+     * Parse the log field of the sentences into their time
+     */
+    private final LogTime logTime;
+
+    /**
+     * With ReaderMode.TAIL, the time of the sentences, and the index of the first sentence in the window.
+     * Sentences before the window are ignored, and removed from the index in batches
+     */
+    private TimeWindow timeWindow;
+    private int windowStart;
+    private volatile boolean tailStopped;
 
     /**
-     * Store all sentences read from file
+     * Store the id of each distinct word in the sentences
      */
-    private List<Record> sentences = new ArrayList<>();
+    private final TokenDictionary dictionary = new TokenDictionary();
 
     /**
      * Store sentences not according expected pattern
@@ -52,19 +145,22 @@ public class PatternSimilarity {
     private final List<String> sentencesNotAccordingPattern = new ArrayList<>();
 
     /**
-     * Store all the names in sentences mapped to the index in sentences array
+     * Store all the names, actions and rests in sentences mapped to the index in sentences array.
+     * When the sentences are partitioned by time there is one per partition, the oldest first
      */
-    private final KeyToSetMap<String,Integer> nameToIndexMap = new KeyToSetMap();
+    private final List<PartitionPostings> postings = new ArrayList<>();
 
     /**
-     * Store all the actions in sentences mapped to the index in sentences array
+     * Reused buffer for the intersection of 2 indexed parts, so no memory is allocated per record
      */
-    private final KeyToSetMap<String,Integer> actionToIndexMap = new KeyToSetMap();
+    private int[] intersection = new int[16];
 
     /**
-     * Store all the rest in sentences mapped to the index in sentences array
+     * store the groups of similar sentences while indexing
+     * The key of a group is the ids of the 2 parts which are identical.
+     * Each group has the sentence indexes in sentences array where this combination exists.
      */
-    private final KeyToSetMap<String,Integer> restToIndexMap = new KeyToSetMap();
+    private final GroupTable groups = new GroupTable();
 
     /**
      * store the reults of similar sentences
@@ -73,27 +169,151 @@ public class PatternSimilarity {
      */
     HashMap<String, ResultsPerType> keyToResults  = new HashMap<>();
 
+    /**
+     * Store the signatures of the sentences when running with IndexMode.SIGNATURE
+     */
+    private final SignatureIndex signatureIndex = new SignatureIndex(groups);
+
+    /**
+     * Find the rests which differ by up to some words when running with IndexMode.APPROXIMATE
+     */
+    private LshIndex lshIndex;
+
+    /**
+     * Index and match the sentences on several threads when running with IndexMode.SHARDED
+     */
+    private ShardedEngine shardedEngine;
+
+    /**
+     * Count the sentences of the group keys when running with --topK, instead of keeping the sentences
+     */
+    private TopKGroups topKGroups;
+
+    /**
+     * The largest groups of each type, when running with --topK
+     */
+    private List<TopKGroups.TopGroup> topGroups;
+
+    /**
+     * The files of the input path, which may be a directory or a glob of files
+     */
+    private List<Path> inputFiles;
+
+    /**
+     * The offset in the input to read from. The lines before it are in the loaded snapshot
+     */
+    private long inputOffset;
+
+    /**
+     * The results written by IndexMode.EXTERNAL, moved into the output file when printed
+     */
+    private Path externalResults;
+
+    /**
+     * The index and results of each of the other templates in RunOptions.getMoreTemplates().
+     * The lines are read once and routed by the router to the first template they match.
+     * With a single template there is no router and the lines are parsed by the template
+     */
+    private final List<PatternSimilarity> otherTemplates = new ArrayList<>();
+    private final TemplateRouter router;
+    private final TemplateMatch[] routeMatches;
 
 
 
     public PatternSimilarity(String inputFilePath, String outputFilePath) {
+        this(inputFilePath, outputFilePath, new RunOptions());
+    }
+
+    public PatternSimilarity(String inputFilePath, String outputFilePath, RunOptions options) {
+        this(inputFilePath, outputFilePath, options, null);
+    }
+
+    /**
+     * @param metrics shared with the other templates, or null to create by the options
+     */
+    private PatternSimilarity(String inputFilePath, String outputFilePath, RunOptions options, Metrics metrics) {
         this.inputFilePath = inputFilePath;
         this.outputFilePath = outputFilePath;
-        this.pattern = Pattern.compile(patternStr);
+        this.options = options;
+        this.template = new SentenceTemplate(options.getTemplate());
+        this.match = template.newMatch();
+        this.logField = template.fieldIndex("log");
+        this.nameField = template.fieldIndex("name");
+        this.actionField = template.fieldIndex("action");
+        this.restField = template.fieldIndex("rest");
+        this.lineFormat = template.getLineFormat();
+        if(metrics == null)
+            metrics = options.isMetrics() || options.getMetricsFile() != null ? new Metrics(true) : Metrics.DISABLED;
+        this.metrics = metrics;
+        //the records are parsed again when the results are collected and written, on the writer thread too
+        ThreadLocal<TemplateMatch> storeMatch = ThreadLocal.withInitial(template::newMatch);
+        this.logTime = new LogTime(options.getTimeFormat());
+        //the coordinator of workers keeps only the offsets of the sentences, the workers index them
+        boolean coordinator = options.getWorkers() > 0;
+        this.partitionedSentences = options.getTimePartition() != TimePartition.NONE && options.getStoreMode() == StoreMode.RECORDS && !coordinator
+                ? new PartitionedRecordStore(options.getTimePartition()) : null;
+        this.dedupSentences = options.isDedup() && options.getStoreMode() == StoreMode.RECORDS && partitionedSentences == null && !coordinator
+                ? new DedupRecordStore() : null;
+        if(options.getStoreMode() == StoreMode.OFFSETS || coordinator)
+            this.sentences = new OffsetRecordStore(Paths.get(inputFilePath), (line, offset) -> parseRecord(line, offset, storeMatch.get()));
+        else if(partitionedSentences != null)
+            this.sentences = partitionedSentences;
+        else
+            this.sentences = dedupSentences != null ? dedupSentences : new RecordStore();
+        postings.add(new PartitionPostings(0));
+
+        List<SentenceTemplate> templates = new ArrayList<>();
+        templates.add(template);
+        for(int i = 0; i < options.getMoreTemplates().size(); i++){
+            RunOptions templateOptions = new RunOptions();
+            templateOptions.setIndexMode(options.getIndexMode());
+            templateOptions.setStoreMode(options.getStoreMode());
+            templateOptions.setOutputFormat(options.getOutputFormat());
+            templateOptions.setShards(options.getShards());
+            templateOptions.setMaxDistance(options.getMaxDistance());
+            templateOptions.setLshBands(options.getLshBands());
+            templateOptions.setLshRows(options.getLshRows());
+            templateOptions.setShingleSize(options.getShingleSize());
+            templateOptions.setTimeFormat(options.getTimeFormat());
+            templateOptions.setTimePartition(options.getTimePartition());
+            templateOptions.setDedup(options.isDedup());
+            templateOptions.setTopK(options.getTopK());
+            templateOptions.setTemplate(options.getMoreTemplates().get(i));
+            PatternSimilarity other = new PatternSimilarity(inputFilePath, outputFilePath + "." + (i + 1), templateOptions, metrics);
+            otherTemplates.add(other);
+            templates.add(other.template);
+        }
+        this.router = otherTemplates.isEmpty() ? null : new TemplateRouter(templates);
+        this.routeMatches = router == null ? null : router.newMatches();
     }
 
     public void printResults(){
 
-        try (BufferedWriter bf = new BufferedWriter(new FileWriter(outputFilePath))) {
-            keyToResults.values().stream().forEach(v->{
-                try {
-                    bf.write( v.getRecordsStr(sentences));
-                    bf.newLine();
-                    bf.flush();
-                } catch (IOException e) {
-                   log.error("Got error while writing record",e);
-                }
+        long writeStart = metrics.start();
+        if(externalResults != null)
+            moveExternalResults();
+        else if(topGroups != null)
+            writeTopGroups();
+        else
+            writeResults();
+        metrics.stop(Phase.WRITE, writeStart);
+        otherTemplates.forEach(PatternSimilarity::printResults);
 
+        //print all sentences which  are not according the template
+        if(!sentencesNotAccordingPattern.isEmpty()){
+            StringBuilder message = new StringBuilder("The following sentences could not be parsed according pattern " + template.getTemplate() + ":");
+            sentencesNotAccordingPattern.stream().forEach(s->message.append(s).append("\n"));
+            String messageStr = message.toString();
+            log.error(messageStr);
+            System.out.println(messageStr);
+        }
+    }
+
+    private void writeResults() {
+        try (ResultWriter writer = new ResultWriter(Paths.get(outputFilePath), options.getOutputFormat(), sentences, lineFormat)) {
+            keyToResults.forEach((key, results) -> {
+                writer.write(key, results);
+                metrics.recordQueueDepth(Stage.WRITE, writer.getQueueDepth());
             });
 
             if(keyToResults.isEmpty())
@@ -104,88 +324,906 @@ public class PatternSimilarity {
         }catch(Exception e){
             throw new RuntimeException("Got error while writing results into file",e);
         }
+    }
 
-        //print all sentences which  are not according the template
-        if(!sentencesNotAccordingPattern.isEmpty()){
-            StringBuilder message = new StringBuilder("The following sentences could not be parsed according pattern " + patternStr + ":");
-            sentencesNotAccordingPattern.stream().forEach(s->message.append(s).append("\n"));
-            String messageStr = message.toString();
-            log.error(messageStr);
-            System.out.println(messageStr);
+    /**
+     * write the largest groups of each type, the largest first. Each group has its size, and the first sentence of
+     * each of its changing parts with the number of sentences having this part
+     */
+    private void writeTopGroups() {
+        try (BufferedWriter bf = new BufferedWriter(new FileWriter(outputFilePath))) {
+            for(TopKGroups.TopGroup group : topGroups){
+                bf.write("Group of " + group.getSize() + " sentences");
+                if(group.getError() > 0)
+                    bf.write(" (up to " + group.getError() + " more)");
+                bf.write(":\n");
+                StringBuilder changedParamStr = new StringBuilder("The changing word was: ");
+                for(int i = 0; i < group.getSentences().size(); i++){
+                    Record record = group.getSentences().get(i);
+                    bf.write(lineFormat.format(record) + " (x" + group.getCounts().get(i) + ")\n");
+                    changedParamStr.append(record.getWordAccorfingType(group.getKey().getType())).append(" , ");
+                }
+                bf.write(changedParamStr.substring(0, changedParamStr.length() - 3) + "\n");
+            }
+            if(topGroups.isEmpty())
+                log.warn("No match was found");
+            else
+                log.debug("The largest " + options.getTopK() + " groups of each type written into " + outputFilePath);
+        }catch(IOException e){
+            throw new RuntimeException("Got error while writing results into file",e);
         }
     }
 
     public void findSentencesSingleDifferenceAndPrint(){
+        if(options.getReaderMode() == ReaderMode.TAIL){
+            tail();
+            return;
+        }
         findSentensesWithSingleDifference();
         printResults();
+        writeMetrics();
+    }
+
+    /**
+     * write the metrics as json into the metrics file, or into the log when there is no file
+     */
+    private void writeMetrics() {
+        if(!metrics.isEnabled())
+            return;
+        metrics.endRun();
+        String json = metrics.toJson();
+        if(options.getMetricsFile() == null){
+            log.info("Metrics: " + json);
+            return;
+        }
+        try {
+            Files.write(Paths.get(options.getMetricsFile()), json.getBytes(StandardCharsets.UTF_8));
+            log.debug("Metrics written into " + options.getMetricsFile());
+        } catch (IOException e) {
+            log.error("Failed writing the metrics into " + options.getMetricsFile(), e);
+        }
+    }
+
+    private void startMetrics() {
+        if(!metrics.isEnabled())
+            return;
+        metrics.register(inputFilePath);
+        metrics.startRun();
     }
 
 
+    /**
+     * find the groups of sentences with single difference
+     * @return the groups by the key of their identical parts. With IndexMode.EXTERNAL the groups are not kept
+     * in memory and the map is empty - they are written into the output file by printResults
+     */
     @VisibleForTesting
     public HashMap<String, ResultsPerType> findSentensesWithSingleDifference(){
         //make sure the file contains any sentence
         final AtomicBoolean atLeast1Sentence = new AtomicBoolean(false);
         log.debug("Processing sentences from " + inputFilePath);
+        startMetrics();
+        resolveInput();
+        if(options.getWorkers() > 0){
+            findWithWorkers();
+            return keyToResults;
+        }
+        if(isExternal()){
+            findExternal();
+            return keyToResults;
+        }
+        if(router != null && options.getSnapshot() != null)
+            throw new IllegalArgumentException("Snapshot supports only a single template");
+        if(partitionedSentences != null && options.getSnapshot() != null)
+            throw new IllegalArgumentException("Snapshot does not support time partitions");
+        if(dedupSentences != null && options.getSnapshot() != null)
+            throw new IllegalArgumentException("Snapshot does not support dedup");
+        if(options.getTopK() > 0 && options.getSnapshot() != null)
+            throw new IllegalArgumentException("Snapshot does not support top-K mode");
+        startIndex();
+        otherTemplates.forEach(PatternSimilarity::startIndex);
+        if(options.getSnapshot() != null)
+            loadSnapshot();
         //go over sentences from file
-        try (Stream<String> stream = Files.lines(Paths.get(inputFilePath)) ) {
-            stream.forEach(s-> {
-                atLeast1Sentence.set(true);
-                Record currRecord = null;
-                try {
-                    //match to pattern and save the parts
-                    Matcher matcher = pattern.matcher(s.trim());
-                    if(matcher.find()) {
-                        currRecord = new Record(matcher.group(1),
-                                matcher.group(2),
-                                matcher.group(3),
-                                matcher.group(4)
-                        );
-                    }else{
-                        log.error("Failed in matching to pattern for " + s);
-                        sentencesNotAccordingPattern.add(s);
+        if(!InputFiles.isPlainFile(inputFiles))
+            readFiles(atLeast1Sentence);
+        else if(options.getReaderMode() == ReaderMode.MAPPED)
+            readMapped(atLeast1Sentence);
+        else
+            readLines(atLeast1Sentence);
+
+        if(!atLeast1Sentence.get() && inputOffset == 0)
+            log.warn("The input file is empty. No records exists");
+        else
+            log.debug("Finished processing sentences");
+
+        finishIndex();
+        otherTemplates.forEach(PatternSimilarity::finishIndex);
+        if(options.getSnapshot() != null)
+            saveSnapshot();
+        return keyToResults;
+    }
+
+    /**
+     * find the files of the input. Several files, or compressed files, are read as one input without offsets,
+     * so the modes which read the lines again by their offset are not supported
+     */
+    private void resolveInput() {
+        try {
+            inputFiles = InputFiles.resolve(inputFilePath);
+        } catch (IOException e) {
+            throw new RuntimeException("There was error during finding the input files: " + e.getMessage(),e);
+        }
+        if(InputFiles.isPlainFile(inputFiles))
+            return;
+        if(inputFiles.isEmpty())
+            throw new IllegalArgumentException("No input file matches " + inputFilePath);
+        if(options.getStoreMode() == StoreMode.OFFSETS)
+            throw new IllegalArgumentException("Offsets store supports only a single uncompressed input file");
+        if(options.getOutputFormat() != OutputFormat.TEXT)
+            throw new IllegalArgumentException("The " + options.getOutputFormat() + " output supports only a single uncompressed input file");
+        if(options.getSnapshot() != null)
+            throw new IllegalArgumentException("Snapshot supports only a single uncompressed input file");
+    }
+
+    private void startIndex() {
+        //the pairwise index compares each sentence with the stored sentences
+        if(options.getStoreMode() == StoreMode.OFFSETS && options.getIndexMode() == IndexMode.PAIRWISE)
+            throw new IllegalArgumentException("Offsets store does not support the pairwise index");
+        if(options.getStoreMode() == StoreMode.OFFSETS && options.getTimePartition() != TimePartition.NONE)
+            throw new IllegalArgumentException("Offsets store does not support time partitions");
+        if(options.isDedup() && dedupSentences == null)
+            throw new IllegalArgumentException("Dedup supports only the records store without time partitions");
+        if(options.getTopK() > 0){
+            //the sentences are counted, and only the sentences of the largest groups are kept
+            if(options.getStoreMode() != StoreMode.RECORDS || partitionedSentences != null || dedupSentences != null)
+                throw new IllegalArgumentException("Top-K mode supports only the records store without time partitions and dedup");
+            if(options.getOutputFormat() != OutputFormat.TEXT)
+                throw new IllegalArgumentException("Top-K mode supports only the text output, got " + options.getOutputFormat());
+            topKGroups = new TopKGroups(options.getTopK());
+            return;
+        }
+        if(options.getIndexMode() == IndexMode.SHARDED)
+            shardedEngine = new ShardedEngine(options.getShards());
+        if(options.getIndexMode() == IndexMode.APPROXIMATE)
+            lshIndex = new LshIndex(groups, options.getMaxDistance(), options.getLshBands(), options.getLshRows(), options.getShingleSize());
+    }
+
+    private void finishIndex() {
+        if(shardedEngine != null)
+            shardedEngine.finish(groups);
+        long collectStart = metrics.start();
+        if(topKGroups != null)
+            collectTopGroups();
+        else
+            collectResults();
+        metrics.stop(Phase.COLLECT, collectStart);
+    }
+
+    /**
+     * start an index which gets the records by handleRecord while running, and reports the groups they change.
+     * See takeChangedGroups
+     */
+    void startIngest() {
+        if(options.getIndexMode() == IndexMode.SHARDED || options.getIndexMode() == IndexMode.EXTERNAL)
+            throw new IllegalArgumentException("Ingesting supports the pairwise, signature and approximate indexes, got " + options.getIndexMode());
+        if(options.getStoreMode() != StoreMode.RECORDS)
+            throw new IllegalArgumentException("Ingesting supports only the records store, got " + options.getStoreMode());
+        if(router != null)
+            throw new IllegalArgumentException("Ingesting supports only a single template");
+        if(dedupSentences != null)
+            throw new IllegalArgumentException("Ingesting does not support dedup");
+        if(options.getTopK() > 0)
+            throw new IllegalArgumentException("Ingesting does not support top-K mode");
+        startMetrics();
+        startIndex();
+        groups.trackChanges();
+    }
+
+    /**
+     * @return the ids of the groups which got new sentences since the last call, see startIngest
+     */
+    int[] takeChangedGroups() {
+        return groups.takeChanged();
+    }
+
+    ResultsPerType getGroup(int groupId) {
+        return groups.getGroup(groupId);
+    }
+
+    int getGroupCount() {
+        return groups.size();
+    }
+
+    Record getSentence(int index) {
+        return sentences.get(index);
+    }
+
+    LineFormat getLineFormat() {
+        return lineFormat;
+    }
+
+    int getSentenceCount() {
+        return sentences.size();
+    }
+
+    /**
+     * @return match of the template, for parsing on other threads with parseRecord
+     */
+    TemplateMatch newMatch() {
+        return template.newMatch();
+    }
+
+    /**
+     * @return the results of each template, in the order of the templates. The first is the result of
+     * findSentensesWithSingleDifference
+     */
+    public List<HashMap<String, ResultsPerType>> getResultsPerTemplate() {
+        List<HashMap<String, ResultsPerType>> results = new ArrayList<>();
+        results.add(keyToResults);
+        otherTemplates.forEach(other -> results.add(other.keyToResults));
+        return results;
+    }
+
+    /**
+     * @return the largest groups of each type found with --topK, or null in the other modes
+     */
+    @VisibleForTesting
+    public List<TopKGroups.TopGroup> getTopGroups() {
+        return topGroups;
+    }
+
+    private IndexSnapshot snapshot() {
+        PartitionPostings all = postings.get(0);
+        return new IndexSnapshot(dictionary, sentences, all.getNameToIndexMap(), all.getActionToIndexMap(), all.getRestToIndexMap(), groups);
+    }
+
+    /**
+     * load the index of the snapshot if it exists. If the input starts with the input of the snapshot,
+     * only the lines after it are read. Otherwise all the lines of the input are added to the index
+     */
+    private void loadSnapshot() {
+        if(options.getIndexMode() != IndexMode.PAIRWISE)
+            throw new IllegalArgumentException("Snapshot supports only the pairwise index, got " + options.getIndexMode());
+        Path snapshotPath = Paths.get(options.getSnapshot());
+        if(!Files.exists(snapshotPath))
+            return;
+        try {
+            InputPosition position = snapshot().load(snapshotPath, template.getTemplate());
+            if(position.isContinuedBy(Paths.get(inputFilePath))){
+                inputOffset = position.getOffset();
+                log.debug("Reading " + inputFilePath + " from offset " + inputOffset + " after the snapshot");
+            } else {
+                log.debug(inputFilePath + " does not continue the input of the snapshot, all its lines are added");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("There was error during loading the snapshot " + snapshotPath + ": " + e.getMessage(),e);
+        }
+    }
+
+    /**
+     * save the index with the input read until its end, so the next run continues from it
+     */
+    private void saveSnapshot() {
+        Path inputPath = Paths.get(inputFilePath);
+        try {
+            snapshot().save(Paths.get(options.getSnapshot()), template.getTemplate(), InputPosition.of(inputPath, Files.size(inputPath)));
+        } catch (IOException e) {
+            throw new RuntimeException("There was error during saving the snapshot " + options.getSnapshot() + ": " + e.getMessage(),e);
+        }
+    }
+
+    /**
+     * find the groups in worker JVMs. The sentences are written into the partitions of the workers by their group keys,
+     * and only their offsets are kept here, so the groups of the workers are written from the input as with the offsets store
+     */
+    private void findWithWorkers() {
+        if(router != null)
+            throw new IllegalArgumentException("Workers mode supports only a single template");
+        if(!InputFiles.isPlainFile(inputFiles))
+            throw new IllegalArgumentException("Workers mode supports only a single uncompressed input file");
+        if(options.getSnapshot() != null)
+            throw new IllegalArgumentException("Snapshot does not support workers mode");
+        if(options.getTopK() > 0)
+            throw new IllegalArgumentException("Top-K mode does not support workers mode");
+        if(options.getIndexMode() == IndexMode.EXTERNAL)
+            throw new IllegalArgumentException("External mode does not support workers mode");
+        long workersStart = metrics.start();
+        AtomicBoolean atLeast1Sentence = new AtomicBoolean(false);
+        try {
+            Path workDir = Files.createTempDirectory(Paths.get(options.getSpillDir()), "workers");
+            try (Coordinator coordinator = new Coordinator(workDir, options.getWorkers(), workerOptions(), options.getWorkerHeap())) {
+                OffsetRecordStore lines = (OffsetRecordStore) sentences;
+                readLines(batch -> {
+                    if(batch.getLineCount() > 0)
+                        atLeast1Sentence.set(true);
+                    sentencesNotAccordingPattern.addAll(batch.getSentencesNotAccordingPattern());
+                    try {
+                        for(Record record : batch.getRecords()){
+                            sentences.add(record);
+                            coordinator.add(record, lines.getLine(sentences.size() - 1), sentences.size() - 1);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
-                } catch (Exception e) {
-                    log.error("Failed in matching to pattern for " + s + " " + e.getMessage());
-                    sentencesNotAccordingPattern.add(s);
+                });
+                if(!atLeast1Sentence.get())
+                    log.warn("The input file is empty. No records exists");
+                coordinator.runWorkers();
+                coordinator.mergeResults(keyToResults);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new RuntimeException("There was error during finding the groups in the workers: " + e.getMessage(),e);
+        }
+        metrics.stop(Phase.WORKERS, workersStart);
+    }
+
+    /**
+     * @return the options of the workers. The index of a worker is always in memory
+     */
+    private List<String> workerOptions() {
+        List<String> workerOptions = new ArrayList<>();
+        workerOptions.add("--index=" + options.getIndexMode().name().toLowerCase());
+        workerOptions.add("--template=" + options.getTemplate());
+        workerOptions.add("--timeFormat=" + options.getTimeFormat());
+        workerOptions.add("--partition=" + options.getTimePartition().name().toLowerCase());
+        workerOptions.add("--dedup=" + options.isDedup());
+        workerOptions.add("--maxDistance=" + options.getMaxDistance());
+        workerOptions.add("--lshBands=" + options.getLshBands());
+        workerOptions.add("--lshRows=" + options.getLshRows());
+        workerOptions.add("--shingleSize=" + options.getShingleSize());
+        workerOptions.add("--shards=" + options.getShards());
+        workerOptions.add("--threads=" + Math.max(1, options.getThreads() / options.getWorkers()));
+        workerOptions.add("--batchLines=" + options.getBatchLines());
+        workerOptions.add("--queueDepth=" + options.getQueueDepth());
+        workerOptions.add("--memoryBudget=" + Long.MAX_VALUE);
+        return workerOptions;
+    }
+
+    /**
+     * @return true if the index should be on disk, since it is estimated to be bigger than the memory budget
+     */
+    private boolean isExternal() {
+        //top-K mode counts the sentences in a fixed memory
+        if(options.getTopK() > 0){
+            if(options.getIndexMode() == IndexMode.EXTERNAL)
+                throw new IllegalArgumentException("External mode does not support top-K mode");
+            return false;
+        }
+        if(router != null){
+            if(options.getIndexMode() == IndexMode.EXTERNAL)
+                throw new IllegalArgumentException("External mode supports only a single template");
+            return false;
+        }
+        if(!InputFiles.isPlainFile(inputFiles)){
+            if(options.getIndexMode() == IndexMode.EXTERNAL)
+                throw new IllegalArgumentException("External mode supports only a single uncompressed input file");
+            return false;
+        }
+        if(options.getIndexMode() == IndexMode.EXTERNAL){
+            if(options.getSnapshot() != null)
+                throw new IllegalArgumentException("Snapshot does not support external mode");
+            return true;
+        }
+        //the snapshot is of the index in memory
+        if(options.getSnapshot() != null)
+            return false;
+        try {
+            if(!ExternalEngine.exceedsBudget(Paths.get(inputFilePath), options.getMemoryBudget()))
+                return false;
+        } catch (IOException e) {
+            throw new RuntimeException("There was error during reading the input from file: " + e.getMessage(),e);
+        }
+        //the external mode finds only the exact matches
+        if(options.getIndexMode() == IndexMode.APPROXIMATE)
+            throw new IllegalArgumentException("The index of " + inputFilePath + " is estimated to exceed the memory budget of "
+                    + options.getMemoryBudget() + " bytes, and external mode does not support the approximate index");
+        log.warn("The index of " + inputFilePath + " is estimated to exceed the memory budget of "
+                + options.getMemoryBudget() + " bytes. Switching to external mode");
+        return true;
+    }
+
+    /**
+     * find the groups with the signatures sorted on disk, and write them into a temporary file
+     */
+    private void findExternal() {
+        if(options.getOutputFormat() != OutputFormat.TEXT)
+            throw new IllegalArgumentException("External mode supports only the text output, got " + options.getOutputFormat());
+        if(options.isDedup())
+            log.warn("External mode does not keep the sentences in memory, ignoring dedup");
+        Path spillDir = Paths.get(options.getSpillDir());
+        ExternalEngine engine = new ExternalEngine(template, Paths.get(inputFilePath), spillDir,
+                options.getMemoryBudget(), options.getThreads());
+        try {
+            externalResults = Files.createTempFile(spillDir, "results", ".txt");
+            long externalStart = metrics.start();
+            long lines = engine.run(externalResults, sentencesNotAccordingPattern);
+            metrics.stop(Phase.EXTERNAL, externalStart);
+            metrics.countLines(lines, sentencesNotAccordingPattern.size());
+            if(lines == 0)
+                log.warn("The input file is empty. No records exists");
+            else
+                log.debug("Finished processing " + lines + " sentences");
+        } catch (IOException e) {
+            throw new RuntimeException("There was error during finding the sentences on disk: " + e.getMessage(),e);
+        }
+    }
+
+    private void moveExternalResults() {
+        try {
+            if(Files.size(externalResults) == 0)
+                log.warn("No match was found");
+            Files.move(externalResults, Paths.get(outputFilePath), StandardCopyOption.REPLACE_EXISTING);
+            externalResults = null;
+            log.debug("Sentence similarity written into  " + outputFilePath);
+        } catch (IOException e) {
+            throw new RuntimeException("Got error while writing results into file",e);
+        }
+    }
+
+    /**
+     * read the lines in a staged pipeline - a reader thread, the parser threads and the indexing on this thread,
+     * connected by bounded queues, so reading and parsing overlap the indexing
+     */
+    private void readLines(AtomicBoolean atLeast1Sentence) {
+        readLines(batch -> handleBatch(batch, atLeast1Sentence));
+    }
+
+    /**
+     * @param consumer get the parsed batches in the order of the lines
+     */
+    private void readLines(Consumer<RecordBatch> consumer) {
+        //each parsing thread needs its own match offsets
+        ThreadLocal<TemplateMatch> threadMatch = ThreadLocal.withInitial(template::newMatch);
+        ThreadLocal<TemplateMatch[]> threadRouteMatches = ThreadLocal.withInitial(() -> router == null ? null : router.newMatches());
+        try {
+            LinePipeline pipeline = new LinePipeline(Paths.get(inputFilePath), inputOffset, options.getThreads(),
+                    options.getBatchLines(), options.getQueueDepth(), metrics);
+            long lines = pipeline.read(new ChunkParser<RecordBatch>() {
+                @Override
+                public RecordBatch newBatch() {
+                    return new RecordBatch();
                 }
-                if(currRecord != null)
-                    //analyze each record against indexed data
-                    handleRecord(currRecord);
 
+                @Override
+                public void parseLine(RecordBatch batch, CharSequence line, long offset) {
+                    if(!parseInto(batch, line, offset, threadMatch.get(), threadRouteMatches.get()))
+                        batch.getSentencesNotAccordingPattern().add(line.toString());
+                }
+            }, batch -> {
+                batch.getSentencesNotAccordingPattern().forEach(s -> log.error("Failed in matching to pattern for " + s + ". " + diagnose(s)));
+                consumer.accept(batch);
             });
-
+            log.debug("Read " + lines + " lines");
         } catch (IOException e) {
            throw new RuntimeException("There was error during reading the input from file: " + e.getMessage(),e);
         }
+    }
 
-        if(!atLeast1Sentence.get())
-            log.warn("The input file is empty. No records exists");
-        else
-            log.debug("Finished processing sentences");
+    private void handleLine(String s, long offset) {
+        Record currRecord = null;
+        int templateIndex = 0;
+        long parseStart = metrics.start();
+        try {
+            //match to pattern and save the parts
+            if(router == null)
+                currRecord = parseRecord(s, offset, match);
+            else{
+                templateIndex = router.route(s, routeMatches);
+                if(templateIndex >= 0)
+                    currRecord = getTemplate(templateIndex).toRecord(routeMatches[templateIndex], offset);
+            }
+            if(currRecord == null){
+                log.error("Failed in matching to pattern for " + s + ". " + diagnose(s));
+                sentencesNotAccordingPattern.add(s);
+            }
+        } catch (Exception e) {
+            log.error("Failed in matching to pattern for " + s + " " + e.getMessage());
+            sentencesNotAccordingPattern.add(s);
+        }
+        metrics.stop(Phase.PARSE, parseStart);
+        metrics.countLine(currRecord == null);
+        if(currRecord != null)
+            //analyze each record against indexed data
+            getTemplate(templateIndex).handleRecord(currRecord);
+    }
 
-        return keyToResults;
+    /**
+     * @return the engine of the template in this index of the router
+     */
+    private PatternSimilarity getTemplate(int templateIndex) {
+        return templateIndex == 0 ? this : otherTemplates.get(templateIndex - 1);
+    }
+
+    private String diagnose(CharSequence line) {
+        if(router != null)
+            return "The line does not match any of the " + (otherTemplates.size() + 1) + " templates";
+        return template.diagnose(line);
+    }
+
+    /**
+     * follow the input file while it grows, and write the new or changed groups into the output file as soon as
+     * they are found. A changed group is written again with all its sentences in the window.
+     * Sentences older than the window are removed, so the memory does not grow with the running time.
+     * Runs until stopTail() is called
+     */
+    public void tail() {
+        if(options.getIndexMode() != IndexMode.PAIRWISE)
+            throw new IllegalArgumentException("Tail mode supports only the pairwise index, got " + options.getIndexMode());
+        if(options.getOutputFormat() != OutputFormat.TEXT)
+            throw new IllegalArgumentException("Tail mode supports only the text output, got " + options.getOutputFormat());
+        if(options.getStoreMode() != StoreMode.RECORDS)
+            throw new IllegalArgumentException("Tail mode supports only the records store, got " + options.getStoreMode());
+        if(router != null)
+            throw new IllegalArgumentException("Tail mode supports only a single template");
+        if(dedupSentences != null)
+            throw new IllegalArgumentException("Tail mode does not support dedup");
+        if(options.getWorkers() > 0)
+            throw new IllegalArgumentException("Tail mode does not support workers mode");
+        if(options.getTopK() > 0)
+            throw new IllegalArgumentException("Tail mode does not support top-K mode");
+        log.debug("Tailing sentences from " + inputFilePath);
+        startMetrics();
+        try (FileTailer tailer = new FileTailer(Paths.get(inputFilePath));
+             BufferedWriter bf = new BufferedWriter(new FileWriter(outputFilePath))) {
+            while(!tailStopped){
+                if(tailOnce(tailer, bf) == 0 && !tailer.hasMore())
+                    Thread.sleep(options.getPollMillis());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("There was error during tailing the input file: " + e.getMessage(),e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.debug("Stopped tailing " + inputFilePath);
+        writeMetrics();
+    }
+
+    public void stopTail() {
+        tailStopped = true;
+    }
+
+    /**
+     * analyze the lines added to the file since the last time, and write the groups which changed
+     * @return the number of lines read
+     */
+    @VisibleForTesting
+    int tailOnce(FileTailer tailer, Writer out) throws IOException {
+        if(timeWindow == null){
+            timeWindow = new TimeWindow(options.getWindowSeconds());
+            groups.trackChanges();
+        }
+        List<String> lines = tailer.poll();
+        //the tailer does not keep the offsets of the lines
+        lines.forEach(line -> handleLine(line, -1));
+        //the lines were logged, they are not kept while running
+        sentencesNotAccordingPattern.clear();
+
+        long writeStart = metrics.start();
+        for(int groupId : groups.takeChanged()){
+            out.write(groups.getGroup(groupId).getRecordsStr(sentences, lineFormat, windowStart));
+            out.write(System.lineSeparator());
+        }
+        out.flush();
+        metrics.stop(Phase.WRITE, writeStart);
+        removeExpired();
+        return lines.size();
+    }
+
+    /**
+     * remove the sentences out of the window from the index. Done in batches, since it goes over all the index
+     */
+    private void removeExpired() {
+        if(partitionedSentences != null){
+            removeExpiredPartitions();
+            return;
+        }
+        int expired = windowStart - sentences.getFirstIndex();
+        if(expired < Math.max(MIN_EVICTION, sentences.getLiveCount() / 4))
+            return;
+        //tail mode keeps the records store, see RunOptions
+        ((RecordStore) sentences).removeBefore(windowStart);
+        postings.get(0).removeBefore(windowStart);
+        groups.removeBefore(windowStart);
+        log.debug("Removed " + expired + " sentences out of the window. " + sentences.getLiveCount() + " sentences and "
+                + groups.size() + " groups left");
+    }
+
+    /**
+     * drop the partitions which all their sentences are out of the window, with their index.
+     * The other partitions are not changed, so only the groups are gone over
+     */
+    private void removeExpiredPartitions() {
+        int expired = 0;
+        while(!postings.isEmpty() && postings.get(0).getEndIndex() <= windowStart){
+            PartitionPostings partition = postings.remove(0);
+            expired += partition.getEndIndex() - partition.getFirstIndex();
+        }
+        if(expired == 0)
+            return;
+        partitionedSentences.removeBefore(windowStart);
+        groups.removeBefore(sentences.getFirstIndex());
+        log.debug("Removed " + expired + " sentences of partitions out of the window. " + sentences.getLiveCount() + " sentences and "
+                + groups.size() + " groups left");
+    }
+
+    /**
+     * parse chunks of the mapped file in parallel, and analyze the records in the order of the file
+     */
+    private void readMapped(AtomicBoolean atLeast1Sentence) {
+        ForkJoinPool pool = new ForkJoinPool(options.getThreads());
+        //each parsing thread needs its own match offsets
+        ThreadLocal<TemplateMatch> threadMatch = ThreadLocal.withInitial(template::newMatch);
+        ThreadLocal<TemplateMatch[]> threadRouteMatches = ThreadLocal.withInitial(() -> router == null ? null : router.newMatches());
+        long[] lineNumber = new long[1];
+        try {
+            MappedChunkReader reader = new MappedChunkReader(Paths.get(inputFilePath), options.getChunkSize(), pool);
+            reader.read(new ChunkParser<RecordBatch>() {
+                @Override
+                public RecordBatch newBatch() {
+                    return new RecordBatch();
+                }
+
+                @Override
+                public void parseLine(RecordBatch batch, CharSequence line, long offset) {
+                    if(!parseInto(batch, line, offset, threadMatch.get(), threadRouteMatches.get()))
+                        batch.getSentencesNotAccordingPattern().add(line.toString());
+                }
+            }, batch -> {
+                lineNumber[0] += batch.getLineCount();
+                batch.getSentencesNotAccordingPattern().forEach(s -> log.error("Failed in matching to pattern for " + s + ". " + diagnose(s)));
+                handleBatch(batch, atLeast1Sentence);
+            }, inputOffset);
+            log.debug("Read " + lineNumber[0] + " lines from mapped file");
+        } catch (IOException e) {
+            throw new RuntimeException("There was error during reading the input from file: " + e.getMessage(),e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * read the files of the input, each on its own thread, and analyze their records in the order of the files.
+     * The lines do not have offsets, and the malformed lines are kept with their file and line number
+     */
+    private void readFiles(AtomicBoolean atLeast1Sentence) {
+        ThreadLocal<TemplateMatch> threadMatch = ThreadLocal.withInitial(template::newMatch);
+        ThreadLocal<TemplateMatch[]> threadRouteMatches = ThreadLocal.withInitial(() -> router == null ? null : router.newMatches());
+        long[] lineNumber = new long[1];
+        try {
+            new MultiFileReader(inputFiles, options.getThreads(), options.getBatchLines(), options.getQueueDepth()).read(new MultiFileReader.FileParser<RecordBatch>() {
+                @Override
+                public RecordBatch newBatch() {
+                    return new RecordBatch();
+                }
+
+                @Override
+                public void parseLine(RecordBatch batch, CharSequence line, int file, long fileLineNumber) {
+                    if(parseInto(batch, line, -1, threadMatch.get(), threadRouteMatches.get()))
+                        return;
+                    log.error("Failed in matching to pattern for " + line + " in " + inputFiles.get(file) + ":" + fileLineNumber + ". " + diagnose(line));
+                    batch.getSentencesNotAccordingPattern().add(inputFiles.get(file) + ":" + fileLineNumber + ": " + line);
+                }
+            }, batch -> {
+                lineNumber[0] += batch.getLineCount();
+                handleBatch(batch, atLeast1Sentence);
+            });
+            log.debug("Read " + lineNumber[0] + " lines from " + inputFiles.size() + " files");
+        } catch (IOException e) {
+            throw new RuntimeException("There was error during reading the input from file: " + e.getMessage(),e);
+        }
+    }
+
+    /**
+     * parse the line into the batch. Called on the parsing threads
+     * @param routeMatches the matches of the router, or null with a single template
+     * @return true if the line matches the template
+     */
+    private boolean parseInto(RecordBatch batch, CharSequence line, long offset, TemplateMatch match, TemplateMatch[] routeMatches) {
+        batch.addLine();
+        Record currRecord = null;
+        int templateIndex = 0;
+        long parseStart = metrics.start();
+        try {
+            if(router == null)
+                currRecord = parseRecord(line, offset, match);
+            else{
+                templateIndex = router.route(line, routeMatches);
+                if(templateIndex >= 0)
+                    currRecord = getTemplate(templateIndex).toRecord(routeMatches[templateIndex], offset);
+            }
+        } catch (Exception e) {
+            log.error("Failed in matching to pattern for " + line + " " + e.getMessage());
+        }
+        metrics.stop(Phase.PARSE, parseStart);
+        metrics.countLine(currRecord == null);
+        if(currRecord != null)
+            batch.addRecord(currRecord, templateIndex);
+        return currRecord != null;
+    }
+
+    /**
+     * analyze the records of the batch against the indexed data, in the order of their lines
+     */
+    private void handleBatch(RecordBatch batch, AtomicBoolean atLeast1Sentence) {
+        if(batch.getLineCount() > 0)
+            atLeast1Sentence.set(true);
+        sentencesNotAccordingPattern.addAll(batch.getSentencesNotAccordingPattern());
+        for(int i = 0; i < batch.getRecords().size(); i++)
+            getTemplate(batch.getTemplates().get(i)).handleRecord(batch.getRecords().get(i));
+    }
+
+    /**
+     * match the line to the template and save the parts
+     * @param offset offset of the line in the input, -1 when unknown
+     * @return the record or null if the line does not match the template
+     */
+    @VisibleForTesting
+    Record parseRecord(CharSequence line, long offset, TemplateMatch match) {
+        if(!template.match(line, match))
+            return null;
+        return toRecord(match, offset);
+    }
+
+    /**
+     * save the parts of the line matched to the template
+     */
+    private Record toRecord(TemplateMatch match, long offset) {
+        long time = logTime.toSeconds(match.getLine(), match.getStart(logField), match.getEnd(logField));
+        return new Record(time,
+                logTime.isRestorable(time) ? null : match.getField(logField),
+                match.getField(nameField),
+                match.getField(actionField),
+                match.getField(restField),
+                offset,
+                dictionary
+        );
+    }
+
+    /**
+     * save the results found under the string key of their type and identical parts, which is different for each group
+     */
+    private void collectResults() {
+        keyToResults.clear();
+        if(dedupSentences != null){
+            //the identical sentences were not indexed, they are in the groups of their canonical sentence
+            groups.getGroups().forEach(dedupSentences::expand);
+            log.debug("Collapsed " + dedupSentences.getDuplicateCount() + " identical sentences out of " + sentences.size());
+        }
+        groups.getGroups().forEach(results ->
+                keyToResults.put(sentences.get(results.getRecord(0)).constructKeyStrAccordingType(results.getType()), results));
+    }
+
+    /**
+     * find the largest groups of each type. Their sentences are kept, so the results have the same form as of the
+     * other modes, with the first sentence of each changing part of the groups
+     */
+    private void collectTopGroups() {
+        keyToResults.clear();
+        topGroups = new ArrayList<>();
+        for(PatternType type : PatternType.values()){
+            for(TopKGroups.TopGroup group : topKGroups.getTopGroups(type)){
+                topGroups.add(group);
+                ResultsPerType results = new ResultsPerType(type);
+                for(Record record : group.getSentences()){
+                    sentences.add(record);
+                    results.addRecord(sentences.size() - 1);
+                }
+                String key = group.getSentences().get(0).constructKeyStrAccordingType(type);
+                ResultsPerType existing = keyToResults.get(key);
+                if(existing == null)
+                    keyToResults.put(key, results);
+                else
+                    existing.addRecords(results);
+            }
+        }
+        topKGroups = null;
     }
 
     /**
      * analyze each record against indexed data
      * @param currRecord
      */
-    private void handleRecord(Record currRecord) {
+    @VisibleForTesting
+    void handleRecord(Record currRecord) {
+        //only counted, the sentences of the largest groups are kept by the counts
+        if(topKGroups != null){
+            long indexStart = metrics.start();
+            topKGroups.add(currRecord);
+            metrics.stop(Phase.INDEX, indexStart);
+            return;
+        }
+
         //save the data
         sentences.add(currRecord);
 
         int index = sentences.size() - 1;
 
+        //an identical sentence was indexed already. It joins the groups of that sentence when the results are collected
+        if(dedupSentences != null && dedupSentences.isDuplicate(index))
+            return;
+
+        if(timeWindow != null){
+            timeWindow.add(currRecord.getTime());
+            windowStart += timeWindow.removeExpired();
+        }
+
+        long indexStart = metrics.start();
+        indexRecord(currRecord, index);
+        metrics.stop(Phase.INDEX, indexStart);
+    }
+
+    /**
+     * find the matches of the record and index it
+     */
+    private void indexRecord(Record currRecord, int index) {
+        //the signatures find the matches without the indexed parts
+        if(options.getIndexMode() == IndexMode.SIGNATURE){
+            signatureIndex.add(currRecord, index);
+            return;
+        }
+        if(options.getIndexMode() == IndexMode.SHARDED){
+            shardedEngine.add(currRecord, index);
+            return;
+        }
+        //the exact matches by the signatures, and the rests differing by more words by MinHash
+        if(options.getIndexMode() == IndexMode.APPROXIMATE){
+            signatureIndex.add(currRecord, index);
+            lshIndex.add(currRecord, index);
+            return;
+        }
+
+        PartitionPostings current = getPostings(index);
+        //the sentences of each partition are compared, except the partitions out of the window
+        for(int i = 0; i < postings.size(); i++){
+            PartitionPostings partition = postings.get(i);
+            if(partitionedSentences == null || partition.getEndIndex() > windowStart || partition == current)
+                findMatches(currRecord, index, partition);
+        }
+
+        //save parts into indexed data
+        current.put(currRecord, index);
+    }
+
+    /**
+     * find the matches of an indexed sentence again, without indexing it
+     */
+    @VisibleForTesting
+    void findMatches(int index) {
+        Record record = sentences.get(index);
+        for(int i = 0; i < postings.size(); i++)
+            findMatches(record, index, postings.get(i));
+    }
+
+    /**
+     * @return the postings of the partition of the sentence. A new partition has new postings
+     */
+    private PartitionPostings getPostings(int index) {
+        PartitionPostings last = postings.isEmpty() ? null : postings.get(postings.size() - 1);
+        if(partitionedSentences == null)
+            return last;
+        List<PartitionedRecordStore.Partition> partitions = partitionedSentences.getPartitions();
+        int firstIndex = partitions.get(partitions.size() - 1).getFirstIndex();
+        if(last == null || last.getFirstIndex() != firstIndex){
+            last = new PartitionPostings(firstIndex);
+            postings.add(last);
+        }
+        return last;
+    }
+
+    /**
+     * find the sentences in the partition which differ from the record by a single part
+     */
+    private void findMatches(Record currRecord, int index, PartitionPostings partition) {
         //get indexed data for each part of the sentence
-        Set<Integer> sentencesWithThisName = nameToIndexMap.get(currRecord.getName());
-        Set<Integer> sentensesWithThisAction = actionToIndexMap.get(currRecord.getAction());
-        Set<Integer> sentensesWithThisRst = restToIndexMap.get(currRecord.getRestStr());
+        IntPostingList sentencesWithThisName = partition.getNameToIndexMap().get(currRecord.getNameId());
+        IntPostingList sentensesWithThisAction = partition.getActionToIndexMap().get(currRecord.getActionId());
+        IntPostingList sentensesWithThisRst = partition.getRestToIndexMap().get(currRecord.getRestId());
 
         //try to find records with same name, same action
         checkThirdPartAmongIdentical2Parts(currRecord,
                 sentencesWithThisName,
                 sentensesWithThisAction,
-                currRecord.getRestStr(),
                 PatternType.REST,
                 index
         );
@@ -194,7 +1232,6 @@ public class PatternSimilarity {
         checkThirdPartAmongIdentical2Parts(currRecord,
                 sentensesWithThisAction,
                 sentensesWithThisRst,
-                currRecord.getName(),
                 PatternType.NAME,
                 index);
 
@@ -202,24 +1239,18 @@ public class PatternSimilarity {
         checkThirdPartAmongIdentical2Parts(currRecord,
                 sentencesWithThisName,
                 sentensesWithThisRst,
-                currRecord.getAction(),
                 PatternType.ACTION,
                 index);
-
-        //save parts into indexed data
-        nameToIndexMap.put(currRecord.getName(), index);
-        actionToIndexMap.put(currRecord.getAction(), index);
-        restToIndexMap.put(currRecord.getRestStr(), index);
     }
 
     public static void main(String[] args) {
-        if(args== null || args.length != 2){
-            System.out.println("Usage: PatternSimilarity [input file path] []output file path");
+        if(args== null || args.length < 2){
+            System.out.println("Usage: PatternSimilarity [input file, directory or glob] []output file path [--index=pairwise|signature|sharded|external|approximate] [--maxDistance=k] [--lshBands=n] [--lshRows=n] [--shingleSize=n] [--shards=n] [--memoryBudget=bytes] [--spillDir=...] [--workers=n] [--workerHeap=size] [--template=... [--template=...]] [--reader=lines|mapped|tail] [--output=text|jsonl|binary] [--store=records|offsets] [--dedup=true] [--topK=n] [--window=seconds] [--timeFormat=...] [--partition=none|hour|day] [--pollMillis=n] [--threads=n] [--batchLines=n] [--queueDepth=n] [--metrics=true] [--metricsFile=...] [--snapshot=...]");
             System.exit(-1);
 
         }
 
-        PatternSimilarity patternSimilarity = new PatternSimilarity(args[0],args[1]);
+        PatternSimilarity patternSimilarity = new PatternSimilarity(args[0],args[1],RunOptions.parse(args,2));
         patternSimilarity.findSentencesSingleDifferenceAndPrint();
 
     }
@@ -234,9 +1265,8 @@ public class PatternSimilarity {
      * This should be added to the result list
      */
     private void checkThirdPartAmongIdentical2Parts(Record currRecord,
-                                    Set<Integer> firstSet,
-                                    Set<Integer> secondSet,
-                                    String firstTestStr,
+                                    IntPostingList firstSet,
+                                    IntPostingList secondSet,
                                     PatternType type,
                                     int index) {
 
@@ -246,58 +1276,64 @@ public class PatternSimilarity {
         }
 
         //get the intersaction - i.e. records which both words exists
-        Set<Integer> intersection = new HashSet<>(firstSet);
-        intersection.retainAll(secondSet);
+        int maxSize = Math.min(firstSet.size(), secondSet.size());
+        if(intersection.length < maxSize)
+            intersection = new int[Math.max(maxSize, intersection.length * 2)];
+        long intersectStart = metrics.start();
+        int intersectionSize = IntPostingList.intersect(firstSet, secondSet, intersection);
+        metrics.stop(Phase.INTERSECT, intersectStart);
+        metrics.recordIntersection(type, firstSet.size(), secondSet.size(), intersectionSize);
+
+        //the group of the record is found on the first match, and each record joins it once
+        int groupId = -1;
 
         //only in case there are elements in the intersection
-        intersection.stream().forEach(i->{
+        for(int i = 0; i < intersectionSize; i++){
             //if rest does not contains the string then,
             //it brobably the past with singele difference
-           int otherSentIndex = i;
+           int otherSentIndex = intersection[i];
+
+           //the sentence is out of the window
+           if(otherSentIndex < windowStart)
+               continue;
+
+           //no need to compare to a record which is already in the group
+           if(groupId >= 0 && groups.isJoined(type, otherSentIndex))
+               continue;
 
            //get the record found is common
            Record thatRecord = sentences.get(otherSentIndex);
 
-           //this is the word which is different in that record
-           String secTestStr = thatRecord.getWordAccorfingType(type);
-           //in case it is not identical
-           if(!firstTestStr.equals(secTestStr)){
+           //in case the part which is different in that record is not identical
+           if(currRecord.getPartId(type) != thatRecord.getPartId(type)){
                //make sure the difference in words is only one (actually we are saving parts)
-               if(is1wordDifferent(firstTestStr,thatRecord.getWordAccorfingType(type))){
-
-                   //The key is [first identical part]_[second identical part]
-                   String key = currRecord.constructKeyAccordingType(type);
-                    ResultsPerType currEntry = keyToResults.get(key);
-                    //for first match
-                    if(currEntry == null){
-                        currEntry = new ResultsPerType(type);
-                        keyToResults.put(key,currEntry);
-                    }
-                   currEntry.addRecord(index);
-                    currEntry.addRecord(otherSentIndex);
+               long compareStart = metrics.start();
+               boolean isMatch = is1wordDifferent(currRecord,thatRecord,type);
+               metrics.stop(Phase.COMPARE, compareStart);
+               metrics.countComparison(isMatch);
+               if(isMatch){
+
+                   //for first match - the key is [first identical part]_[second identical part]
+                   if(groupId < 0){
+                       groupId = groups.getGroupId(currRecord.getKeyAccordingType(type));
+                       groups.join(groupId, index);
+                   }
+                   groups.join(groupId, otherSentIndex);
                }
            }
-        });
+        }
     }
 
-
-    private boolean is1wordDifferent(String s1, String s2) {
-            if (s1 == null || s2 == null)
-                return false;
-
-            if (s1.isEmpty() || s2.isEmpty())
-                return false;
-
-            String[] s1Arr = s1.split(" ");
-            String[] s2Arr = s2.split(" ");
-
-            if (s1Arr.length != s2Arr.length) {
+    @VisibleForTesting
+    boolean is1wordDifferent(Record first, Record second, PatternType type) {
+            int length = first.getWordCount(type);
+            if (length != second.getWordCount(type)) {
                 return false;
             }
 
             int numDifrrences = 0;
-            for (int i = 0; i < s1Arr.length; i++) {
-                if (!s1Arr[i].equals(s2Arr[i])) {
+            for (int i = 0; i < length; i++) {
+                if (first.getWordId(type, i) != second.getWordId(type, i)) {
                     numDifrrences++;
                 }
                 if (numDifrrences > 1) {
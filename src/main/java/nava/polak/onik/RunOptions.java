@@ -0,0 +1,298 @@
+package nava.polak.onik;
+
+import lombok.Data;
+import nava.polak.onik.io.LinePipeline;
+import nava.polak.onik.io.MappedChunkReader;
+import nava.polak.onik.io.MultiFileReader;
+import nava.polak.onik.model.IndexMode;
+import nava.polak.onik.model.LogTime;
+import nava.polak.onik.model.OutputFormat;
+import nava.polak.onik.model.ReaderMode;
+import nava.polak.onik.model.StoreMode;
+import nava.polak.onik.model.TimePartition;
+import nava.polak.onik.parse.SentenceTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Optional settings of a run.
+ * In the command line they are given after the input and output file paths in format --[name]=[value].
+ * For example: --index=signature
+ */
+@Data
+public class RunOptions {
+
+    /**
+     * The algorithm used to index the sentences
+     */
+    private IndexMode indexMode = IndexMode.PAIRWISE;
+
+    /**
+     * How the results are written. IndexMode.EXTERNAL and ReaderMode.TAIL write only OutputFormat.TEXT
+     */
+    private OutputFormat outputFormat = OutputFormat.TEXT;
+
+    /**
+     * How the sentences are kept after they are indexed
+     */
+    private StoreMode storeMode = StoreMode.RECORDS;
+
+    /**
+     * Keep identical sentences, with the same name, action and rest, once with the times and offsets of the others,
+     * and index only the first of them. Supported by StoreMode.RECORDS without time partitions
+     */
+    private boolean dedup;
+
+    /**
+     * Find only the largest groups of each type, in a fixed memory, when positive. See TopKGroups
+     */
+    private int topK;
+
+    /**
+     * The layout of the sentences. Should have the fields log, name, action and rest. See SentenceTemplate
+     */
+    private String template = SentenceTemplate.DEFAULT;
+
+    /**
+     * Templates of other sentence shapes in the same input, given by repeating --template.
+     * The input is read once, each line is parsed by the first template it matches, and each template has its own index.
+     * The results of the template i are written into the output file path with the suffix .i
+     */
+    private List<String> moreTemplates = new ArrayList<>();
+
+    /**
+     * How the input file is read
+     */
+    private ReaderMode readerMode = ReaderMode.LINES;
+
+    /**
+     * With ReaderMode.TAIL, sentences older than the window in seconds, from the latest sentence, are removed
+     */
+    private long windowSeconds = 24 * 60 * 60;
+
+    /**
+     * The format of the log field, parsed into the time of the sentence. See DateTimeFormatter
+     */
+    private String timeFormat = LogTime.DEFAULT_FORMAT;
+
+    /**
+     * Keep the sentences, and the pairwise index, in partitions by their time. With ReaderMode.TAIL whole partitions
+     * out of the window are dropped. Supported by StoreMode.RECORDS
+     */
+    private TimePartition timePartition = TimePartition.NONE;
+
+    /**
+     * With ReaderMode.TAIL, time in milliseconds to wait for new lines when the end of the file was read
+     */
+    private long pollMillis = 500;
+
+    /**
+     * Number of threads parsing the input
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Size in bytes of the chunks of the input parsed in parallel
+     */
+    private int chunkSize = MappedChunkReader.DEFAULT_CHUNK_SIZE;
+
+    /**
+     * Number of lines in a batch of the staged line reader and of several input files
+     */
+    private int batchLines = MultiFileReader.DEFAULT_BATCH_LINES;
+
+    /**
+     * Number of batches waiting in the queue of each stage, before the stages before it wait
+     */
+    private int queueDepth = LinePipeline.DEFAULT_QUEUE_DEPTH;
+
+    /**
+     * Number of threads indexing the sentences with IndexMode.SHARDED
+     */
+    private int shards = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * With IndexMode.APPROXIMATE, maximal number of words substituted, inserted or deleted between similar rests
+     */
+    private int maxDistance = 1;
+
+    /**
+     * With IndexMode.APPROXIMATE, number of bands of the MinHash signature and number of hash values in each band.
+     * More bands find more similar rests, more rows compare less rests which are not similar
+     */
+    private int lshBands = 16;
+    private int lshRows = 2;
+
+    /**
+     * With IndexMode.APPROXIMATE, number of consecutive words hashed together into the MinHash signature
+     */
+    private int shingleSize = 1;
+
+    /**
+     * Memory in bytes for the index. When the index is estimated to be bigger, IndexMode.EXTERNAL is used
+     */
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 2;
+
+    /**
+     * Directory of the temporary files of IndexMode.EXTERNAL
+     */
+    private String spillDir = System.getProperty("java.io.tmpdir");
+
+    /**
+     * Number of worker JVMs finding the groups of a partition of the input each, when positive. See Coordinator
+     */
+    private int workers;
+
+    /**
+     * The max heap of each worker JVM, e.g. 2g. The JVM default when not set
+     */
+    private String workerHeap;
+
+    /**
+     * Collect counters, timers and histograms of the run, registered as MBean and written as json at the end
+     */
+    private boolean metrics;
+
+    /**
+     * File the metrics are written into as json at the end of the run. Setting it collects the metrics
+     */
+    private String metricsFile;
+
+    /**
+     * File of the index. When it exists the index is loaded from it, and only the input after it is read.
+     * The index is saved into it at the end of the run. See IndexSnapshot
+     */
+    private String snapshot;
+
+    /**
+     * parse the options from the command line arguments
+     * @param args command line arguments
+     * @param from index of the first option in args
+     */
+    public static RunOptions parse(String[] args, int from) {
+        RunOptions options = new RunOptions();
+        boolean templateSet = false;
+        boolean windowSet = false;
+        for (int i = from; i < args.length; i++) {
+            String arg = args[i];
+            int sep = arg.indexOf('=');
+            if (!arg.startsWith("--") || sep < 0)
+                throw new IllegalArgumentException("Option should be in format --[name]=[value]: " + arg);
+            String name = arg.substring(2, sep);
+            //the first template replaces the default one, the others are added
+            if (name.equals("template") && templateSet)
+                options.moreTemplates.add(arg.substring(sep + 1));
+            else
+                options.set(name, arg.substring(sep + 1));
+            templateSet |= name.equals("template");
+            windowSet |= name.equals("window");
+        }
+        options.checkWindowStore(windowSet);
+        return options;
+    }
+
+    /**
+     * Only the records store removes the sentences out of the window, so the other stores are rejected
+     * with tail mode or a window, before the input is read
+     * @param windowSet true if --window was given
+     */
+    private void checkWindowStore(boolean windowSet) {
+        if (readerMode != ReaderMode.TAIL && !windowSet)
+            return;
+        if (storeMode != StoreMode.RECORDS)
+            throw new IllegalArgumentException("Tail mode and --window support only the records store, got " + storeMode);
+        if (dedup)
+            throw new IllegalArgumentException("Tail mode and --window do not support dedup");
+        if (workers > 0)
+            throw new IllegalArgumentException("Tail mode and --window do not support workers mode");
+    }
+
+    public void set(String name, String value) {
+        switch (name) {
+            case "index":
+                indexMode = IndexMode.valueOf(value.toUpperCase());
+                break;
+            case "output":
+                outputFormat = OutputFormat.valueOf(value.toUpperCase());
+                break;
+            case "store":
+                storeMode = StoreMode.valueOf(value.toUpperCase());
+                break;
+            case "dedup":
+                dedup = Boolean.parseBoolean(value);
+                break;
+            case "topK":
+                topK = Integer.parseInt(value);
+                break;
+            case "template":
+                template = value;
+                break;
+            case "reader":
+                readerMode = ReaderMode.valueOf(value.toUpperCase());
+                break;
+            case "window":
+                windowSeconds = Long.parseLong(value);
+                break;
+            case "timeFormat":
+                timeFormat = value;
+                break;
+            case "partition":
+                timePartition = TimePartition.valueOf(value.toUpperCase());
+                break;
+            case "pollMillis":
+                pollMillis = Long.parseLong(value);
+                break;
+            case "threads":
+                threads = Integer.parseInt(value);
+                break;
+            case "chunkSize":
+                chunkSize = Integer.parseInt(value);
+                break;
+            case "batchLines":
+                batchLines = Integer.parseInt(value);
+                break;
+            case "queueDepth":
+                queueDepth = Integer.parseInt(value);
+                break;
+            case "shards":
+                shards = Integer.parseInt(value);
+                break;
+            case "maxDistance":
+                maxDistance = Integer.parseInt(value);
+                break;
+            case "lshBands":
+                lshBands = Integer.parseInt(value);
+                break;
+            case "lshRows":
+                lshRows = Integer.parseInt(value);
+                break;
+            case "shingleSize":
+                shingleSize = Integer.parseInt(value);
+                break;
+            case "memoryBudget":
+                memoryBudget = Long.parseLong(value);
+                break;
+            case "spillDir":
+                spillDir = value;
+                break;
+            case "workers":
+                workers = Integer.parseInt(value);
+                break;
+            case "workerHeap":
+                workerHeap = value;
+                break;
+            case "metrics":
+                metrics = Boolean.parseBoolean(value);
+                break;
+            case "metricsFile":
+                metricsFile = value;
+                break;
+            case "snapshot":
+                snapshot = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option " + name);
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package nava.polak.onik;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.metrics.Metrics;
+import nava.polak.onik.metrics.Phase;
+import nava.polak.onik.model.LogTime;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.ResultsPerType;
+import nava.polak.onik.parse.TemplateMatch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP service which keeps the index warm in memory, so it is not rebuilt per file.
+ * POST /lines - the body is log lines. They are indexed, and the groups the batch changed are returned.
+ * GET /groups?name=[name] - all the groups having a sentence with the name.
+ * GET /groups?id=[group id] - the group with its sentences and changing words.
+ * The groups queries can have from=[time]&to=[time] in the time format, to return only the sentences in the time range.
+ * GET /stats - the number of lines, sentences and groups.
+ * The batches are parsed in parallel on the http threads, and indexed in the order they are parsed on a single
+ * indexing thread, which also answers the queries. So a producer parses its next batch while the previous one is indexed.
+ * Listens only on the loopback address.
+ */
+@Slf4j
+public class SimilarityServer {
+
+    private final PatternSimilarity similarity;
+    private final Metrics metrics;
+    private final HttpServer server;
+    private final ExecutorService httpThreads;
+
+    /**
+     * Indexes the batches and answers the queries, one at a time
+     */
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "similarity-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ThreadLocal<TemplateMatch> threadMatch;
+
+    private final LogTime logTime;
+
+    /**
+     * The groups of each name, i.e. having a sentence with the name. Updated by the indexing thread from the changed groups
+     */
+    private final Map<String, List<Integer>> nameToGroups = new HashMap<>();
+
+    /**
+     * The group id and name id of the names added for the groups of type NAME, where the name is changing
+     */
+    private final Set<Long> groupNames = new HashSet<>();
+
+    /**
+     * The number of sentences of each group already added into nameToGroups
+     */
+    private int[] groupNamesAdded = new int[1024];
+
+    private long lines;
+    private long malformedLines;
+
+    /**
+     * @param port the port to listen on, 0 for any free port
+     */
+    public SimilarityServer(int port, RunOptions options) throws IOException {
+        similarity = new PatternSimilarity("http://localhost:" + port, null, options);
+        metrics = similarity.getMetrics();
+        threadMatch = ThreadLocal.withInitial(similarity::newMatch);
+        logTime = new LogTime(options.getTimeFormat());
+        similarity.startIngest();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpThreads = Executors.newFixedThreadPool(options.getThreads());
+        server.setExecutor(httpThreads);
+        server.createContext("/lines", exchange -> handle(exchange, "POST", () -> ingest(readBody(exchange))));
+        server.createContext("/groups", exchange -> handle(exchange, "GET", () -> queryGroups(exchange.getRequestURI().getRawQuery())));
+        server.createContext("/stats", exchange -> handle(exchange, "GET", () -> indexer.submit(this::stats).get()));
+    }
+
+    public void start() {
+        server.start();
+        log.info("Similarity server listening on " + server.getAddress());
+    }
+
+    public void stop() {
+        server.stop(0);
+        httpThreads.shutdown();
+        indexer.shutdown();
+        log.info("Similarity server stopped");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * parse the lines on the calling thread and index them on the indexing thread
+     * @return json with the counts and the groups the lines changed
+     */
+    String ingest(String body) throws InterruptedException, ExecutionException {
+        TemplateMatch match = threadMatch.get();
+        List<Record> records = new ArrayList<>();
+        List<String> malformed = new ArrayList<>();
+        int lineStart = 0;
+        while (lineStart < body.length()) {
+            int lineEnd = body.indexOf('\n', lineStart);
+            if (lineEnd < 0)
+                lineEnd = body.length();
+            int end = lineEnd > lineStart && body.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            String line = body.substring(lineStart, end);
+            lineStart = lineEnd + 1;
+
+            Record record = null;
+            long parseStart = metrics.start();
+            try {
+                record = similarity.parseRecord(line, -1, match);
+            } catch (Exception e) {
+                log.debug("Failed in matching to pattern for " + line + " " + e.getMessage());
+            }
+            metrics.stop(Phase.PARSE, parseStart);
+            metrics.countLine(record == null);
+            if (record != null)
+                records.add(record);
+            else
+                malformed.add(line);
+        }
+        return indexer.submit(() -> index(records, malformed.size())).get();
+    }
+
+    /**
+     * runs on the indexing thread
+     */
+    private String index(List<Record> records, int malformed) {
+        long indexStart = metrics.start();
+        records.forEach(similarity::handleRecord);
+        metrics.stop(Phase.INDEX, indexStart);
+        lines += records.size() + malformed;
+        malformedLines += malformed;
+
+        int[] changed = similarity.takeChangedGroups();
+        Arrays.sort(changed);
+        StringBuilder json = new StringBuilder();
+        json.append("{\"lines\":").append(records.size() + malformed)
+                .append(",\"malformed\":").append(malformed)
+                .append(",\"groups\":[");
+        for (int i = 0; i < changed.length; i++) {
+            addGroupNames(changed[i]);
+            if (i > 0)
+                json.append(',');
+            appendGroupSummary(json, changed[i]);
+        }
+        return json.append("]}").toString();
+    }
+
+    private void addGroupNames(int groupId) {
+        ResultsPerType group = similarity.getGroup(groupId);
+        if (groupId >= groupNamesAdded.length)
+            groupNamesAdded = Arrays.copyOf(groupNamesAdded, Math.max(groupId + 1, groupNamesAdded.length * 2));
+        //the name is one of the identical parts, so it is the same for all the sentences
+        if (group.getType() != PatternType.NAME) {
+            if (groupNamesAdded[groupId] == 0)
+                addGroupName(similarity.getSentence(group.getRecord(0)).getName(), groupId);
+        } else {
+            for (int i = groupNamesAdded[groupId]; i < group.size(); i++) {
+                Record record = similarity.getSentence(group.getRecord(i));
+                if (groupNames.add((long) groupId << 32 | record.getNameId()))
+                    addGroupName(record.getName(), groupId);
+            }
+        }
+        groupNamesAdded[groupId] = group.size();
+    }
+
+    private void addGroupName(String name, int groupId) {
+        nameToGroups.computeIfAbsent(name, k -> new ArrayList<>()).add(groupId);
+    }
+
+    private String queryGroups(String query) throws UnsupportedEncodingException, InterruptedException, ExecutionException {
+        Map<String, String> params = parseQuery(query);
+        long from = parseTime(params.get("from"), Long.MIN_VALUE);
+        long to = parseTime(params.get("to"), Long.MAX_VALUE);
+        if (params.containsKey("name")) {
+            String name = params.get("name");
+            return indexer.submit(() -> {
+                StringBuilder json = new StringBuilder("[");
+                List<Integer> groupIds = nameToGroups.getOrDefault(name, new ArrayList<>());
+                boolean first = true;
+                for (int groupId : groupIds) {
+                    int[] indexes = getSentences(groupId, from, to);
+                    //a single sentence in the range has nothing similar to it
+                    if (indexes.length < 2)
+                        continue;
+                    if (!first)
+                        json.append(',');
+                    first = false;
+                    appendGroup(json, groupId, indexes);
+                }
+                return json.append(']').toString();
+            }).get();
+        }
+        if (params.containsKey("id")) {
+            int groupId = Integer.parseInt(params.get("id"));
+            return indexer.submit(() -> {
+                if (groupId < 0 || groupId >= similarity.getGroupCount())
+                    throw new IllegalArgumentException("No group " + groupId);
+                return appendGroup(new StringBuilder(), groupId, getSentences(groupId, from, to)).toString();
+            }).get();
+        }
+        throw new IllegalArgumentException("Query groups by name=[name] or id=[group id]");
+    }
+
+    /**
+     * @return the epoch seconds of the time, or the default when there is no time
+     */
+    private long parseTime(String time, long defaultSeconds) {
+        if (time == null)
+            return defaultSeconds;
+        long seconds = logTime.toSeconds(time);
+        if (seconds == LogTime.UNKNOWN)
+            throw new IllegalArgumentException("Time " + time + " is not in the time format");
+        return seconds;
+    }
+
+    /**
+     * @return the indexes of the sentences of the group in the time range
+     */
+    private int[] getSentences(int groupId, long from, long to) {
+        int[] indexes = similarity.getGroup(groupId).getRecordsIndex();
+        if (from == Long.MIN_VALUE && to == Long.MAX_VALUE)
+            return indexes;
+        int count = 0;
+        for (int index : indexes) {
+            long time = similarity.getSentence(index).getTime();
+            if (time != LogTime.UNKNOWN && time >= from && time <= to)
+                indexes[count++] = index;
+        }
+        return Arrays.copyOf(indexes, count);
+    }
+
+    private String stats() {
+        return "{\"lines\":" + lines + ",\"malformed\":" + malformedLines
+                + ",\"sentences\":" + similarity.getSentenceCount() + ",\"groups\":" + similarity.getGroupCount() + "}";
+    }
+
+    private void appendGroupSummary(StringBuilder json, int groupId) {
+        ResultsPerType group = similarity.getGroup(groupId);
+        json.append("{\"group\":").append(groupId)
+                .append(",\"type\":\"").append(group.getType()).append('"')
+                .append(",\"key\":");
+        appendString(json, getKey(group));
+        json.append(",\"size\":").append(group.size()).append('}');
+    }
+
+    /**
+     * @param indexes the sentences of the group to add
+     */
+    private StringBuilder appendGroup(StringBuilder json, int groupId, int[] indexes) {
+        ResultsPerType group = similarity.getGroup(groupId);
+        json.append("{\"group\":").append(groupId)
+                .append(",\"type\":\"").append(group.getType()).append('"')
+                .append(",\"key\":");
+        appendString(json, getKey(group));
+        json.append(",\"sentences\":[");
+        for (int i = 0; i < indexes.length; i++) {
+            if (i > 0)
+                json.append(',');
+            appendString(json, similarity.getLineFormat().format(similarity.getSentence(indexes[i])));
+        }
+        json.append("],\"words\":[");
+        for (int i = 0; i < indexes.length; i++) {
+            if (i > 0)
+                json.append(',');
+            appendString(json, similarity.getSentence(indexes[i]).getWordAccorfingType(group.getType()));
+        }
+        return json.append("]}");
+    }
+
+    private String getKey(ResultsPerType group) {
+        return similarity.getSentence(group.getRecord(0)).constructKeyStrAccordingType(group.getType());
+    }
+
+    private static void appendString(StringBuilder json, String str) {
+        json.append('"');
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\')
+                json.append('\\').append(c);
+            else if (c < 0x20)
+                json.append(String.format("\\u%04x", (int) c));
+            else
+                json.append(c);
+        }
+        json.append('"');
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null)
+            return params;
+        for (String param : query.split("&")) {
+            int sep = param.indexOf('=');
+            if (sep > 0)
+                params.put(URLDecoder.decode(param.substring(0, sep), "UTF-8"), URLDecoder.decode(param.substring(sep + 1), "UTF-8"));
+        }
+        return params;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) > 0)
+                body.write(buffer, 0, read);
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void handle(HttpExchange exchange, String method, Callable<String> action) throws IOException {
+        int status = 200;
+        String response;
+        try {
+            if (!method.equals(exchange.getRequestMethod())) {
+                status = 405;
+                response = "{\"error\":\"Use " + method + "\"}";
+            } else {
+                response = action.call();
+            }
+        } catch (Exception e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            boolean badRequest = cause instanceof IllegalArgumentException;
+            if (!badRequest)
+                log.error("Failed handling " + exchange.getRequestURI(), cause);
+            status = badRequest ? 400 : 500;
+            StringBuilder error = new StringBuilder("{\"error\":");
+            appendString(error, String.valueOf(cause.getMessage()));
+            response = error.append('}').toString();
+        }
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args == null || args.length < 1) {
+            System.out.println("Usage: SimilarityServer [port] [--index=pairwise|signature|approximate] [--template=...] [--threads=n] [--metrics=true]");
+            System.exit(-1);
+        }
+        SimilarityServer server = new SimilarityServer(Integer.parseInt(args[0]), RunOptions.parse(args, 1));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+    }
+}
@@ -0,0 +1,46 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.ResultsPerType;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A worker JVM of the Coordinator. Finds the groups among the sentences of its partition, and writes the groups
+ * it owns by the hash of their type and key. The other groups are owned by other workers, which have all their sentences.
+ * The ownership is decided per group of the index, before the groups are merged with others by the Coordinator.
+ */
+@Slf4j
+public class Worker {
+
+    public static void main(String[] args) {
+        if (args == null || args.length < 5) {
+            System.out.println("Usage: Worker [partition lines] [partition indexes] [results file] [worker] [workers] [options]");
+            System.exit(-1);
+        }
+        int worker = Integer.parseInt(args[3]);
+        int workers = Integer.parseInt(args[4]);
+        PatternSimilarity similarity = new PatternSimilarity(args[0], args[2], RunOptions.parse(args, 5));
+        similarity.findSentensesWithSingleDifference();
+
+        List<Map.Entry<String, ResultsPerType>> owned = new ArrayList<>();
+        for (int groupId = 0; groupId < similarity.getGroupCount(); groupId++) {
+            ResultsPerType results = similarity.getGroup(groupId);
+            Record first = similarity.getSentence(results.getRecord(0));
+            if (Coordinator.workerOf(first, results.getType(), workers) == worker)
+                owned.add(new AbstractMap.SimpleEntry<>(first.constructKeyStrAccordingType(results.getType()), results));
+        }
+        try {
+            Coordinator.writeResults(Paths.get(args[2]), owned, Coordinator.readIndexes(Paths.get(args[1])));
+        } catch (IOException e) {
+            throw new RuntimeException("Got error while writing results into file", e);
+        }
+        log.debug("Worker " + worker + " found " + owned.size() + " groups out of " + similarity.getGroupCount());
+    }
+}
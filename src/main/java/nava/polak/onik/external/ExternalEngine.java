@@ -0,0 +1,426 @@
+package nava.polak.onik.external;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.io.ChunkParser;
+import nava.polak.onik.io.MappedChunkReader;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.parse.SentenceTemplate;
+import nava.polak.onik.parse.TemplateMatch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Find the similar sentences of input bigger than the memory, by sorting on disk.
+ * It does not keep the sentences or the index in memory, only the sort buffers in the memory budget.
+ * 1. For each sentence and type, a signature is created per word of the changing part where the word is masked
+ *    (see SignatureIndex). The (signature, masked word, key, line offset) tuples are sorted on disk.
+ * 2. The sorted signatures are read: sentences of a signature with at least 2 different masked words are matches.
+ *    The (type, key, line offset) tuples of the matches are sorted on disk.
+ * 3. The sorted keys are read: the sentences of each type and key are a group, and are read back from the input by offset.
+ * The groups are the same as found in memory, ordered by their type and key.
+ */
+@Slf4j
+public class ExternalEngine {
+
+    private static final String WORD_SEP = " , ";
+
+    /**
+     * Estimated memory taken by the in memory index per byte of input
+     */
+    public static final int INDEX_BYTES_PER_INPUT_BYTE = 6;
+
+    private final SentenceTemplate template;
+    private final Path inputPath;
+    private final Path spillDir;
+    private final long budgetBytes;
+    private final int threads;
+
+    private final int nameField;
+    private final int actionField;
+    private final int restField;
+
+    public ExternalEngine(SentenceTemplate template, Path inputPath, Path spillDir, long budgetBytes, int threads) {
+        this.template = template;
+        this.inputPath = inputPath;
+        this.spillDir = spillDir;
+        this.budgetBytes = budgetBytes;
+        this.threads = threads;
+        this.nameField = template.fieldIndex("name");
+        this.actionField = template.fieldIndex("action");
+        this.restField = template.fieldIndex("rest");
+    }
+
+    /**
+     * @return true if the in memory index of the input is estimated to be bigger than the budget
+     */
+    public static boolean exceedsBudget(Path inputPath, long budgetBytes) throws IOException {
+        return Files.size(inputPath) * INDEX_BYTES_PER_INPUT_BYTE > budgetBytes;
+    }
+
+    /**
+     * find the similar sentences and write them into the results file
+     * @param sentencesNotAccordingPattern the lines not matching the template are added into
+     * @return the number of lines in the input
+     */
+    public long run(Path resultsPath, List<String> sentencesNotAccordingPattern) throws IOException {
+        //half of the budget is for sorting, a quarter for the tuples of the chunks being parsed
+        long sortBudget = budgetBytes / 2;
+        int chunkSize = (int) Math.max(64 * 1024, Math.min(MappedChunkReader.DEFAULT_CHUNK_SIZE, budgetBytes / 16 / threads));
+        Files.createDirectories(spillDir);
+
+        SpillSorter<SignatureTuple> signatures = new SpillSorter<>(spillDir, "signatures", SignatureTuple.ORDER,
+                SignatureTuple.CODEC, sortBudget);
+        SpillSorter<GroupTuple> groups = new SpillSorter<>(spillDir, "groups", GroupTuple.ORDER, GroupTuple.CODEC, sortBudget);
+        Path flagsPath = Files.createTempFile(spillDir, "distinct", ".flags");
+        try {
+            long lines = readSignatures(signatures, sentencesNotAccordingPattern, chunkSize);
+            signatures.finish();
+            log.debug("Sorted " + signatures.getTupleCount() + " signatures in " + signatures.getRunCount() + " runs");
+
+            findDistinctSignatures(signatures, flagsPath);
+            collectMatches(signatures, flagsPath, groups);
+            signatures.delete();
+            groups.finish();
+            log.debug("Sorted " + groups.getTupleCount() + " matches in " + groups.getRunCount() + " runs");
+
+            long groupCount = writeGroups(groups, resultsPath);
+            log.debug("Wrote " + groupCount + " groups into " + resultsPath);
+            return lines;
+        } finally {
+            signatures.delete();
+            groups.delete();
+            Files.deleteIfExists(flagsPath);
+        }
+    }
+
+    /**
+     * parse the input in parallel and sort the signatures of the sentences
+     */
+    private long readSignatures(SpillSorter<SignatureTuple> signatures, List<String> sentencesNotAccordingPattern,
+                                int chunkSize) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ThreadLocal<TemplateMatch> threadMatch = ThreadLocal.withInitial(template::newMatch);
+        //the tuples of a chunk are moved into the sorter when they reach their share of the budget,
+        //so the chunks in flight of the reader do not keep all their tuples
+        long chunkTuplesBudget = Math.max(1, budgetBytes / 4 / (2L * threads));
+        long[] lines = new long[1];
+        try {
+            new MappedChunkReader(inputPath, chunkSize, pool).read(new ChunkParser<ParsedChunk>() {
+                @Override
+                public ParsedChunk newBatch() {
+                    return new ParsedChunk();
+                }
+
+                @Override
+                public void parseLine(ParsedChunk chunk, CharSequence line, long offset) {
+                    chunk.lines++;
+                    TemplateMatch match = threadMatch.get();
+                    if (template.match(line, match)) {
+                        addSignatures(chunk, match, offset);
+                        if (chunk.tuplesBytes >= chunkTuplesBudget)
+                            sortTuples(signatures, chunk);
+                    } else {
+                        chunk.sentencesNotAccordingPattern.add(line.toString());
+                    }
+                }
+            }, chunk -> {
+                lines[0] += chunk.lines;
+                chunk.sentencesNotAccordingPattern.forEach(s -> log.error("Failed in matching to pattern for " + s));
+                sentencesNotAccordingPattern.addAll(chunk.sentencesNotAccordingPattern);
+                sortTuples(signatures, chunk);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdown();
+        }
+        return lines[0];
+    }
+
+    /**
+     * move the tuples of the chunk into the sorter, which is shared by the threads parsing the chunks
+     */
+    private static void sortTuples(SpillSorter<SignatureTuple> signatures, ParsedChunk chunk) {
+        synchronized (signatures) {
+            try {
+                for (SignatureTuple tuple : chunk.tuples)
+                    signatures.add(tuple);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        chunk.tuples.clear();
+        chunk.tuplesBytes = 0;
+    }
+
+    private void addSignatures(ParsedChunk chunk, TemplateMatch match, long offset) {
+        String name = match.getField(nameField);
+        String action = match.getField(actionField);
+        String rest = match.getField(restField);
+
+        chunk.add(new SignatureTuple(PatternType.NAME.ordinal() + " 0 " + action + " " + rest, name,
+                Record.keyStr(PatternType.NAME, action, rest), PatternType.NAME, offset));
+        chunk.add(new SignatureTuple(PatternType.ACTION.ordinal() + " 0 " + name + " " + rest, action,
+                Record.keyStr(PatternType.ACTION, name, rest), PatternType.ACTION, offset));
+
+        //the words are split the same way as the pairwise comparison does
+        String[] words = rest.split(" ");
+        String fixedParts = PatternType.REST.ordinal() + " ";
+        String identical = " " + name + " " + action + " ";
+        String key = Record.keyStr(PatternType.REST, name, action);
+        int start = 0;
+        for (int position = 0; position < words.length; position++) {
+            int end = start + words[position].length();
+            String signature = fixedParts + position + identical + rest.substring(0, start) + rest.substring(end);
+            chunk.add(new SignatureTuple(signature, words[position], key, PatternType.REST, offset));
+            start = end + 1;
+        }
+    }
+
+    /**
+     * write a flag per signature, in the sorted order, which is true if the signature has different masked words
+     */
+    private void findDistinctSignatures(SpillSorter<SignatureTuple> signatures, Path flagsPath) throws IOException {
+        try (SpillSorter<SignatureTuple>.SortedIterator iterator = signatures.iterator();
+             DataOutputStream flags = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(flagsPath)))) {
+            SignatureTuple first = null;
+            boolean distinct = false;
+            SignatureTuple tuple;
+            while ((tuple = iterator.next()) != null) {
+                if (first == null || !first.signature.equals(tuple.signature)) {
+                    if (first != null)
+                        flags.writeBoolean(distinct);
+                    first = tuple;
+                    distinct = false;
+                } else if (!first.maskedWord.equals(tuple.maskedWord)) {
+                    distinct = true;
+                }
+            }
+            if (first != null)
+                flags.writeBoolean(distinct);
+        }
+    }
+
+    /**
+     * read the signatures again, and sort the keys of the sentences of signatures with different masked words
+     */
+    private void collectMatches(SpillSorter<SignatureTuple> signatures, Path flagsPath, SpillSorter<GroupTuple> groups)
+            throws IOException {
+        try (SpillSorter<SignatureTuple>.SortedIterator iterator = signatures.iterator();
+             DataInputStream flags = new DataInputStream(new BufferedInputStream(Files.newInputStream(flagsPath)))) {
+            String signature = null;
+            boolean distinct = false;
+            SignatureTuple tuple;
+            while ((tuple = iterator.next()) != null) {
+                if (!tuple.signature.equals(signature)) {
+                    signature = tuple.signature;
+                    distinct = flags.readBoolean();
+                }
+                if (distinct)
+                    groups.add(new GroupTuple(tuple.key, tuple.type, tuple.offset));
+            }
+        }
+    }
+
+    /**
+     * read the sorted keys, and write the sentences of each type and key as a group
+     * @return number of groups
+     */
+    private long writeGroups(SpillSorter<GroupTuple> groups, Path resultsPath) throws IOException {
+        long groupCount = 0;
+        TemplateMatch match = template.newMatch();
+        try (SpillSorter<GroupTuple>.SortedIterator iterator = groups.iterator();
+             FileChannel input = FileChannel.open(inputPath, StandardOpenOption.READ);
+             BufferedWriter out = Files.newBufferedWriter(resultsPath, StandardCharsets.UTF_8)) {
+            LineFetcher lineFetcher = new LineFetcher(input);
+            GroupTuple groupFirst = null;
+            StringBuilder changedParamStr = new StringBuilder();
+            long lastOffset = -1;
+            GroupTuple tuple;
+            while ((tuple = iterator.next()) != null) {
+                if (groupFirst == null || groupFirst.type != tuple.type || !groupFirst.key.equals(tuple.key)) {
+                    if (groupFirst != null)
+                        endGroup(out, changedParamStr);
+                    groupFirst = tuple;
+                    groupCount++;
+                    changedParamStr.setLength(0);
+                    changedParamStr.append("The changing word was: ");
+                    lastOffset = -1;
+                }
+                //a sentence can match by several signatures
+                if (tuple.offset == lastOffset)
+                    continue;
+                lastOffset = tuple.offset;
+
+                String line = lineFetcher.read(tuple.offset);
+                if (!template.match(line, match))
+                    throw new IllegalStateException("Line at offset " + tuple.offset + " does not match the template anymore");
+                //the sentence as matched by the template, as the in memory modes write it back
+                out.append(match.getLine(), match.getMatchStart(), match.getMatchEnd());
+                out.write("\n");
+                changedParamStr.append(match.getField(groupFirst.type == PatternType.NAME ? nameField
+                        : groupFirst.type == PatternType.ACTION ? actionField : restField)).append(WORD_SEP);
+            }
+            if (groupFirst != null)
+                endGroup(out, changedParamStr);
+        }
+        return groupCount;
+    }
+
+    private void endGroup(Writer out, StringBuilder changedParamStr) throws IOException {
+        out.write(changedParamStr.substring(0, changedParamStr.length() - WORD_SEP.length()));
+        out.write("\n");
+        out.write(System.lineSeparator());
+    }
+
+    /**
+     * The lines parsed from a chunk of the input
+     */
+    private static class ParsedChunk {
+        private final List<SignatureTuple> tuples = new ArrayList<>();
+        private final List<String> sentencesNotAccordingPattern = new ArrayList<>();
+        private int lines;
+
+        /**
+         * The memory taken by the tuples, as accounted by the sorter
+         */
+        private long tuplesBytes;
+
+        private void add(SignatureTuple tuple) {
+            tuples.add(tuple);
+            tuplesBytes += SignatureTuple.CODEC.sizeInBytes(tuple);
+        }
+    }
+
+    /**
+     * Read a line of the input by its offset
+     */
+    private static class LineFetcher {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        private LineFetcher(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private String read(long offset) throws IOException {
+            buffer.clear();
+            while (true) {
+                int read = channel.read(buffer, offset + buffer.position());
+                for (int i = 0; i < buffer.position(); i++) {
+                    byte b = buffer.get(i);
+                    if (b == '\n' || b == '\r')
+                        return new String(buffer.array(), 0, i, StandardCharsets.UTF_8);
+                }
+                if (read < 0)
+                    return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+                if (!buffer.hasRemaining()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    bigger.put(buffer);
+                    buffer = bigger;
+                }
+            }
+        }
+    }
+
+    /**
+     * A signature of a sentence
+     */
+    private static class SignatureTuple {
+        private static final Comparator<SignatureTuple> ORDER = Comparator.comparing((SignatureTuple t) -> t.signature)
+                .thenComparingLong(t -> t.offset);
+
+        private static final TupleCodec<SignatureTuple> CODEC = new TupleCodec<SignatureTuple>() {
+            @Override
+            public void write(DataOutputStream out, SignatureTuple tuple) throws IOException {
+                TupleCodec.writeString(out, tuple.signature);
+                TupleCodec.writeString(out, tuple.maskedWord);
+                TupleCodec.writeString(out, tuple.key);
+                out.writeByte(tuple.type.ordinal());
+                out.writeLong(tuple.offset);
+            }
+
+            @Override
+            public SignatureTuple read(DataInputStream in) throws IOException {
+                return new SignatureTuple(TupleCodec.readString(in), TupleCodec.readString(in), TupleCodec.readString(in),
+                        PatternType.values()[in.readByte()], in.readLong());
+            }
+
+            @Override
+            public long sizeInBytes(SignatureTuple tuple) {
+                return 120 + 2L * (tuple.signature.length() + tuple.maskedWord.length() + tuple.key.length());
+            }
+        };
+
+        private final String signature;
+        private final String maskedWord;
+        private final String key;
+        private final PatternType type;
+        private final long offset;
+
+        private SignatureTuple(String signature, String maskedWord, String key, PatternType type, long offset) {
+            this.signature = signature;
+            this.maskedWord = maskedWord;
+            this.key = key;
+            this.type = type;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * A sentence which is a match in the group of the key
+     */
+    private static class GroupTuple {
+        private static final Comparator<GroupTuple> ORDER = Comparator.comparing((GroupTuple t) -> t.type)
+                .thenComparing(t -> t.key)
+                .thenComparingLong(t -> t.offset);
+
+        private static final TupleCodec<GroupTuple> CODEC = new TupleCodec<GroupTuple>() {
+            @Override
+            public void write(DataOutputStream out, GroupTuple tuple) throws IOException {
+                TupleCodec.writeString(out, tuple.key);
+                out.writeByte(tuple.type.ordinal());
+                out.writeLong(tuple.offset);
+            }
+
+            @Override
+            public GroupTuple read(DataInputStream in) throws IOException {
+                return new GroupTuple(TupleCodec.readString(in), PatternType.values()[in.readByte()], in.readLong());
+            }
+
+            @Override
+            public long sizeInBytes(GroupTuple tuple) {
+                return 80 + 2L * tuple.key.length();
+            }
+        };
+
+        private final String key;
+        private final PatternType type;
+        private final long offset;
+
+        private GroupTuple(String key, PatternType type, long offset) {
+            this.key = key;
+            this.type = type;
+            this.offset = offset;
+        }
+    }
+}
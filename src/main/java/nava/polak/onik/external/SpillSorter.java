@@ -0,0 +1,199 @@
+package nava.polak.onik.external;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sort tuples which do not fit in memory.
+ * Tuples are added into a buffer. When the buffer reaches the memory budget it is sorted and written into a run file.
+ * At the end the runs are merged, so the tuples can be read sorted while keeping only a buffer per run in memory.
+ * @param <T> the tuple type
+ */
+public class SpillSorter<T> {
+
+    /**
+     * Maximal number of runs merged at once. More runs are merged first into bigger runs
+     */
+    private static final int MAX_MERGED_RUNS = 64;
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private final Path dir;
+    private final String name;
+    private final Comparator<T> comparator;
+    private final TupleCodec<T> codec;
+    private final long budgetBytes;
+
+    private final List<T> buffer = new ArrayList<>();
+    private long bufferBytes;
+
+    private final List<Run> runs = new ArrayList<>();
+    private long tupleCount;
+
+    /**
+     * @param dir where the run files are written
+     * @param name prefix of the run files
+     * @param budgetBytes memory for the sort buffer
+     */
+    public SpillSorter(Path dir, String name, Comparator<T> comparator, TupleCodec<T> codec, long budgetBytes) {
+        this.dir = dir;
+        this.name = name;
+        this.comparator = comparator;
+        this.codec = codec;
+        this.budgetBytes = budgetBytes;
+    }
+
+    public void add(T tuple) throws IOException {
+        buffer.add(tuple);
+        bufferBytes += codec.sizeInBytes(tuple);
+        tupleCount++;
+        if (bufferBytes >= budgetBytes)
+            spill();
+    }
+
+    public long getTupleCount() {
+        return tupleCount;
+    }
+
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * write the remaining tuples and merge the runs until they can be merged at once
+     */
+    public void finish() throws IOException {
+        if (!buffer.isEmpty())
+            spill();
+        while (runs.size() > MAX_MERGED_RUNS) {
+            List<Run> merged = new ArrayList<>(runs.subList(0, MAX_MERGED_RUNS));
+            runs.subList(0, MAX_MERGED_RUNS).clear();
+            Run run = newRun();
+            try (SortedIterator iterator = new SortedIterator(merged);
+                 DataOutputStream out = open(run)) {
+                T tuple;
+                while ((tuple = iterator.next()) != null) {
+                    codec.write(out, tuple);
+                    run.count++;
+                }
+            }
+            for (Run mergedRun : merged)
+                Files.deleteIfExists(mergedRun.path);
+            runs.add(run);
+        }
+    }
+
+    /**
+     * read all the tuples sorted. Can be called more than once after finish()
+     */
+    public SortedIterator iterator() throws IOException {
+        return new SortedIterator(runs);
+    }
+
+    /**
+     * delete the run files
+     */
+    public void delete() throws IOException {
+        for (Run run : runs)
+            Files.deleteIfExists(run.path);
+        runs.clear();
+    }
+
+    private void spill() throws IOException {
+        buffer.sort(comparator);
+        Run run = newRun();
+        try (DataOutputStream out = open(run)) {
+            for (T tuple : buffer)
+                codec.write(out, tuple);
+        }
+        run.count = buffer.size();
+        buffer.clear();
+        bufferBytes = 0;
+        runs.add(run);
+    }
+
+    private Run newRun() throws IOException {
+        return new Run(Files.createTempFile(dir, name, ".run"));
+    }
+
+    private DataOutputStream open(Run run) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run.path), IO_BUFFER_SIZE));
+    }
+
+    private static class Run {
+        private final Path path;
+        private long count;
+
+        private Run(Path path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * Merge of the sorted runs
+     */
+    public class SortedIterator implements Closeable {
+        private final PriorityQueue<RunReader> queue;
+        private final List<RunReader> readers = new ArrayList<>();
+
+        private SortedIterator(List<Run> runs) throws IOException {
+            queue = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> comparator.compare(a.current, b.current));
+            for (Run run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.advance())
+                    queue.add(reader);
+            }
+        }
+
+        /**
+         * @return the next tuple or null when all tuples were read
+         */
+        public T next() throws IOException {
+            RunReader reader = queue.poll();
+            if (reader == null)
+                return null;
+            T tuple = reader.current;
+            if (reader.advance())
+                queue.add(reader);
+            return tuple;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunReader reader : readers)
+                reader.in.close();
+        }
+    }
+
+    private class RunReader {
+        private final DataInputStream in;
+        private long remaining;
+        private T current;
+
+        private RunReader(Run run) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.path), IO_BUFFER_SIZE));
+            remaining = run.count;
+        }
+
+        private boolean advance() throws IOException {
+            if (remaining == 0) {
+                current = null;
+                return false;
+            }
+            remaining--;
+            current = codec.read(in);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package nava.polak.onik.external;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Write and read tuples of a spill run
+ * @param <T> the tuple type
+ */
+public interface TupleCodec<T> {
+
+    void write(DataOutputStream out, T tuple) throws IOException;
+
+    T read(DataInputStream in) throws IOException;
+
+    /**
+     * @return estimated memory taken by the tuple, used to keep the sort buffer in the memory budget
+     */
+    long sizeInBytes(T tuple);
+
+    /**
+     * write the UTF-8 bytes of the string after their length. Unlike writeUTF, it is not limited to 64KB
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,164 @@
+package nava.polak.onik.index;
+
+import nava.polak.onik.model.GroupKey;
+import nava.polak.onik.model.IntList;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.ResultsPerType;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The groups of similar sentences. Each group has an id, given in the order the groups are found.
+ * A sentence has a single key per type, so it can be only in one group of each type.
+ * This is kept in a bit per sentence and type, so a sentence joins its group once and in constant time,
+ * no matter how many matches it has in the group.
+ */
+public class GroupTable {
+
+    private final LongIntHashMap keyToGroup = new LongIntHashMap();
+    private final List<GroupKey> keys = new ArrayList<>();
+    private final List<ResultsPerType> groups = new ArrayList<>();
+
+    /**
+     * The sentences which are in a group, per type. Bit i is the sentence joinedBase + i
+     */
+    private final BitSet[] joined = new BitSet[PatternType.values().length];
+    private int joinedBase;
+
+    /**
+     * The groups which got new sentences since last taken, when tracking changes
+     */
+    private IntList changed;
+    private final BitSet changedGroups = new BitSet();
+
+    public GroupTable() {
+        for (int i = 0; i < joined.length; i++)
+            joined[i] = new BitSet();
+    }
+
+    /**
+     * @return the id of the group of the key. A new group is created for a new key
+     */
+    public int getGroupId(GroupKey key) {
+        return getGroupId(key.pack());
+    }
+
+    /**
+     * @param key the key packed into a long, see GroupKey.pack
+     * @return the id of the group of the key. A new group is created for a new key. Does not allocate for an existing key
+     */
+    public int getGroupId(long key) {
+        int groupId = keyToGroup.get(key);
+        if (groupId == LongIntHashMap.MISSING) {
+            GroupKey groupKey = GroupKey.unpack(key);
+            groupId = groups.size();
+            keyToGroup.put(key, groupId);
+            keys.add(groupKey);
+            groups.add(new ResultsPerType(groupKey.getType()));
+        }
+        return groupId;
+    }
+
+    /**
+     * add the sentence to the group if it is not in it yet
+     * @return true if the sentence was added
+     */
+    public boolean join(int groupId, int index) {
+        ResultsPerType group = groups.get(groupId);
+        BitSet typeJoined = joined[group.getType().ordinal()];
+        if (typeJoined.get(index - joinedBase))
+            return false;
+        typeJoined.set(index - joinedBase);
+        group.addRecord(index);
+        if (changed != null && !changedGroups.get(groupId)) {
+            changedGroups.set(groupId);
+            changed.add(groupId);
+        }
+        return true;
+    }
+
+    public boolean isJoined(PatternType type, int index) {
+        return index >= joinedBase && joined[type.ordinal()].get(index - joinedBase);
+    }
+
+    /**
+     * keep the ids of the groups which get new sentences, see takeChanged()
+     */
+    public void trackChanges() {
+        if (changed == null)
+            changed = new IntList();
+    }
+
+    /**
+     * @return the ids of the groups which got new sentences since the last call, in the order they changed
+     */
+    public int[] takeChanged() {
+        int[] groupIds = changed.toArray();
+        changed.clear();
+        changedGroups.clear();
+        return groupIds;
+    }
+
+    /**
+     * remove the sentences smaller than the watermark, i.e. out of the window, and the groups left empty.
+     * The remaining groups get new ids, so it should not be called while group ids are held
+     */
+    public void removeBefore(int watermark) {
+        if (watermark <= joinedBase)
+            return;
+        for (int i = 0; i < joined.length; i++)
+            joined[i] = joined[i].get(Math.min(watermark - joinedBase, joined[i].length()),
+                    Math.max(watermark - joinedBase, joined[i].length()));
+        joinedBase = watermark;
+
+        List<GroupKey> oldKeys = new ArrayList<>(keys);
+        List<ResultsPerType> oldGroups = new ArrayList<>(groups);
+        keys.clear();
+        groups.clear();
+        keyToGroup.clear();
+        for (int groupId = 0; groupId < oldGroups.size(); groupId++) {
+            ResultsPerType group = oldGroups.get(groupId);
+            group.removeBefore(watermark);
+            if (group.size() == 0)
+                continue;
+            keyToGroup.put(oldKeys.get(groupId).pack(), groups.size());
+            keys.add(oldKeys.get(groupId));
+            groups.add(group);
+        }
+        if (changed != null)
+            takeChanged();
+    }
+
+    public ResultsPerType getGroup(int groupId) {
+        return groups.get(groupId);
+    }
+
+    public GroupKey getKey(int groupId) {
+        return keys.get(groupId);
+    }
+
+    /**
+     * @return the groups in the order they were found
+     */
+    public List<ResultsPerType> getGroups() {
+        return groups;
+    }
+
+    public int size() {
+        return groups.size();
+    }
+
+    /**
+     * add the groups of other table
+     */
+    public void addAll(GroupTable other) {
+        for (int groupId = 0; groupId < other.size(); groupId++) {
+            int target = getGroupId(other.getKey(groupId));
+            ResultsPerType group = other.getGroup(groupId);
+            for (int i = 0; i < group.size(); i++)
+                join(target, group.getRecord(i));
+        }
+    }
+}
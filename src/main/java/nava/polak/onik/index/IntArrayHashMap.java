@@ -0,0 +1,105 @@
+package nava.polak.onik.index;
+
+import java.util.Arrays;
+
+/**
+ * Map of int array keys to values, in open addressing arrays with linear probing.
+ * A key is given as the prefix of a reused array, and is copied only when it is put, so get does not allocate.
+ * @param <V> the value type
+ */
+public class IntArrayHashMap<V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[][] keys;
+    private int[] hashes;
+
+    /**
+     * The value of the key in the same slot, null in an empty slot
+     */
+    private Object[] values;
+    private int size;
+
+    public IntArrayHashMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param key the key is the first length values of this array
+     * @return the value of the key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int[] key, int length) {
+        int hash = hash(key, length);
+        int mask = keys.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            if (values[slot] == null)
+                return null;
+            if (hashes[slot] == hash && equals(keys[slot], key, length))
+                return (V) values[slot];
+        }
+    }
+
+    /**
+     * add a key which is not in the map
+     * @param key the key is the first length values of this array, which are copied
+     */
+    public void put(int[] key, int length, V value) {
+        //the table is at most half full, so a probe ends soon
+        if (size * 2 >= keys.length)
+            resize();
+        insert(Arrays.copyOf(key, length), hash(key, length), value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void insert(int[] key, int hash, Object value) {
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (values[slot] != null)
+            slot = (slot + 1) & mask;
+        keys[slot] = key;
+        hashes[slot] = hash;
+        values[slot] = value;
+        size++;
+    }
+
+    private void resize() {
+        int[][] oldKeys = keys;
+        int[] oldHashes = hashes;
+        Object[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null)
+                insert(oldKeys[i], oldHashes[i], oldValues[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity][];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+        size = 0;
+    }
+
+    private static boolean equals(int[] stored, int[] key, int length) {
+        if (stored.length != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (stored[i] != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    private static int hash(int[] key, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++)
+            hash = 31 * hash + key[i];
+        //spread the bits of the ids over the slot
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,295 @@
+package nava.polak.onik.index;
+
+import java.util.Arrays;
+
+/**
+ * Sorted list of sentence indexes where a word exists.
+ * The sentences are indexed in the order they are read, so the list is append only and always sorted.
+ * The indexes are kept as primitive int array. When the indexes are dense, i.e. the word exists in most of
+ * the sentences in the range of the list, they are kept as a bitmap which takes less memory.
+ */
+public class IntPostingList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * A bitmap is used when it takes less memory than the array
+     */
+    private static final int BITS_PER_INDEX = Integer.SIZE;
+
+    /**
+     * A bitmap grows back into array when it is much bigger than the array would be
+     */
+    private static final int SPARSE_FACTOR = 2;
+
+    /**
+     * The indexes when the list is sparse. null when the list is a bitmap
+     */
+    private int[] indexes = new int[INITIAL_CAPACITY];
+
+    /**
+     * The indexes when the list is dense. Bit i in the bitmap is the index bitmapBase + i
+     */
+    private long[] bitmap;
+    private int bitmapBase;
+
+    private int size;
+    private int last = -1;
+
+    public IntPostingList() {
+    }
+
+    public IntPostingList(int index) {
+        add(index);
+    }
+
+    /**
+     * add index to the list. The index should not be smaller than the last added index
+     */
+    public void add(int index) {
+        if (index <= last) {
+            if (index == last)
+                return;
+            throw new IllegalArgumentException("Index " + index + " is added after bigger index " + last);
+        }
+
+        if (bitmap != null)
+            addToBitmap(index);
+        else
+            addToArray(index);
+        last = index;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getLast() {
+        return last;
+    }
+
+    public boolean isBitmap() {
+        return bitmap != null;
+    }
+
+    public boolean contains(int index) {
+        if (bitmap != null)
+            return bitmapContains(index);
+        return Arrays.binarySearch(indexes, 0, size, index) >= 0;
+    }
+
+    /**
+     * copy the indexes in ascending order into the buffer
+     * @return the number of indexes copied
+     */
+    public int toArray(int[] buffer) {
+        if (bitmap == null) {
+            System.arraycopy(indexes, 0, buffer, 0, size);
+            return size;
+        }
+        int count = 0;
+        for (int w = 0; w < bitmap.length; w++) {
+            long word = bitmap[w];
+            while (word != 0) {
+                buffer[count++] = bitmapBase + (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * remove the indexes smaller than the watermark, i.e. of sentences which are out of the window
+     */
+    public void removeBefore(int watermark) {
+        if (bitmap != null) {
+            removeBeforeInBitmap(watermark);
+            return;
+        }
+        int from = Arrays.binarySearch(indexes, 0, size, watermark);
+        if (from < 0)
+            from = -from - 1;
+        if (from == 0)
+            return;
+        size -= from;
+        if (size * 4 < indexes.length && indexes.length > INITIAL_CAPACITY)
+            indexes = Arrays.copyOfRange(indexes, from, from + Math.max(INITIAL_CAPACITY, size * 2));
+        else
+            System.arraycopy(indexes, from, indexes, 0, size);
+    }
+
+    /**
+     * The memory taken by the indexes
+     */
+    public long sizeInBytes() {
+        return bitmap != null ? (long) bitmap.length * Long.BYTES : (long) indexes.length * Integer.BYTES;
+    }
+
+    /**
+     * find the indexes which exists in both lists, without allocating memory
+     * @param buffer the intersection is written into. Its length should be at least the size of the smaller list
+     * @return the number of indexes in the intersection
+     */
+    public static int intersect(IntPostingList first, IntPostingList second, int[] buffer) {
+        if (first.isEmpty() || second.isEmpty())
+            return 0;
+        if (first.bitmap != null && second.bitmap != null)
+            return intersectBitmaps(first, second, buffer);
+        if (first.bitmap != null)
+            return intersectArrayWithBitmap(second, first, buffer);
+        if (second.bitmap != null)
+            return intersectArrayWithBitmap(first, second, buffer);
+
+        //galloping is faster when one list is much smaller than the other
+        if (first.size * 32 < second.size)
+            return gallop(first, second, buffer);
+        if (second.size * 32 < first.size)
+            return gallop(second, first, buffer);
+        return merge(first, second, buffer);
+    }
+
+    private static int merge(IntPostingList first, IntPostingList second, int[] buffer) {
+        int[] a = first.indexes;
+        int[] b = second.indexes;
+        int i = 0, j = 0, count = 0;
+        while (i < first.size && j < second.size) {
+            if (a[i] < b[j])
+                i++;
+            else if (a[i] > b[j])
+                j++;
+            else {
+                buffer[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * search each index of the small list in the big list, moving forward in exponential steps
+     */
+    private static int gallop(IntPostingList small, IntPostingList big, int[] buffer) {
+        int[] a = small.indexes;
+        int[] b = big.indexes;
+        int count = 0;
+        int from = 0;
+        for (int i = 0; i < small.size && from < big.size; i++) {
+            int value = a[i];
+            int step = 1;
+            int to = from;
+            while (to < big.size && b[to] < value) {
+                from = to + 1;
+                to += step;
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(b, from, Math.min(to + 1, big.size), value);
+            if (found >= 0) {
+                buffer[count++] = value;
+                from = found + 1;
+            } else {
+                from = -found - 1;
+            }
+        }
+        return count;
+    }
+
+    private static int intersectArrayWithBitmap(IntPostingList array, IntPostingList bitmap, int[] buffer) {
+        int count = 0;
+        for (int i = 0; i < array.size; i++) {
+            int value = array.indexes[i];
+            if (bitmap.bitmapContains(value))
+                buffer[count++] = value;
+        }
+        return count;
+    }
+
+    private static int intersectBitmaps(IntPostingList first, IntPostingList second, int[] buffer) {
+        //the bitmap bases are aligned to 64, so the words are aligned as well
+        int base = Math.max(first.bitmapBase, second.bitmapBase);
+        int end = Math.min(first.bitmapBase + (first.bitmap.length << 6), second.bitmapBase + (second.bitmap.length << 6));
+        int count = 0;
+        for (int start = base; start < end; start += 64) {
+            long word = first.bitmap[(start - first.bitmapBase) >>> 6] & second.bitmap[(start - second.bitmapBase) >>> 6];
+            while (word != 0) {
+                buffer[count++] = start + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return count;
+    }
+
+    private void addToArray(int index) {
+        if (size == indexes.length) {
+            //check if bitmap is smaller before growing the array
+            long range = (long) index - (indexes[0] & ~63) + 1;
+            if (range < (long) (size + 1) * BITS_PER_INDEX) {
+                convertToBitmap(index);
+                addToBitmap(index);
+                return;
+            }
+            indexes = Arrays.copyOf(indexes, size * 2);
+        }
+        indexes[size] = index;
+    }
+
+    private void addToBitmap(int index) {
+        int word = (index - bitmapBase) >>> 6;
+        if (word >= bitmap.length) {
+            //check if array is smaller before growing the bitmap
+            long range = (long) index - bitmapBase + 1;
+            if (range > (long) (size + 1) * BITS_PER_INDEX * SPARSE_FACTOR) {
+                convertToArray();
+                addToArray(index);
+                return;
+            }
+            bitmap = Arrays.copyOf(bitmap, Math.max(word + 1, bitmap.length * 2));
+        }
+        bitmap[word] |= 1L << ((index - bitmapBase) & 63);
+    }
+
+    private boolean bitmapContains(int index) {
+        if (index < bitmapBase)
+            return false;
+        int word = (index - bitmapBase) >>> 6;
+        return word < bitmap.length && (bitmap[word] & (1L << ((index - bitmapBase) & 63))) != 0;
+    }
+
+    private void removeBeforeInBitmap(int watermark) {
+        if (watermark <= bitmapBase)
+            return;
+        //the base stays aligned to 64, so bitmaps can be intersected word by word
+        int newBase = watermark & ~63;
+        int firstWord = Math.min((newBase - bitmapBase) >>> 6, bitmap.length);
+        for (int w = 0; w < firstWord; w++)
+            size -= Long.bitCount(bitmap[w]);
+        long[] kept = Arrays.copyOfRange(bitmap, firstWord, Math.max(firstWord + 1, bitmap.length));
+        long below = (1L << (watermark & 63)) - 1;
+        size -= Long.bitCount(kept[0] & below);
+        kept[0] &= ~below;
+        bitmap = kept;
+        bitmapBase = newBase;
+    }
+
+    private void convertToBitmap(int nextIndex) {
+        bitmapBase = indexes[0] & ~63;
+        bitmap = new long[((nextIndex - bitmapBase) >>> 6) + 1];
+        for (int i = 0; i < size; i++) {
+            int offset = indexes[i] - bitmapBase;
+            bitmap[offset >>> 6] |= 1L << (offset & 63);
+        }
+        indexes = null;
+    }
+
+    private void convertToArray() {
+        int[] array = new int[Math.max(INITIAL_CAPACITY, size * 2)];
+        toArray(array);
+        indexes = array;
+        bitmap = null;
+    }
+}
@@ -0,0 +1,120 @@
+package nava.polak.onik.index;
+
+/**
+ * Map of a word id to the sorted indexes of the sentences where this word exists.
+ * Kept in open addressing arrays with linear probing, so the ids are not boxed and a lookup does not allocate.
+ */
+public class KeyToPostingListMap {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Get the entries of the map
+     */
+    public interface PostingListConsumer {
+        void accept(int key, IntPostingList postingList);
+    }
+
+    private int[] keys = new int[INITIAL_CAPACITY];
+
+    /**
+     * The posting list of the key in the same slot, null in an empty slot
+     */
+    private IntPostingList[] postingLists = new IntPostingList[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * add the sentence index to the key. The indexes should be added in ascending order
+     */
+    public int put(int key, int index) {
+        IntPostingList postingList = get(key);
+        if (postingList != null) {
+            postingList.add(index);
+            return index;
+        }
+        //the table is at most half full, so a probe ends soon
+        if (size * 2 >= keys.length)
+            rehash(keys.length * 2);
+        insert(key, new IntPostingList(index));
+        return index;
+    }
+
+    public IntPostingList get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            IntPostingList postingList = postingLists[slot];
+            if (postingList == null || keys[slot] == key)
+                return postingList;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(PostingListConsumer action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (postingLists[slot] != null)
+                action.accept(keys[slot], postingLists[slot]);
+        }
+    }
+
+    /**
+     * remove the indexes smaller than the watermark, and the keys left without indexes
+     */
+    public void removeBefore(int watermark) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            IntPostingList postingList = postingLists[slot];
+            if (postingList == null)
+                continue;
+            if (postingList.getLast() < watermark) {
+                postingLists[slot] = null;
+                size--;
+                continue;
+            }
+            postingList.removeBefore(watermark);
+        }
+        //the probes of the remaining keys may pass through the removed slots
+        rehash(keys.length);
+    }
+
+    /**
+     * The memory taken by the indexes of all keys
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (IntPostingList postingList : postingLists) {
+            if (postingList != null)
+                bytes += postingList.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    private void insert(int key, IntPostingList postingList) {
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        while (postingLists[slot] != null)
+            slot = (slot + 1) & mask;
+        keys[slot] = key;
+        postingLists[slot] = postingList;
+        size++;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        IntPostingList[] oldPostingLists = postingLists;
+        keys = new int[capacity];
+        postingLists = new IntPostingList[capacity];
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldPostingLists[slot] != null)
+                insert(oldKeys[slot], oldPostingLists[slot]);
+        }
+    }
+
+    private static int slot(int key, int mask) {
+        //spread the sequential ids over the slots
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,94 @@
+package nava.polak.onik.index;
+
+import java.util.Arrays;
+
+/**
+ * Map of long keys to non negative int values, in open addressing arrays with linear probing.
+ * The keys and values are not boxed, so get and put of an existing key do not allocate.
+ */
+public class LongIntHashMap {
+
+    /**
+     * The value of a missing key, and of an empty slot
+     */
+    public static final int MISSING = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    public LongIntHashMap() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @return the value of the key, or MISSING
+     */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            if (values[slot] == MISSING)
+                return MISSING;
+            if (keys[slot] == key)
+                return values[slot];
+        }
+    }
+
+    /**
+     * @param value non negative
+     */
+    public void put(long key, int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("The value should be non negative, got " + value);
+        //the table is at most half full, so a probe ends soon
+        if (size * 2 >= keys.length)
+            resize();
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); ; slot = (slot + 1) & mask) {
+            if (values[slot] == MISSING) {
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+                return;
+            }
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(values, MISSING);
+        size = 0;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING)
+                put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        size = 0;
+    }
+
+    private static int slot(long key, int mask) {
+        //spread the bits of the ids over the slot
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+}
@@ -0,0 +1,216 @@
+package nava.polak.onik.index;
+
+import nava.polak.onik.model.IntArrayKey;
+import nava.polak.onik.model.IntList;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Approximate index of the rest part, which finds sentences with the same name and action whose rest differs
+ * by up to maxDistance words, including words inserted or deleted.
+ * The distinct rests of each name and action are the variants. The MinHash signature of a new variant is computed over
+ * the shingles of its words, and split into bands. Variants sharing a band of the same name and action are candidates,
+ * and each candidate is verified with the edit distance in words. A sentence with a known variant joins the group
+ * of the variant without any comparison.
+ * Similar variants are found with high probability - the exact matches of a single word are found by SignatureIndex.
+ */
+public class LshIndex {
+
+    private final GroupTable groups;
+    private final int maxDistance;
+    private final int bands;
+    private final int rows;
+    private final int shingleSize;
+
+    /**
+     * coefficients of the hash functions of the MinHash signature
+     */
+    private final long[] multipliers;
+    private final long[] increments;
+
+    private final Map<IntArrayKey, Variant> variants = new HashMap<>();
+    private final Map<Long, List<Variant>> buckets = new HashMap<>();
+
+    /**
+     * Marks the candidates already verified for the current variant
+     */
+    private int visit;
+
+    /**
+     * @param maxDistance maximal number of words substituted, inserted or deleted between similar rests
+     * @param bands number of bands of the signature. More bands find more candidates
+     * @param rows number of hash values in a band. More rows find less, more similar, candidates
+     * @param shingleSize number of consecutive words hashed together
+     */
+    public LshIndex(GroupTable groups, int maxDistance, int bands, int rows, int shingleSize) {
+        if (maxDistance < 1 || bands < 1 || rows < 1 || shingleSize < 1)
+            throw new IllegalArgumentException("The distance, bands, rows and shingle size should be positive");
+        this.groups = groups;
+        this.maxDistance = maxDistance;
+        this.bands = bands;
+        this.rows = rows;
+        this.shingleSize = shingleSize;
+        //fixed seed, so the results do not change between runs
+        Random random = new Random(0x5eed);
+        multipliers = new long[bands * rows];
+        increments = new long[bands * rows];
+        for (int i = 0; i < multipliers.length; i++) {
+            multipliers[i] = random.nextLong() | 1;
+            increments[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * find the sentences similar to the record and index it
+     * @param index the record index in sentences array
+     */
+    public void add(Record record, int index) {
+        IntArrayKey variantKey = new IntArrayKey(new int[]{record.getNameId(), record.getActionId(), record.getRestId()});
+        Variant variant = variants.get(variantKey);
+        if (variant != null) {
+            variant.indexes.add(index);
+            if (variant.groupId >= 0)
+                groups.join(variant.groupId, index);
+            return;
+        }
+
+        variant = new Variant(record, index);
+        variants.put(variantKey, variant);
+        visit++;
+        long[] signature = signature(record.getRestIds());
+        for (int band = 0; band < bands; band++) {
+            List<Variant> bucket = buckets.computeIfAbsent(bandKey(record, signature, band), k -> new ArrayList<>(2));
+            for (Variant candidate : bucket) {
+                if (candidate.visit == visit)
+                    continue;
+                candidate.visit = visit;
+                if (candidate.isSimilar(variant))
+                    join(candidate, variant, record);
+            }
+            bucket.add(variant);
+        }
+    }
+
+    private void join(Variant candidate, Variant variant, Record record) {
+        if (variant.groupId < 0) {
+            variant.groupId = groups.getGroupId(record.getKeyAccordingType(PatternType.REST));
+            groups.join(variant.groupId, variant.indexes.get(0));
+        }
+        if (candidate.groupId < 0) {
+            candidate.groupId = variant.groupId;
+            for (int i = 0; i < candidate.indexes.size(); i++)
+                groups.join(candidate.groupId, candidate.indexes.get(i));
+        }
+    }
+
+    /**
+     * @return the MinHash value of each hash function over the shingles of the words
+     */
+    private long[] signature(int[] words) {
+        long[] signature = new long[multipliers.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        int shingles = Math.max(1, words.length - shingleSize + 1);
+        for (int start = 0; start < shingles; start++) {
+            long shingle = 1;
+            for (int i = start; i < Math.min(words.length, start + shingleSize); i++)
+                shingle = shingle * 31 + words[i];
+            for (int h = 0; h < signature.length; h++)
+                signature[h] = Math.min(signature[h], mix(shingle * multipliers[h] + increments[h]));
+        }
+        return signature;
+    }
+
+    /**
+     * The key of the band includes the name and action, so only sentences with the same name and action are candidates
+     */
+    private long bandKey(Record record, long[] signature, int band) {
+        long key = mix(((long) record.getNameId() << 32 | record.getActionId()) + band);
+        for (int row = 0; row < rows; row++)
+            key = mix(key * 31 + signature[band * rows + row]);
+        return key;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * The edit distance in words - the minimal number of words substituted, inserted or deleted to make the arrays equal.
+     * Only the cells up to max from the diagonal are computed
+     * @return the distance, or max + 1 if it is bigger than max
+     */
+    public static int editDistance(int[] first, int[] second, int max) {
+        if (Math.abs(first.length - second.length) > max)
+            return max + 1;
+        int over = max + 1;
+        int[] previous = new int[second.length + 1];
+        int[] current = new int[second.length + 1];
+        for (int j = 0; j <= second.length; j++)
+            previous[j] = Math.min(j, over);
+        for (int i = 1; i <= first.length; i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(second.length, i + max);
+            current[0] = Math.min(i, over);
+            if (from > 1)
+                current[from - 1] = over;
+            int rowMin = current[0];
+            for (int j = from; j <= to; j++) {
+                int distance = previous[j - 1] + (first[i - 1] == second[j - 1] ? 0 : 1);
+                distance = Math.min(distance, previous[j] + 1);
+                distance = Math.min(distance, current[j - 1] + 1);
+                current[j] = Math.min(distance, over);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < second.length)
+                current[to + 1] = over;
+            if (rowMin > max)
+                return over;
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[second.length];
+    }
+
+    /**
+     * The sentences with the same name, action and rest
+     */
+    private class Variant {
+        private final int nameId;
+        private final int actionId;
+        private final int restId;
+        private final int[] restIds;
+        private final IntList indexes = new IntList(2);
+
+        /**
+         * the group of the name and action, once the variant is similar to another variant
+         */
+        private int groupId = -1;
+        private int visit;
+
+        private Variant(Record record, int index) {
+            nameId = record.getNameId();
+            actionId = record.getActionId();
+            restId = record.getRestId();
+            restIds = record.getRestIds();
+            indexes.add(index);
+        }
+
+        private boolean isSimilar(Variant other) {
+            return nameId == other.nameId && actionId == other.actionId && restId != other.restId
+                    && editDistance(restIds, other.restIds, maxDistance) <= maxDistance;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package nava.polak.onik.index;
+
+import lombok.Getter;
+import nava.polak.onik.model.Record;
+
+/**
+ * The names, actions and rests of the sentences in a range of indexes, e.g. a time partition,
+ * each mapped to the indexes of the sentences where it exists. Used by the pairwise index.
+ */
+@Getter
+public class PartitionPostings {
+
+    private final KeyToPostingListMap nameToIndexMap = new KeyToPostingListMap();
+    private final KeyToPostingListMap actionToIndexMap = new KeyToPostingListMap();
+    private final KeyToPostingListMap restToIndexMap = new KeyToPostingListMap();
+
+    /**
+     * The index of the first sentence in the range
+     */
+    private final int firstIndex;
+
+    /**
+     * The index after the last sentence added
+     */
+    private int endIndex;
+
+    public PartitionPostings(int firstIndex) {
+        this.firstIndex = firstIndex;
+        this.endIndex = firstIndex;
+    }
+
+    /**
+     * save the parts of the record. The indexes should be added in ascending order
+     */
+    public void put(Record record, int index) {
+        nameToIndexMap.put(record.getNameId(), index);
+        actionToIndexMap.put(record.getActionId(), index);
+        restToIndexMap.put(record.getRestId(), index);
+        endIndex = index + 1;
+    }
+
+    /**
+     * remove the indexes smaller than the watermark
+     */
+    public void removeBefore(int watermark) {
+        nameToIndexMap.removeBefore(watermark);
+        actionToIndexMap.removeBefore(watermark);
+        restToIndexMap.removeBefore(watermark);
+    }
+}
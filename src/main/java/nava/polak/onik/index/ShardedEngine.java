@@ -0,0 +1,175 @@
+package nava.polak.onik.index;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Index and match the sentences on several threads.
+ * Sentences are similar only if they have the same 2 identical parts, i.e. the same key.
+ * So for each type the record is sent to the shard of its key, and each shard finds the matches of its keys
+ * with its own signature index on its own thread. The results of the shards have different keys and are merged
+ * at the end. The results are the same as of a single signature index.
+ */
+@Slf4j
+public class ShardedEngine {
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final PatternType[] TYPES = PatternType.values();
+
+    private final Shard[] shards;
+
+    /**
+     * The batch being filled for each shard
+     */
+    private final ShardBatch[] pending;
+
+    public ShardedEngine(int shardCount) {
+        shards = new Shard[shardCount];
+        pending = new ShardBatch[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i);
+            pending[i] = new ShardBatch();
+            shards[i].start();
+        }
+    }
+
+    /**
+     * send the record to the shards of its keys
+     * @param record the record to add
+     * @param index the record index in sentences array
+     */
+    public void add(Record record, int index) {
+        for (PatternType type : TYPES) {
+            int shard = shardOf(record, type);
+            ShardBatch batch = pending[shard];
+            batch.add(record, index, type);
+            if (batch.size == BATCH_SIZE) {
+                shards[shard].send(batch);
+                pending[shard] = new ShardBatch();
+            }
+        }
+    }
+
+    /**
+     * wait for all shards to finish and merge their results
+     * @param groups the groups of all shards are added into
+     */
+    public void finish(GroupTable groups) {
+        for (int i = 0; i < shards.length; i++) {
+            shards[i].send(pending[i]);
+            shards[i].send(ShardBatch.END);
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for shard " + shard.getName(), e);
+            }
+            if (shard.failure != null)
+                throw new IllegalStateException("Shard " + shard.getName() + " failed", shard.failure);
+            groups.addAll(shard.groups);
+        }
+    }
+
+    /**
+     * The shard depends on the ids of the 2 identical parts
+     */
+    private int shardOf(Record record, PatternType type) {
+        int first, second;
+        switch (type) {
+            case NAME:
+                first = record.getActionId();
+                second = record.getRestId();
+                break;
+            case ACTION:
+                first = record.getNameId();
+                second = record.getRestId();
+                break;
+            default:
+                first = record.getNameId();
+                second = record.getActionId();
+        }
+        int hash = (first * 31 + second) * 31 + type.ordinal();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return (hash & Integer.MAX_VALUE) % shards.length;
+    }
+
+    /**
+     * Records sent together to a shard
+     */
+    private static class ShardBatch {
+        private static final ShardBatch END = new ShardBatch();
+
+        private final Record[] records = new Record[BATCH_SIZE];
+        private final int[] indexes = new int[BATCH_SIZE];
+        private final PatternType[] types = new PatternType[BATCH_SIZE];
+        private int size;
+
+        private void add(Record record, int index, PatternType type) {
+            records[size] = record;
+            indexes[size] = index;
+            types[size] = type;
+            size++;
+        }
+    }
+
+    /**
+     * Thread indexing the records of its keys
+     */
+    private static class Shard extends Thread {
+        private final BlockingQueue<ShardBatch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final GroupTable groups = new GroupTable();
+        private final SignatureIndex index = new SignatureIndex(groups);
+        private volatile Throwable failure;
+
+        private Shard(int number) {
+            super("shard-" + number);
+            setDaemon(true);
+        }
+
+        private void send(ShardBatch batch) {
+            try {
+                queue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while sending records to " + getName(), e);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    ShardBatch batch = queue.take();
+                    if (batch == ShardBatch.END)
+                        return;
+                    for (int i = 0; i < batch.size; i++)
+                        index.add(batch.types[i], batch.records[i], batch.indexes[i]);
+                }
+            } catch (Throwable e) {
+                log.error("Shard " + getName() + " failed", e);
+                failure = e;
+                //keep taking batches so the sender is not blocked
+                drain();
+            }
+        }
+
+        private void drain() {
+            try {
+                while (queue.take() != ShardBatch.END) {
+                    //ignore the records
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package nava.polak.onik.index;
+
+import nava.polak.onik.model.IntList;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+
+import java.util.Arrays;
+
+/**
+ * Index which finds sentences with single difference without comparing the sentences to each other.
+ * For each type, a signature is saved per word of the changing part, where the word in this position is masked.
+ * For example the sentence "Naomi is eating at a diner" has the signatures of type REST:
+ * Naomi|eating|* a diner, Naomi|eating|at * diner, Naomi|eating|at a *
+ * and the signature of type NAME: *|eating|at a diner
+ * Sentences sharing a signature with a different masked word are different in exactly this word, so they are a match.
+ * The work per sentence depends on the number of its words and not on the number of sentences with the same parts.
+ * The signature is built in a reused array, so only a new signature or a growing bucket allocates.
+ */
+public class SignatureIndex {
+
+    /**
+     * The id written instead of the masked word
+     */
+    private static final int MASK = -1;
+
+    private static final PatternType[] TYPES = PatternType.values();
+
+    /**
+     * The sentences saved per signature
+     */
+    private final IntArrayHashMap<SignatureBucket> signatureToBucket = new IntArrayHashMap<>();
+
+    /**
+     * The signature of the current word, in its first signatureLength values
+     */
+    private int[] signature = new int[16];
+    private int signatureLength;
+
+    /**
+     * The groups of similar sentences, with the same keys as created by the pairwise comparison
+     */
+    private final GroupTable groups;
+
+    public SignatureIndex(GroupTable groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * find the matches of the record and index it
+     * @param record the record to add
+     * @param index the record index in sentences array
+     */
+    public void add(Record record, int index) {
+        for (PatternType type : TYPES)
+            add(type, record, index);
+    }
+
+    /**
+     * find the matches of the record where the part of the given type is changing and index it
+     */
+    public void add(PatternType type, Record record, int index) {
+        int wordCount = record.getWordCount(type);
+        for (int position = 0; position < wordCount; position++) {
+            constructSignature(type, record, position);
+            addToBucket(record.getWordId(type, position), type, record, index);
+        }
+    }
+
+    private void addToBucket(int maskedWord, PatternType type, Record record, int index) {
+        SignatureBucket bucket = signatureToBucket.get(signature, signatureLength);
+        //first sentence with this signature
+        if (bucket == null) {
+            signatureToBucket.put(signature, signatureLength, new SignatureBucket(maskedWord, index));
+            return;
+        }
+
+        //the bucket already has different words - any new sentence is a match
+        if (bucket.waitingIndexes == null) {
+            //the sentence may already be in the group by other signature
+            if (!groups.isJoined(type, index))
+                groups.join(getGroupId(type, record), index);
+            return;
+        }
+
+        //identical sentence is not a match - wait for a sentence with a different word
+        if (bucket.maskedWord == maskedWord) {
+            bucket.waitingIndexes.add(index);
+            return;
+        }
+
+        //first different word - all the waiting sentences and this one are matches
+        int groupId = getGroupId(type, record);
+        for (int i = 0; i < bucket.waitingIndexes.size(); i++)
+            groups.join(groupId, bucket.waitingIndexes.get(i));
+        groups.join(groupId, index);
+        bucket.waitingIndexes = null;
+    }
+
+    private int getGroupId(PatternType type, Record record) {
+        return groups.getGroupId(record.getKeyAccordingType(type));
+    }
+
+    /**
+     * The signature is [type, position, word ids of the identical parts, word ids of the changing part].
+     * The word in the position is masked
+     */
+    private void constructSignature(PatternType type, Record record, int position) {
+        signature[0] = type.ordinal();
+        signature[1] = position;
+        switch (type) {
+            case NAME:
+                signature[2] = record.getActionId();
+                signature[3] = record.getRestId();
+                signature[4] = MASK;
+                signatureLength = 5;
+                return;
+            case ACTION:
+                signature[2] = record.getNameId();
+                signature[3] = record.getRestId();
+                signature[4] = MASK;
+                signatureLength = 5;
+                return;
+            default:
+                int[] restIds = record.getRestIds();
+                signatureLength = 4 + restIds.length;
+                if (signature.length < signatureLength)
+                    signature = Arrays.copyOf(signature, signatureLength * 2);
+                signature[2] = record.getNameId();
+                signature[3] = record.getActionId();
+                System.arraycopy(restIds, 0, signature, 4, restIds.length);
+                signature[4 + position] = MASK;
+        }
+    }
+
+    /**
+     * The sentences sharing a signature
+     */
+    private static class SignatureBucket {
+        /**
+         * the masked word of the first sentence
+         */
+        private final int maskedWord;
+
+        /**
+         * sentences having all the same masked word. Set to null once a different word is found
+         */
+        private IntList waitingIndexes = new IntList(2);
+
+        private SignatureBucket(int maskedWord, int index) {
+            this.maskedWord = maskedWord;
+            waitingIndexes.add(index);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package nava.polak.onik.index;
+
+import lombok.Getter;
+import nava.polak.onik.model.GroupKey;
+import nava.polak.onik.model.IntArrayKey;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Find the largest groups of each type in a fixed memory, without keeping all the sentences.
+ * The number of sentences of each group key is counted by the Space-Saving algorithm: a fixed number of keys are monitored,
+ * and a new key replaces the key with the smallest count, taking its count as the possible error.
+ * So a key with more sentences than the smallest count is always monitored.
+ * Only the monitored keys keep their sentences - each distinct changing part once, with the number of its sentences
+ * and the first of them. When the input ends the group of each monitored key is found from its changing parts,
+ * and the largest groups are returned.
+ */
+public class TopKGroups {
+
+    /**
+     * The number of keys monitored per type, for each group returned
+     */
+    public static final int CAPACITY_FACTOR = 10;
+
+    /**
+     * The number of distinct changing parts kept per key. The sentences of more parts are only counted
+     */
+    public static final int MAX_PARTS = 256;
+
+    /**
+     * A group of the result
+     */
+    @Getter
+    public static class TopGroup {
+        private final GroupKey key;
+
+        /**
+         * The number of the sentences in the group, since its key was monitored
+         */
+        private final long size;
+
+        /**
+         * The group may have up to this number of sentences more, which were before its key was monitored
+         */
+        private final long error;
+
+        /**
+         * The first sentence of each changing part in the group, and the number of sentences with this part
+         */
+        private final List<Record> sentences;
+        private final List<Long> counts;
+
+        private TopGroup(GroupKey key, long size, long error, List<Record> sentences, List<Long> counts) {
+            this.key = key;
+            this.size = size;
+            this.error = error;
+            this.sentences = sentences;
+            this.counts = counts;
+        }
+    }
+
+    private final int k;
+    private final SpaceSaving[] summaries = new SpaceSaving[PatternType.values().length];
+
+    /**
+     * @param k the number of groups to find per type
+     */
+    public TopKGroups(int k) {
+        if (k <= 0)
+            throw new IllegalArgumentException("The number of groups should be positive, got " + k);
+        this.k = k;
+        for (int i = 0; i < summaries.length; i++)
+            summaries[i] = new SpaceSaving(k * CAPACITY_FACTOR);
+    }
+
+    /**
+     * count the record in the key of each type
+     */
+    public void add(Record record) {
+        for (PatternType type : PatternType.values())
+            summaries[type.ordinal()].add(record.constructKeyAccordingType(type), record, record.getPartId(type));
+    }
+
+    /**
+     * @return the largest groups of the type, the largest first
+     */
+    public List<TopGroup> getTopGroups(PatternType type) {
+        List<TopGroup> groups = new ArrayList<>();
+        for (Counter counter : summaries[type.ordinal()].counters) {
+            if (counter == null)
+                continue;
+            TopGroup group = counter.toGroup(type);
+            if (group.size > 0)
+                groups.add(group);
+        }
+        groups.sort(Comparator.comparingLong(TopGroup::getSize).reversed());
+        return groups.size() > k ? new ArrayList<>(groups.subList(0, k)) : groups;
+    }
+
+    /**
+     * The sentences of a monitored key
+     */
+    private static class Counter {
+        private GroupKey key;
+        private long count;
+        private long error;
+        private int heapIndex;
+
+        /**
+         * The changing parts by their id, in the order they were found
+         */
+        private final Map<Integer, Part> parts = new LinkedHashMap<>();
+
+        /**
+         * The sentences of the parts which were not kept
+         */
+        private long otherCount;
+
+        private void reset(GroupKey key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            parts.clear();
+            otherCount = 0;
+        }
+
+        private void add(Record record, int partId) {
+            count++;
+            Part part = parts.get(partId);
+            if (part != null)
+                part.count++;
+            else if (parts.size() < MAX_PARTS)
+                parts.put(partId, new Part(record));
+            else
+                otherCount++;
+        }
+
+        /**
+         * find the group of the key from its changing parts
+         */
+        private TopGroup toGroup(PatternType type) {
+            List<Part> members = new ArrayList<>();
+            long size = 0;
+            if (type != PatternType.REST) {
+                //single words which are different are a single word difference
+                if (parts.size() + (otherCount > 0 ? 1 : 0) >= 2) {
+                    members.addAll(parts.values());
+                    size = count - error;
+                }
+            } else {
+                members.addAll(findSimilarRests());
+                for (Part part : members)
+                    size += part.count;
+            }
+            List<Record> sentences = new ArrayList<>();
+            List<Long> counts = new ArrayList<>();
+            for (Part part : members) {
+                sentences.add(part.first);
+                counts.add(part.count);
+            }
+            return new TopGroup(key, size, error, sentences, counts);
+        }
+
+        /**
+         * @return the rests which differ from another rest by a single word, in the order they were found.
+         * Found by the signatures of the rests where a word is masked
+         */
+        private List<Part> findSimilarRests() {
+            Map<IntArrayKey, Part> signatureToPart = new HashMap<>();
+            Set<Part> similar = new HashSet<>();
+            for (Part part : parts.values()) {
+                Record record = part.first;
+                int length = record.getWordCount(PatternType.REST);
+                for (int position = 0; position < length; position++) {
+                    int[] signature = new int[length + 1];
+                    for (int i = 0; i < length; i++)
+                        signature[i] = record.getWordId(PatternType.REST, i);
+                    signature[position] = -1;
+                    signature[length] = position;
+                    Part other = signatureToPart.putIfAbsent(new IntArrayKey(signature), part);
+                    if (other != null) {
+                        similar.add(other);
+                        similar.add(part);
+                    }
+                }
+            }
+            List<Part> members = new ArrayList<>();
+            for (Part part : parts.values())
+                if (similar.contains(part))
+                    members.add(part);
+            return members;
+        }
+    }
+
+    /**
+     * A distinct changing part of a key
+     */
+    private static class Part {
+        private final Record first;
+        private long count = 1;
+
+        private Part(Record first) {
+            this.first = first;
+        }
+    }
+
+    /**
+     * The monitored keys of a type, in a min heap by their count
+     */
+    private static class SpaceSaving {
+        private final Counter[] counters;
+        private int size;
+        private final Map<GroupKey, Counter> keyToCounter = new HashMap<>();
+
+        private SpaceSaving(int capacity) {
+            counters = new Counter[capacity];
+        }
+
+        private void add(GroupKey key, Record record, int partId) {
+            Counter counter = keyToCounter.get(key);
+            if (counter == null) {
+                if (size < counters.length) {
+                    counter = new Counter();
+                    counter.reset(key, 0, 0);
+                    counter.heapIndex = size;
+                    counters[size++] = counter;
+                } else {
+                    //the key with the smallest count is replaced, and its count is the error of the new key
+                    counter = counters[0];
+                    keyToCounter.remove(counter.key);
+                    counter.reset(key, counter.count, counter.count);
+                }
+                keyToCounter.put(key, counter);
+            }
+            counter.add(record, partId);
+            siftDown(counter.heapIndex);
+        }
+
+        private void siftDown(int index) {
+            Counter counter = counters[index];
+            while (true) {
+                int child = index * 2 + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && counters[child + 1].count < counters[child].count)
+                    child++;
+                if (counters[child].count >= counter.count)
+                    break;
+                counters[index] = counters[child];
+                counters[index].heapIndex = index;
+                index = child;
+            }
+            counters[index] = counter;
+            counter.heapIndex = index;
+        }
+    }
+}
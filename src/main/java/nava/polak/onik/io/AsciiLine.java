@@ -0,0 +1,50 @@
+package nava.polak.onik.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * View of an ASCII line in a byte buffer as characters, without decoding it into a string.
+ * The same instance is reused for all the lines of the buffer.
+ */
+public class AsciiLine implements CharSequence {
+    private final ByteBuffer buffer;
+    private int start;
+    private int length;
+
+    public AsciiLine(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public AsciiLine reset(int start, int length) {
+        this.start = start;
+        this.length = length;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) buffer.get(start + index);
+    }
+
+    /**
+     * copy the characters into a string
+     */
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(start + from + i);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+}
@@ -0,0 +1,22 @@
+package nava.polak.onik.io;
+
+/**
+ * Parse the lines of a chunk of the input into a batch.
+ * Chunks are parsed in parallel, each into its own batch.
+ * @param <T> the batch type
+ */
+public interface ChunkParser<T> {
+
+    /**
+     * create the batch of a new chunk
+     */
+    T newBatch();
+
+    /**
+     * parse a line of the chunk. The line is valid only during the call
+     * @param batch the batch of the chunk
+     * @param line the line without the line terminator
+     * @param offset the offset of the line in the file
+     */
+    void parseLine(T batch, CharSequence line, long offset);
+}
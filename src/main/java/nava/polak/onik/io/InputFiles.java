@@ -0,0 +1,95 @@
+package nava.polak.onik.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The input of a run - a file, a directory of files, or a glob of files such as logs/*.gz.
+ * Files ending in .gz are decompressed while they are read.
+ */
+public class InputFiles {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String GLOB_CHARS = "*?[{";
+
+    private InputFiles() {
+    }
+
+    /**
+     * @return the files of the input, sorted by their path. A single file is returned even if it does not exist
+     */
+    public static List<Path> resolve(String input) throws IOException {
+        int globStart = indexOfGlob(input);
+        if (globStart < 0) {
+            Path path = Paths.get(input);
+            if (!Files.isDirectory(path))
+                return Collections.singletonList(path);
+            try (Stream<Path> files = Files.list(path)) {
+                return files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+        }
+        //walk from the directory before the first glob character
+        int dirEnd = Math.max(input.lastIndexOf('/', globStart), input.lastIndexOf(File.separatorChar, globStart));
+        Path dir = Paths.get(dirEnd < 0 ? "." : dirEnd == 0 ? "/" : input.substring(0, dirEnd));
+        String pattern = dirEnd < 0 ? input : input.substring(dirEnd + 1);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        if (!Files.isDirectory(dir))
+            throw new IOException("No directory " + dir + " for the input " + input);
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(dir.relativize(file)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * @return true if the input is a single file which is not compressed, so it can be read by offset
+     */
+    public static boolean isPlainFile(List<Path> files) {
+        return files.size() == 1 && !isGzip(files.get(0));
+    }
+
+    public static boolean isGzip(Path file) {
+        return file.getFileName().toString().endsWith(".gz");
+    }
+
+    /**
+     * open the file for reading its lines. A .gz file is decompressed while it is read.
+     * The lines are split the same way as Files.lines does - in \n, \r or \r\n
+     */
+    public static BufferedReader open(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        try {
+            if (isGzip(file))
+                in = new GZIPInputStream(in, BUFFER_SIZE);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    private static int indexOfGlob(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (GLOB_CHARS.indexOf(input.charAt(i)) >= 0)
+                return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,175 @@
+package nava.polak.onik.io;
+
+import nava.polak.onik.metrics.Metrics;
+import nava.polak.onik.metrics.Stage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Read the lines of a file in stages connected by bounded queues of batches:
+ * a reader thread splits the file into batches of lines, a pool of parser threads parses them,
+ * and the calling thread consumes the parsed batches in the order of the lines.
+ * When a stage falls behind, the queue before it fills and the stages before it wait, so at most
+ * queueDepth batches are read ahead of the consumer, and the disk and the parsers work while the consumer indexes.
+ */
+public class LinePipeline {
+
+    public static final int DEFAULT_QUEUE_DEPTH = 4;
+
+    private final Path path;
+    private final long from;
+    private final int parsers;
+    private final int batchLines;
+    private final int queueDepth;
+    private final Metrics metrics;
+
+    /**
+     * @param from offset of the start of a line
+     * @param parsers the number of parser threads
+     * @param batchLines the number of lines in a batch
+     * @param queueDepth the number of batches in the queue of each stage
+     */
+    public LinePipeline(Path path, long from, int parsers, int batchLines, int queueDepth, Metrics metrics) {
+        this.path = path;
+        this.from = from;
+        this.parsers = Math.max(1, parsers);
+        this.batchLines = Math.max(1, batchLines);
+        this.queueDepth = Math.max(1, queueDepth);
+        this.metrics = metrics;
+    }
+
+    /**
+     * parse all the lines of the file
+     * @param consumer get the batches in the order of the lines, on the calling thread
+     * @return the number of lines read
+     */
+    public <T> long read(ChunkParser<T> parser, Consumer<T> consumer) throws IOException {
+        BlockingQueue<LineBatch<T>> parseQueue = new ArrayBlockingQueue<>(queueDepth);
+        //the batches in the order of the lines, parsed or being parsed
+        BlockingQueue<LineBatch<T>> indexQueue = new ArrayBlockingQueue<>(queueDepth);
+        List<Thread> threads = new ArrayList<>();
+        Reader<T> reader = new Reader<>(parseQueue, indexQueue);
+        threads.add(new Thread(reader, "line-reader"));
+        for (int i = 0; i < parsers; i++)
+            threads.add(new Thread(() -> parse(parser, parseQueue), "line-parser-" + i));
+        threads.forEach(thread -> {
+            thread.setDaemon(true);
+            thread.start();
+        });
+        long lines = 0;
+        try {
+            while (true) {
+                metrics.recordQueueDepth(Stage.PARSE, parseQueue.size());
+                metrics.recordQueueDepth(Stage.INDEX, indexQueue.size());
+                LineBatch<T> batch = indexQueue.take();
+                if (batch.size == 0)
+                    break;
+                consumer.accept(batch.parsed.get());
+                lines += batch.size;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + path, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed parsing " + path + ": " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            //stop the stages, e.g. when the consumer failed
+            threads.forEach(Thread::interrupt);
+        }
+        if (reader.failure != null)
+            throw new IOException("Failed reading " + path + ": " + reader.failure.getMessage(), reader.failure);
+        return lines;
+    }
+
+    private <T> void parse(ChunkParser<T> parser, BlockingQueue<LineBatch<T>> parseQueue) {
+        try {
+            while (true) {
+                LineBatch<T> batch = parseQueue.take();
+                try {
+                    T parsed = parser.newBatch();
+                    for (int i = 0; i < batch.size; i++)
+                        parser.parseLine(parsed, batch.lines[i], batch.offsets[i]);
+                    batch.parsed.complete(parsed);
+                } catch (RuntimeException e) {
+                    batch.parsed.completeExceptionally(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            //the read ended
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The reader stage. A batch is put in the index queue before the parse queue, so the consumer gets the batches in order
+     */
+    private class Reader<T> implements Runnable {
+        private final BlockingQueue<LineBatch<T>> parseQueue;
+        private final BlockingQueue<LineBatch<T>> indexQueue;
+        private volatile IOException failure;
+
+        private Reader(BlockingQueue<LineBatch<T>> parseQueue, BlockingQueue<LineBatch<T>> indexQueue) {
+            this.parseQueue = parseQueue;
+            this.indexQueue = indexQueue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                try (LineReader reader = new LineReader(path, from)) {
+                    LineBatch<T> batch = new LineBatch<>(batchLines);
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        batch.add(line, reader.getLineOffset());
+                        if (batch.size == batchLines) {
+                            send(batch);
+                            batch = new LineBatch<>(batchLines);
+                        }
+                    }
+                    if (batch.size > 0)
+                        send(batch);
+                } catch (IOException e) {
+                    failure = e;
+                }
+                //an empty batch ends the read
+                indexQueue.put(new LineBatch<>(0));
+            } catch (InterruptedException e) {
+                //the read was stopped
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void send(LineBatch<T> batch) throws InterruptedException {
+            indexQueue.put(batch);
+            parseQueue.put(batch);
+        }
+    }
+
+    /**
+     * The lines of a batch, and the batch they are parsed into
+     */
+    private static class LineBatch<T> {
+        private final String[] lines;
+        private final long[] offsets;
+        private int size;
+        private final CompletableFuture<T> parsed = new CompletableFuture<>();
+
+        private LineBatch(int capacity) {
+            lines = new String[capacity];
+            offsets = new long[capacity];
+        }
+
+        private void add(String line, long offset) {
+            lines[size] = line;
+            offsets[size++] = offset;
+        }
+    }
+}
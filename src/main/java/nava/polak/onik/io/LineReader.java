@@ -0,0 +1,106 @@
+package nava.polak.onik.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read the lines of a file with the offset of each line.
+ * The lines are split the same way as Files.lines does - in \n, \r or \r\n, and a line which is not valid UTF-8 fails.
+ */
+public class LineReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+    /**
+     * offset in the file of the first byte in the buffer
+     */
+    private long bufferOffset;
+
+    private byte[] line = new byte[256];
+    private long lineOffset;
+
+    /**
+     * the last line ended in \r, so a \n right after it is part of its terminator
+     */
+    private boolean skipNewLine;
+
+    /**
+     * @param from offset of the start of a line
+     */
+    public LineReader(Path path, long from) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        channel.position(from);
+        bufferOffset = from;
+        buffer.limit(0);
+    }
+
+    /**
+     * @return the next line, or null at the end of the file
+     */
+    public String readLine() throws IOException {
+        int length = 0;
+        boolean ascii = true;
+        lineOffset = -1;
+        while (true) {
+            if (!buffer.hasRemaining() && !fill())
+                return lineOffset < 0 ? null : decode(length, ascii);
+            int position = buffer.position();
+            byte b = buffer.get();
+            if (skipNewLine) {
+                skipNewLine = false;
+                if (b == '\n')
+                    continue;
+            }
+            if (lineOffset < 0)
+                lineOffset = bufferOffset + position;
+            if (b == '\n' || b == '\r') {
+                skipNewLine = b == '\r';
+                return decode(length, ascii);
+            }
+            if (length == line.length)
+                line = Arrays.copyOf(line, length * 2);
+            line[length++] = b;
+            ascii &= b >= 0;
+        }
+    }
+
+    /**
+     * @return the offset of the line returned by the last readLine
+     */
+    public long getLineOffset() {
+        return lineOffset;
+    }
+
+    private boolean fill() throws IOException {
+        bufferOffset += buffer.limit();
+        buffer.clear();
+        int read = channel.read(buffer);
+        buffer.flip();
+        return read > 0;
+    }
+
+    private String decode(int length, boolean ascii) throws IOException {
+        if (ascii)
+            return new String(line, 0, length, StandardCharsets.US_ASCII);
+        return decoder.decode(ByteBuffer.wrap(line, 0, length)).toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,142 @@
+package nava.polak.onik.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Read a file by memory mapping it and parsing chunks of it in parallel.
+ * The file is split into chunks which end in a new line, and each chunk is parsed into a batch on the pool.
+ * The batches are given to the consumer in the order of the chunks in the file, on the calling thread.
+ * The lines are split the same way as Files.lines does - in \n, \r or \r\n.
+ */
+public class MappedChunkReader {
+
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    private final Path path;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * Number of chunks parsed while the consumer handles the batches, to keep the memory bounded
+     */
+    private final int maxChunksInFlight;
+
+    public MappedChunkReader(Path path, int chunkSize, ForkJoinPool pool) {
+        this.path = path;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+        this.maxChunksInFlight = pool.getParallelism() * 2;
+    }
+
+    /**
+     * parse all the chunks of the file
+     * @param parser parse the lines of each chunk into a batch
+     * @param consumer get the batches in the order of the file
+     */
+    public <T> void read(ChunkParser<T> parser, Consumer<T> consumer) throws IOException {
+        read(parser, consumer, 0);
+    }
+
+    /**
+     * parse the chunks of the file from the offset
+     * @param from offset of the start of a line
+     */
+    public <T> void read(ChunkParser<T> parser, Consumer<T> consumer, long from) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            Deque<ForkJoinTask<T>> inFlight = new ArrayDeque<>();
+            long start = from;
+            while (start < size) {
+                long end = findChunkEnd(channel, start, size);
+                if (end - start > Integer.MAX_VALUE)
+                    throw new IOException("Line at offset " + start + " is too long to be mapped");
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                long chunkOffset = start;
+                inFlight.add(pool.submit(() -> parseChunk(parser, chunk, chunkOffset)));
+                if (inFlight.size() >= maxChunksInFlight)
+                    consumer.accept(inFlight.poll().join());
+                start = end;
+            }
+            while (!inFlight.isEmpty())
+                consumer.accept(inFlight.poll().join());
+        }
+    }
+
+    /**
+     * @return the offset after the first \n from start + chunkSize, or the file size
+     */
+    private long findChunkEnd(FileChannel channel, long start, long size) throws IOException {
+        long pos = start + chunkSize;
+        if (pos >= size)
+            return size;
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        while (pos < size) {
+            scan.clear();
+            int read = channel.read(scan, pos);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++) {
+                if (scan.get(i) == '\n')
+                    return pos + i + 1;
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    private static <T> T parseChunk(ChunkParser<T> parser, ByteBuffer chunk, long chunkOffset) {
+        T batch = parser.newBatch();
+        AsciiLine asciiLine = new AsciiLine(chunk);
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        int limit = chunk.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            boolean ascii = true;
+            byte b = 0;
+            while (lineEnd < limit && (b = chunk.get(lineEnd)) != '\n' && b != '\r') {
+                ascii &= b >= 0;
+                lineEnd++;
+            }
+
+            CharSequence line = ascii ? asciiLine.reset(lineStart, lineEnd - lineStart)
+                    : decode(decoder, chunk, lineStart, lineEnd);
+            parser.parseLine(batch, line, chunkOffset + lineStart);
+
+            //skip the line terminator - \r\n is a single terminator
+            lineStart = lineEnd + 1;
+            if (lineEnd < limit && b == '\r' && lineStart < limit && chunk.get(lineStart) == '\n')
+                lineStart++;
+        }
+        return batch;
+    }
+
+    private static CharBuffer decode(CharsetDecoder decoder, ByteBuffer chunk, int start, int end) {
+        ByteBuffer line = chunk.duplicate();
+        line.position(start);
+        line.limit(end);
+        try {
+            return decoder.decode(line);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed decoding line at " + start, e);
+        }
+    }
+}
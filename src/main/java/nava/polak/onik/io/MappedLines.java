@@ -0,0 +1,78 @@
+package nava.polak.onik.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Random access to the lines of a memory mapped file of any size, by their offset.
+ * The file is mapped in windows when created, and should not change afterwards.
+ */
+public class MappedLines {
+
+    private static final int WINDOW_BITS = 30;
+    private static final int WINDOW_SIZE = 1 << WINDOW_BITS;
+
+    private final MappedByteBuffer[] windows;
+    private final long size;
+
+    public MappedLines(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            windows = new MappedByteBuffer[(int) ((size + WINDOW_SIZE - 1) >>> WINDOW_BITS)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = (long) i << WINDOW_BITS;
+                windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+            }
+        }
+    }
+
+    /**
+     * @param offset offset of the start of a line
+     * @return the length in bytes of the line, without the line terminator
+     */
+    public int lineLength(long offset) {
+        long end = offset;
+        while (end < size) {
+            byte b = windows[(int) (end >>> WINDOW_BITS)].get((int) (end & (WINDOW_SIZE - 1)));
+            if (b == '\n' || b == '\r')
+                break;
+            end++;
+        }
+        if (end - offset > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Line at offset " + offset + " is too long");
+        return (int) (end - offset);
+    }
+
+    /**
+     * @return the bytes of the line. A view of the mapped file unless the line crosses windows
+     */
+    public ByteBuffer slice(long offset, int length) {
+        int window = (int) (offset >>> WINDOW_BITS);
+        int start = (int) (offset & (WINDOW_SIZE - 1));
+        if (start + length <= WINDOW_SIZE) {
+            ByteBuffer slice = windows[window].duplicate();
+            slice.position(start);
+            slice.limit(start + length);
+            return slice;
+        }
+        byte[] bytes = new byte[length];
+        int done = 0;
+        while (done < length) {
+            ByteBuffer source = windows[window++].duplicate();
+            source.position(start);
+            int count = Math.min(length - done, source.remaining());
+            source.get(bytes, done, count);
+            done += count;
+            start = 0;
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    public long size() {
+        return size;
+    }
+}
@@ -0,0 +1,144 @@
+package nava.polak.onik.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Read several files, each on its own thread, and parse their lines into batches.
+ * The batches are given to the consumer in the order of the files, and of the lines in each file, on the calling thread.
+ * So the consumer gets the same batches as of one file of all the files concatenated, while the files are read,
+ * decompressed and parsed in parallel. Each file keeps a few batches ahead of the consumer, to keep the memory bounded.
+ */
+public class MultiFileReader {
+
+    /**
+     * Parse the lines of the files into batches. Called from several threads, each file on a single thread
+     * @param <T> the batch type
+     */
+    public interface FileParser<T> {
+        T newBatch();
+
+        /**
+         * parse a line of the file. The line is valid only during the call
+         * @param file the index of the file in the files read
+         * @param lineNumber the number of the line in its file, from 1
+         */
+        void parseLine(T batch, CharSequence line, int file, long lineNumber);
+    }
+
+    public static final int DEFAULT_BATCH_LINES = 8192;
+
+    private final List<Path> files;
+    private final int threads;
+    private final int batchLines;
+    private final int batchesAhead;
+
+    public MultiFileReader(List<Path> files, int threads) {
+        this(files, threads, DEFAULT_BATCH_LINES, LinePipeline.DEFAULT_QUEUE_DEPTH);
+    }
+
+    /**
+     * @param batchesAhead the number of parsed batches of each file waiting for the consumer
+     */
+    public MultiFileReader(List<Path> files, int threads, int batchLines, int batchesAhead) {
+        this.files = files;
+        this.threads = threads;
+        this.batchLines = Math.max(1, batchLines);
+        this.batchesAhead = Math.max(1, batchesAhead);
+    }
+
+    /**
+     * parse all the lines of the files
+     * @param consumer get the batches in the order of the files
+     */
+    public <T> void read(FileParser<T> parser, Consumer<T> consumer) throws IOException {
+        //the files are started in their order, so the file the consumer waits for is always being read
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "file-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<FileBatches> fileBatches = new ArrayList<>();
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                FileBatches batches = new FileBatches(batchesAhead);
+                fileBatches.add(batches);
+                int file = i;
+                pool.execute(() -> readFile(file, parser, batches));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                FileBatches batches = fileBatches.get(i);
+                Object batch;
+                while ((batch = batches.queue.take()) != FileBatches.END) {
+                    @SuppressWarnings("unchecked")
+                    T typed = (T) batch;
+                    consumer.accept(typed);
+                }
+                if (batches.failure != null)
+                    throw new IOException("Failed reading " + files.get(i) + ": " + batches.failure.getMessage(), batches.failure);
+                //the batches of the file are not needed any more
+                fileBatches.set(i, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + files.size() + " files", e);
+        } finally {
+            //stop the readers of the files not consumed, e.g. when the consumer failed
+            pool.shutdownNow();
+        }
+    }
+
+    private <T> void readFile(int file, FileParser<T> parser, FileBatches batches) {
+        try {
+            try (BufferedReader reader = InputFiles.open(files.get(file))) {
+                T batch = parser.newBatch();
+                int batchSize = 0;
+                long lineNumber = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    parser.parseLine(batch, line, file, ++lineNumber);
+                    if (++batchSize == batchLines) {
+                        batches.queue.put(batch);
+                        batch = parser.newBatch();
+                        batchSize = 0;
+                    }
+                }
+                if (batchSize > 0)
+                    batches.queue.put(batch);
+            } catch (IOException e) {
+                batches.failure = e;
+            } catch (UncheckedIOException e) {
+                batches.failure = e.getCause();
+            } catch (RuntimeException e) {
+                batches.failure = new IOException(e);
+            }
+            batches.queue.put(FileBatches.END);
+        } catch (InterruptedException e) {
+            //the read was stopped
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The parsed batches of a file, which were not consumed yet
+     */
+    private static class FileBatches {
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> queue;
+        private volatile IOException failure;
+
+        private FileBatches(int capacity) {
+            queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+}
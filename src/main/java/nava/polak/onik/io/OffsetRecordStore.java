@@ -0,0 +1,111 @@
+package nava.polak.onik.io;
+
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.SentenceStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * The sentences kept as the offset and length of their line in the input, about 12 bytes per sentence.
+ * The records are not kept after they are added. A record is parsed again from the memory mapped input when it is read.
+ * The input is mapped when the first record is added, and should not change afterwards.
+ * Sentences are not removed, so it is not used with ReaderMode.TAIL.
+ */
+public class OffsetRecordStore extends AbstractList<Record> implements SentenceStore {
+
+    /**
+     * Parse a line of the input into a record. Can be called from several threads
+     */
+    public interface LineParser {
+        /**
+         * @return the record or null if the line does not match the template
+         */
+        Record parse(CharSequence line, long offset);
+    }
+
+    private final Path input;
+    private final LineParser parser;
+    private MappedLines lines;
+
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+    private int count;
+
+    public OffsetRecordStore(Path input, LineParser parser) {
+        this.input = input;
+        this.parser = parser;
+    }
+
+    /**
+     * save the line of the record. The record should have its offset in the input
+     */
+    @Override
+    public boolean add(Record record) {
+        if (record.getOffset() < 0)
+            throw new IllegalArgumentException("Record of " + record.getName() + " without offset in the input");
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            lengths = Arrays.copyOf(lengths, count * 2);
+        }
+        offsets[count] = record.getOffset();
+        lengths[count] = getLines().lineLength(record.getOffset());
+        count++;
+        return true;
+    }
+
+    /**
+     * @return the record parsed again from its line
+     */
+    @Override
+    public Record get(int index) {
+        ByteBuffer line = getLine(index);
+        byte[] bytes = new byte[line.remaining()];
+        line.get(bytes);
+        Record record = parser.parse(new String(bytes, StandardCharsets.UTF_8), offsets[index]);
+        if (record == null)
+            throw new IllegalStateException("Sentence " + index + " at offset " + offsets[index] + " does not match the template any more");
+        return record;
+    }
+
+    /**
+     * @return the bytes of the sentence line in the input, trimmed the same way as the template parser trims the line,
+     * i.e. without white space and control characters at its start and end
+     */
+    public ByteBuffer getLine(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Sentence " + index + " is not in 0.." + (count - 1));
+        ByteBuffer line = getLines().slice(offsets[index], lengths[index]);
+        int start = line.position();
+        int end = line.limit();
+        //the bytes of the characters up to ' ' are the same in UTF-8, and the others are not in this range
+        while (start < end && (line.get(start) & 0xff) <= ' ')
+            start++;
+        while (end > start && (line.get(end - 1) & 0xff) <= ' ')
+            end--;
+        line.position(start);
+        line.limit(end);
+        return line;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    private MappedLines getLines() {
+        if (lines == null) {
+            try {
+                lines = new MappedLines(input);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed mapping " + input, e);
+            }
+        }
+        return lines;
+    }
+}
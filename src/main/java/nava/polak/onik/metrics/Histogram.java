@@ -0,0 +1,84 @@
+package nava.polak.onik.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of sizes in buckets of powers of 2. Bucket i counts the values in [2^(i-1), 2^i), bucket 0 counts 0.
+ * Can be updated by several threads.
+ */
+public class Histogram {
+
+    private final LongAdder[] buckets = new LongAdder[Long.SIZE + 1];
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram() {
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    public void record(long value) {
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(value)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets)
+            count += bucket.sum();
+        return count;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getSum() / count;
+    }
+
+    /**
+     * @return the upper bound of the bucket of the percentile, i.e. the percentile is smaller than it
+     */
+    public long getPercentile(double percentile) {
+        long count = getCount();
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank && seen > 0)
+                return Math.min(i == 0 ? 0 : (1L << i) - 1, getMax());
+        }
+        return getMax();
+    }
+
+    String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"count\":").append(getCount())
+                .append(",\"mean\":").append(String.format(Locale.ROOT, "%.2f", getMean()))
+                .append(",\"p50\":").append(getPercentile(50))
+                .append(",\"p99\":").append(getPercentile(99))
+                .append(",\"max\":").append(getMax())
+                .append(",\"buckets\":{");
+        boolean first = true;
+        for (int i = 0; i < buckets.length; i++) {
+            long count = buckets[i].sum();
+            if (count == 0)
+                continue;
+            if (!first)
+                json.append(',');
+            first = false;
+            //the key is the lower bound of the bucket
+            json.append('"').append(i == 0 ? 0 : 1L << (i - 1)).append("\":").append(count);
+        }
+        return json.append("}}").toString();
+    }
+}
@@ -0,0 +1,290 @@
+package nava.polak.onik.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.PatternType;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters, timers per phase and histograms of a run.
+ * When disabled every method returns at once, so the instrumentation of the hot path costs a field check.
+ * The counters can be updated by several threads.
+ */
+@Slf4j
+public class Metrics implements MetricsMXBean {
+
+    /**
+     * Shared by the runs without metrics. It is never updated
+     */
+    public static final Metrics DISABLED = new Metrics(false);
+
+    private final boolean enabled;
+
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final LongAdder[] phaseCounts = new LongAdder[Phase.values().length];
+
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder malformedLines = new LongAdder();
+    private final LongAdder comparisons = new LongAdder();
+    private final LongAdder matches = new LongAdder();
+
+    private final Histogram[] postingListSizes = new Histogram[PatternType.values().length];
+    private final Histogram[] intersectionSizes = new Histogram[PatternType.values().length];
+    private final Histogram[] queueDepths = new Histogram[Stage.values().length];
+
+    private volatile long runStart;
+    private volatile long runEnd;
+
+    public Metrics(boolean enabled) {
+        this.enabled = enabled;
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+            phaseCounts[i] = new LongAdder();
+        }
+        for (int i = 0; i < postingListSizes.length; i++) {
+            postingListSizes[i] = new Histogram();
+            intersectionSizes[i] = new Histogram();
+        }
+        for (int i = 0; i < queueDepths.length; i++)
+            queueDepths[i] = new Histogram();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void startRun() {
+        if (!enabled)
+            return;
+        runStart = System.nanoTime();
+        runEnd = 0;
+    }
+
+    public void endRun() {
+        if (!enabled)
+            return;
+        runEnd = System.nanoTime();
+    }
+
+    /**
+     * @return the start time of a phase, to be given to stop()
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void stop(Phase phase, long start) {
+        if (!enabled)
+            return;
+        phaseNanos[phase.ordinal()].add(System.nanoTime() - start);
+        phaseCounts[phase.ordinal()].increment();
+    }
+
+    public void countLine(boolean malformed) {
+        if (!enabled)
+            return;
+        lines.increment();
+        if (malformed)
+            malformedLines.increment();
+    }
+
+    /**
+     * count lines which were not counted one by one
+     */
+    public void countLines(long count, long malformed) {
+        if (!enabled)
+            return;
+        lines.add(count);
+        malformedLines.add(malformed);
+    }
+
+    public void countComparison(boolean match) {
+        if (!enabled)
+            return;
+        comparisons.increment();
+        if (match)
+            matches.increment();
+    }
+
+    /**
+     * record the sizes of 2 posting lists intersected and the size of the intersection
+     */
+    public void recordIntersection(PatternType type, int firstSize, int secondSize, int intersectionSize) {
+        if (!enabled)
+            return;
+        postingListSizes[type.ordinal()].record(firstSize);
+        postingListSizes[type.ordinal()].record(secondSize);
+        intersectionSizes[type.ordinal()].record(intersectionSize);
+    }
+
+    /**
+     * record the number of batches waiting in the queue of the stage
+     */
+    public void recordQueueDepth(Stage stage, int depth) {
+        if (!enabled)
+            return;
+        queueDepths[stage.ordinal()].record(depth);
+    }
+
+    @Override
+    public long getLines() {
+        return lines.sum();
+    }
+
+    @Override
+    public long getMalformedLines() {
+        return malformedLines.sum();
+    }
+
+    @Override
+    public double getMalformedRate() {
+        long count = getLines();
+        return count == 0 ? 0 : (double) getMalformedLines() / count;
+    }
+
+    @Override
+    public double getLinesPerSecond() {
+        long start = runStart;
+        if (start == 0)
+            return 0;
+        long end = runEnd != 0 ? runEnd : System.nanoTime();
+        return end == start ? 0 : getLines() * (double) TimeUnit.SECONDS.toNanos(1) / (end - start);
+    }
+
+    @Override
+    public long getComparisons() {
+        return comparisons.sum();
+    }
+
+    @Override
+    public long getMatches() {
+        return matches.sum();
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    public long getPhaseCount(Phase phase) {
+        return phaseCounts[phase.ordinal()].sum();
+    }
+
+    public Histogram getPostingListSizes(PatternType type) {
+        return postingListSizes[type.ordinal()];
+    }
+
+    public Histogram getIntersectionSizes(PatternType type) {
+        return intersectionSizes[type.ordinal()];
+    }
+
+    public Histogram getQueueDepths(Stage stage) {
+        return queueDepths[stage.ordinal()];
+    }
+
+    @Override
+    public Map<String, Long> getPhaseMillis() {
+        Map<String, Long> millis = new LinkedHashMap<>();
+        for (Phase phase : Phase.values())
+            millis.put(phase.name(), TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(phase)));
+        return millis;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Phase phase : Phase.values())
+            counts.put(phase.name(), getPhaseCount(phase));
+        return counts;
+    }
+
+    @Override
+    public Map<String, String> getPostingListSizes() {
+        return summaries(postingListSizes);
+    }
+
+    @Override
+    public Map<String, String> getIntersectionSizes() {
+        return summaries(intersectionSizes);
+    }
+
+    @Override
+    public Map<String, String> getQueueDepths() {
+        Map<String, String> summaries = new LinkedHashMap<>();
+        for (Stage stage : Stage.values())
+            summaries.put(stage.name(), queueDepths[stage.ordinal()].toJson());
+        return summaries;
+    }
+
+    private static Map<String, String> summaries(Histogram[] histograms) {
+        Map<String, String> summaries = new LinkedHashMap<>();
+        for (PatternType type : PatternType.values())
+            summaries.put(type.name(), histograms[type.ordinal()].toJson());
+        return summaries;
+    }
+
+    @Override
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"lines\":").append(getLines())
+                .append(",\"malformedLines\":").append(getMalformedLines())
+                .append(",\"malformedRate\":").append(String.format(Locale.ROOT, "%.6f", getMalformedRate()))
+                .append(",\"linesPerSecond\":").append(String.format(Locale.ROOT, "%.1f", getLinesPerSecond()))
+                .append(",\"comparisons\":").append(getComparisons())
+                .append(",\"matches\":").append(getMatches())
+                .append(",\"phases\":{");
+        for (Phase phase : Phase.values()) {
+            if (phase.ordinal() > 0)
+                json.append(',');
+            json.append('"').append(phase.name()).append("\":{\"count\":").append(getPhaseCount(phase))
+                    .append(",\"millis\":").append(TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(phase))).append('}');
+        }
+        json.append("},\"postingListSizes\":");
+        appendHistograms(json, postingListSizes);
+        json.append(",\"intersectionSizes\":");
+        appendHistograms(json, intersectionSizes);
+        json.append(",\"queueDepths\":{");
+        for (Stage stage : Stage.values()) {
+            if (stage.ordinal() > 0)
+                json.append(',');
+            json.append('"').append(stage.name()).append("\":").append(queueDepths[stage.ordinal()].toJson());
+        }
+        json.append('}');
+        return json.append('}').toString();
+    }
+
+    private static void appendHistograms(StringBuilder json, Histogram[] histograms) {
+        json.append('{');
+        for (PatternType type : PatternType.values()) {
+            if (type.ordinal() > 0)
+                json.append(',');
+            json.append('"').append(type.name()).append("\":").append(histograms[type.ordinal()].toJson());
+        }
+        json.append('}');
+    }
+
+    /**
+     * register the metrics as MBean, replacing the metrics of a previous run with the same name
+     * @return the name of the MBean
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("nava.polak.onik:type=Metrics,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            log.warn("Failed registering the metrics MBean " + name, e);
+            return null;
+        }
+    }
+}
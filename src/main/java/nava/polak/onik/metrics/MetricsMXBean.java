@@ -0,0 +1,48 @@
+package nava.polak.onik.metrics;
+
+import java.util.Map;
+
+/**
+ * The metrics of a run, as seen over JMX
+ */
+public interface MetricsMXBean {
+
+    long getLines();
+
+    long getMalformedLines();
+
+    double getMalformedRate();
+
+    double getLinesPerSecond();
+
+    long getComparisons();
+
+    long getMatches();
+
+    /**
+     * @return total time in milliseconds per phase
+     */
+    Map<String, Long> getPhaseMillis();
+
+    /**
+     * @return number of times per phase
+     */
+    Map<String, Long> getPhaseCounts();
+
+    /**
+     * @return the summary of the posting list sizes intersected, per type
+     */
+    Map<String, String> getPostingListSizes();
+
+    /**
+     * @return the summary of the intersection sizes, per type
+     */
+    Map<String, String> getIntersectionSizes();
+
+    /**
+     * @return the summary of the batches waiting in the queue of each stage of the pipeline
+     */
+    Map<String, String> getQueueDepths();
+
+    String toJson();
+}
@@ -0,0 +1,16 @@
+package nava.polak.onik.metrics;
+
+/**
+ * The phases of a run which are timed.
+ * PARSE - match a line to the template and map its words into ids.
+ * INDEX - find the matches of a record and index it. Includes INTERSECT and COMPARE.
+ * INTERSECT - intersect the sentences having the 2 identical parts.
+ * COMPARE - compare the changing part of 2 sentences.
+ * COLLECT - collect the groups by their string key.
+ * WRITE - write the groups into the output file.
+ * EXTERNAL - find and write the groups on disk with IndexMode.EXTERNAL.
+ * WORKERS - find the groups in the worker JVMs and merge them, with --workers.
+ */
+public enum Phase {
+    PARSE,INDEX,INTERSECT,COMPARE,COLLECT,WRITE,EXTERNAL,WORKERS;
+}
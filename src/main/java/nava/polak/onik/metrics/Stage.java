@@ -0,0 +1,11 @@
+package nava.polak.onik.metrics;
+
+/**
+ * The stages of the pipeline which read the input, each fed by a bounded queue of batches.
+ * PARSE - the parser workers, fed by the reader.
+ * INDEX - the indexer, fed by the parser workers in the order of the lines.
+ * WRITE - the writer of the results, fed by the collected groups.
+ */
+public enum Stage {
+    PARSE,INDEX,WRITE;
+}
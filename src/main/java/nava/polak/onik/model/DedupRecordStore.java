@@ -0,0 +1,121 @@
+package nava.polak.onik.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The sentences where identical sentences, i.e. with the same name, action and rest, are kept once.
+ * The first of identical sentences is the canonical one and kept as a record. Each of the others is kept only as its
+ * time and offset, and created again from the canonical record when it is read. The indexes are the same as in RecordStore,
+ * so the identical sentences are written as they were read.
+ * An identical sentence is in the same groups as its canonical sentence, so it is not indexed, and is added
+ * into the groups of the canonical sentence by expand.
+ * A sentence which keeps the text of its log field is not collapsed. Sentences are not removed, so it is not used
+ * with ReaderMode.TAIL.
+ */
+public class DedupRecordStore extends AbstractList<Record> implements SentenceStore {
+
+    /**
+     * The canonical sentence of each name, action and rest
+     */
+    private final Map<IntArrayKey, Integer> canonicalIndexes = new HashMap<>();
+
+    /**
+     * The indexes of the identical sentences of each canonical sentence which has them
+     */
+    private final Map<Integer, IntList> duplicates = new HashMap<>();
+
+    /**
+     * The record of each canonical sentence, or null for an identical sentence
+     */
+    private Record[] records = new Record[1024];
+
+    /**
+     * The canonical sentence, the time and the offset of each identical sentence
+     */
+    private int[] canonicals = new int[1024];
+    private long[] times = new long[1024];
+    private long[] offsets = new long[1024];
+
+    private int count;
+    private int duplicateCount;
+
+    @Override
+    public boolean add(Record record) {
+        if (count == records.length) {
+            records = Arrays.copyOf(records, count * 2);
+            canonicals = Arrays.copyOf(canonicals, count * 2);
+            times = Arrays.copyOf(times, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        int index = count++;
+        Integer canonical = record.hasLogText() ? null
+                : canonicalIndexes.putIfAbsent(new IntArrayKey(new int[]{record.getNameId(), record.getActionId(), record.getRestId()}), index);
+        if (canonical == null) {
+            records[index] = record;
+            canonicals[index] = index;
+            return true;
+        }
+        canonicals[index] = canonical;
+        times[index] = record.getTime();
+        offsets[index] = record.getOffset();
+        duplicates.computeIfAbsent(canonical, k -> new IntList(2)).add(index);
+        duplicateCount++;
+        return true;
+    }
+
+    /**
+     * @return true if the sentence is identical to an earlier sentence
+     */
+    public boolean isDuplicate(int index) {
+        return canonicals[index] != index;
+    }
+
+    /**
+     * @return the number of the sentences which are identical to the sentence, including it
+     */
+    public int getCount(int index) {
+        IntList identical = duplicates.get(canonicals[index]);
+        return identical == null ? 1 : identical.size() + 1;
+    }
+
+    public int getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * add into the group the sentences identical to its sentences
+     */
+    public void expand(ResultsPerType group) {
+        int size = group.size();
+        for (int i = 0; i < size; i++) {
+            IntList identical = duplicates.get(group.getRecord(i));
+            if (identical == null)
+                continue;
+            for (int j = 0; j < identical.size(); j++)
+                group.addRecord(identical.get(j));
+        }
+    }
+
+    /**
+     * @return the record, created from its canonical record when it is an identical sentence
+     */
+    @Override
+    public Record get(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Sentence " + index + " is not in 0.." + (count - 1));
+        Record record = records[index];
+        if (record != null)
+            return record;
+        Record canonical = records[canonicals[index]];
+        return new Record(times[index], null, canonical.getNameId(), canonical.getActionId(), canonical.getRestId(),
+                offsets[index], canonical.getDictionary());
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+}
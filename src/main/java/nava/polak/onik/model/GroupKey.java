@@ -0,0 +1,37 @@
+package nava.polak.onik.model;
+
+import lombok.Value;
+
+/**
+ * Key of similar sentences - the ids of the 2 identical parts.
+ * NAME - action id and rest id
+ * ACTION - name id and rest id
+ * REST - name id and action id
+ * The key can be packed into a long - the type in the 2 high bits and 31 bits of each id, see pack().
+ */
+@Value
+public class GroupKey {
+    private static final int ID_BITS = 31;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    private static final PatternType[] TYPES = PatternType.values();
+
+    private PatternType type;
+    private int first;
+    private int second;
+
+    /**
+     * @return the key as long, without allocating. The ids are non negative
+     */
+    public static long pack(PatternType type, int first, int second) {
+        return (long) type.ordinal() << (2 * ID_BITS) | (long) first << ID_BITS | second;
+    }
+
+    public static GroupKey unpack(long key) {
+        return new GroupKey(TYPES[(int) (key >>> (2 * ID_BITS))],
+                (int) (key >>> ID_BITS & ID_MASK), (int) (key & ID_MASK));
+    }
+
+    public long pack() {
+        return pack(type, first, second);
+    }
+}
@@ -0,0 +1,14 @@
+package nava.polak.onik.model;
+
+/**
+ * The algorithm used to index the sentences and find the matches.
+ * PAIRWISE - intersect the sentences with 2 identical parts and compare the third part of each of them.
+ * SIGNATURE - save a signature per word of the third part where the word is masked. Sentences sharing a signature are a match.
+ * SHARDED - SIGNATURE index split by the 2 identical parts into shards, each running on its own thread.
+ * EXTERNAL - signatures sorted on disk, for input bigger than the memory. See ExternalEngine.
+ * APPROXIMATE - SIGNATURE index, and also rests with the same name and action which differ by up to
+ *               RunOptions.maxDistance words substituted, inserted or deleted, found by MinHash. See LshIndex.
+ */
+public enum IndexMode {
+    PAIRWISE,SIGNATURE,SHARDED,EXTERNAL,APPROXIMATE;
+}
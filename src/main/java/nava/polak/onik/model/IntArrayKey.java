@@ -0,0 +1,35 @@
+package nava.polak.onik.model;
+
+import java.util.Arrays;
+
+/**
+ * Array of word ids which can be used as a key in a map
+ */
+public final class IntArrayKey {
+    private final int[] values;
+    private final int hash;
+
+    public IntArrayKey(int[] values) {
+        this.values = values;
+        this.hash = Arrays.hashCode(values);
+    }
+
+    public int[] getValues() {
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof IntArrayKey))
+            return false;
+        IntArrayKey other = (IntArrayKey) o;
+        return hash == other.hash && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
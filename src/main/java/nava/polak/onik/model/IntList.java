@@ -0,0 +1,57 @@
+package nava.polak.onik.model;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints
+ */
+public class IntList {
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this(4);
+    }
+
+    public IntList(int capacity) {
+        values = new int[capacity];
+    }
+
+    public void add(int value) {
+        if (size == values.length)
+            values = Arrays.copyOf(values, Math.max(4, size * 2));
+        values[size++] = value;
+    }
+
+    public int get(int i) {
+        return values[i];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * remove the values smaller than min, keeping the order of the others
+     */
+    public void removeBelow(int min) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (values[i] >= min)
+                values[kept++] = values[i];
+        }
+        size = kept;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,149 @@
+package nava.polak.onik.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parse the log field of the sentences into epoch seconds, in UTC.
+ * The default format dd-MM-yyyy HH:mm:ss is parsed without allocating, and a valid time in it is formatted back into
+ * the same text, so the records keep only the seconds. Other formats are parsed by DateTimeFormatter.
+ */
+public class LogTime {
+
+    public static final String DEFAULT_FORMAT = "dd-MM-yyyy HH:mm:ss";
+
+    public static final LogTime DEFAULT = new LogTime(DEFAULT_FORMAT);
+
+    /**
+     * The time of a sentence which log field is not a valid time
+     */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final int DEFAULT_LENGTH = DEFAULT_FORMAT.length();
+
+    private final DateTimeFormatter format;
+    private final boolean defaultFormat;
+
+    /**
+     * @param timeFormat format of the log field, see DateTimeFormatter
+     */
+    public LogTime(String timeFormat) {
+        this.defaultFormat = DEFAULT_FORMAT.equals(timeFormat);
+        this.format = DateTimeFormatter.ofPattern(timeFormat);
+    }
+
+    /**
+     * @return the epoch seconds of the time, or UNKNOWN if it is not a valid time
+     */
+    public long toSeconds(CharSequence text) {
+        return toSeconds(text, 0, text.length());
+    }
+
+    /**
+     * @return the epoch seconds of the time in text from start to end, or UNKNOWN if it is not a valid time
+     */
+    public long toSeconds(CharSequence text, int start, int end) {
+        if (defaultFormat)
+            return parseDefault(text, start, end);
+        try {
+            return LocalDateTime.parse(text.subSequence(start, end), format).toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * @return true if format(seconds) gives back the text, so the text does not need to be kept
+     */
+    public boolean isRestorable(long seconds) {
+        //a valid time in the default format has fixed width with zero padded fields
+        return defaultFormat && seconds != UNKNOWN;
+    }
+
+    public String format(long seconds) {
+        if (!defaultFormat)
+            return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC).format(format);
+        long days = Math.floorDiv(seconds, 86400);
+        int secondOfDay = (int) Math.floorMod(seconds, 86400);
+        //civil date from days since the epoch
+        long z = days + 719468;
+        long era = Math.floorDiv(z, 146097);
+        int dayOfEra = (int) (z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] text = new char[DEFAULT_LENGTH];
+        putTwoDigits(text, 0, day);
+        text[2] = '-';
+        putTwoDigits(text, 3, month);
+        text[5] = '-';
+        putTwoDigits(text, 6, (int) (year / 100));
+        putTwoDigits(text, 8, (int) (year % 100));
+        text[10] = ' ';
+        putTwoDigits(text, 11, secondOfDay / 3600);
+        text[13] = ':';
+        putTwoDigits(text, 14, secondOfDay / 60 % 60);
+        text[16] = ':';
+        putTwoDigits(text, 17, secondOfDay % 60);
+        return new String(text);
+    }
+
+    private static long parseDefault(CharSequence text, int start, int end) {
+        if (end - start != DEFAULT_LENGTH || text.charAt(start + 2) != '-' || text.charAt(start + 5) != '-'
+                || text.charAt(start + 10) != ' ' || text.charAt(start + 13) != ':' || text.charAt(start + 16) != ':')
+            return UNKNOWN;
+        int day = twoDigits(text, start);
+        int month = twoDigits(text, start + 3);
+        int century = twoDigits(text, start + 6);
+        int yearOfCentury = twoDigits(text, start + 8);
+        int hour = twoDigits(text, start + 11);
+        int minute = twoDigits(text, start + 14);
+        int second = twoDigits(text, start + 17);
+        if ((day | month | century | yearOfCentury | hour | minute | second) < 0)
+            return UNKNOWN;
+        int year = century * 100 + yearOfCentury;
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) || hour > 23 || minute > 59 || second > 59)
+            return UNKNOWN;
+        return daysFromCivil(year, month, day) * 86400 + hour * 3600 + minute * 60 + second;
+    }
+
+    /**
+     * @return the number of the 2 digits, or -1 if they are not digits
+     */
+    private static int twoDigits(CharSequence text, int at) {
+        int first = text.charAt(at) - '0';
+        int second = text.charAt(at + 1) - '0';
+        if (first < 0 || first > 9 || second < 0 || second > 9)
+            return -1;
+        return first * 10 + second;
+    }
+
+    private static void putTwoDigits(char[] text, int at, int value) {
+        text[at] = (char) ('0' + value / 10);
+        text[at + 1] = (char) ('0' + value % 10);
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2)
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /**
+     * @return days since 01-01-1970 of the date in the proleptic Gregorian calendar
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return (long) era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,11 @@
+package nava.polak.onik.model;
+
+/**
+ * How the results are written.
+ * TEXT - the sentences of each group, the changing words line and an empty line.
+ * JSONL - json object per group with its type, key, changing words and the offsets of the sentences in the input.
+ * BINARY - header and then fixed records of group id (int) and offset of the sentence in the input (long).
+ */
+public enum OutputFormat {
+    TEXT,JSONL,BINARY;
+}
@@ -0,0 +1,180 @@
+package nava.polak.onik.model;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The sentences kept in partitions by their time, e.g. a partition per hour.
+ * A partition has the sentences added from the first sentence in its time until the first sentence in a later partition,
+ * so each partition is a range of sentence indexes, and the indexes stay the same as in RecordStore.
+ * Sentences a bit out of order, or without a time, are added into the latest partition which keeps the range of its times.
+ * Removing sentences drops whole partitions, so it does not copy the sentences which stay.
+ */
+public class PartitionedRecordStore extends RecordStore {
+
+    /**
+     * The sentences of a time partition
+     */
+    @Getter
+    public static class Partition {
+        /**
+         * The start of the partition time in epoch seconds, or LogTime.UNKNOWN when no sentence in it had a time
+         */
+        private long start;
+
+        /**
+         * The range of the times of the sentences, or LogTime.UNKNOWN when no sentence in it had a time
+         */
+        private long minTime = LogTime.UNKNOWN;
+        private long maxTime = LogTime.UNKNOWN;
+
+        private final int firstIndex;
+        private int count;
+
+        private Record[] records = new Record[256];
+
+        private Partition(long start, int firstIndex) {
+            this.start = start;
+            this.firstIndex = firstIndex;
+        }
+
+        /**
+         * @return the index after the last sentence of the partition
+         */
+        public int getEndIndex() {
+            return firstIndex + count;
+        }
+
+        /**
+         * @return true if the partition may have sentences in the time range
+         */
+        public boolean overlaps(long from, long to) {
+            return minTime != LogTime.UNKNOWN && minTime <= to && maxTime >= from;
+        }
+
+        private void add(Record record) {
+            if (count == records.length)
+                records = Arrays.copyOf(records, count * 2);
+            records[count++] = record;
+            long time = record.getTime();
+            if (time == LogTime.UNKNOWN)
+                return;
+            minTime = minTime == LogTime.UNKNOWN ? time : Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+    }
+
+    private final long partitionSeconds;
+
+    /**
+     * The partitions by their time, the oldest first
+     */
+    private final List<Partition> partitions = new ArrayList<>();
+
+    private int nextIndex;
+    private int liveCount;
+
+    /**
+     * @param partition the time of a partition, should not be TimePartition.NONE
+     */
+    public PartitionedRecordStore(TimePartition partition) {
+        if (partition == TimePartition.NONE)
+            throw new IllegalArgumentException("Partitioned store needs the time of a partition");
+        this.partitionSeconds = partition.getSeconds();
+    }
+
+    @Override
+    public boolean add(Record record) {
+        Partition last = partitions.isEmpty() ? null : partitions.get(partitions.size() - 1);
+        long time = record.getTime();
+        long start = time == LogTime.UNKNOWN ? LogTime.UNKNOWN : Math.floorDiv(time, partitionSeconds) * partitionSeconds;
+        if (last == null || start > last.start) {
+            //the sentences without time before the first time are in a partition which start is not known yet
+            if (last != null && last.start == LogTime.UNKNOWN)
+                last.start = start;
+            else {
+                last = new Partition(start, nextIndex);
+                partitions.add(last);
+            }
+        }
+        last.add(record);
+        nextIndex++;
+        liveCount++;
+        return true;
+    }
+
+    @Override
+    public Record get(int index) {
+        Partition partition = getPartitionOf(index);
+        if (partition == null)
+            throw new IndexOutOfBoundsException("Sentence " + index + " is not in " + getFirstIndex() + ".." + (nextIndex - 1));
+        return partition.records[index - partition.firstIndex];
+    }
+
+    @Override
+    public int size() {
+        return nextIndex;
+    }
+
+    @Override
+    public int getFirstIndex() {
+        return partitions.isEmpty() ? nextIndex : partitions.get(0).firstIndex;
+    }
+
+    @Override
+    public int getLiveCount() {
+        return liveCount;
+    }
+
+    /**
+     * remove the partitions which all their sentences are smaller than the watermark.
+     * Sentences smaller than the watermark stay when their partition has later sentences
+     */
+    @Override
+    public void removeBefore(int watermark) {
+        int removed = 0;
+        while (removed < partitions.size() && partitions.get(removed).getEndIndex() <= watermark)
+            liveCount -= partitions.get(removed++).count;
+        partitions.subList(0, removed).clear();
+    }
+
+    /**
+     * @return the partitions, the oldest first
+     */
+    public List<Partition> getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * @return the partitions which may have sentences in the time range, the oldest first
+     * @param from epoch seconds of the range start
+     * @param to epoch seconds of the range end, inclusive
+     */
+    public List<Partition> getPartitions(long from, long to) {
+        List<Partition> overlapping = new ArrayList<>();
+        for (Partition partition : partitions) {
+            if (partition.overlaps(from, to))
+                overlapping.add(partition);
+        }
+        return overlapping;
+    }
+
+    private Partition getPartitionOf(int index) {
+        int low = 0;
+        int high = partitions.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Partition partition = partitions.get(mid);
+            if (index < partition.firstIndex)
+                high = mid - 1;
+            else if (index >= partition.getEndIndex())
+                low = mid + 1;
+            else
+                return partition;
+        }
+        return null;
+    }
+}
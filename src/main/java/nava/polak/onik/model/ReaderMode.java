@@ -0,0 +1,11 @@
+package nava.polak.onik.model;
+
+/**
+ * How the input file is read.
+ * LINES - read line by line on a single thread.
+ * MAPPED - memory map the file and parse chunks of it in parallel.
+ * TAIL - follow the file while it grows, and write the groups as they change. Runs until stopped.
+ */
+public enum ReaderMode {
+    LINES,MAPPED,TAIL;
+}
@@ -1,46 +1,211 @@
 package nava.polak.onik.model;
 
-import lombok.Data;
+import lombok.Getter;
 
-@Data
+/**
+ * Sentence parsed according the pattern. The words are kept as ids of the token dictionary.
+ */
+@Getter
 public class Record {
-    private String log;
-    private String action;
-    private String name;
-    private String restStr;
 
-    public Record(String log, String name, String action , String restStr) {
+    /**
+     * the time of the log field in epoch seconds, or LogTime.UNKNOWN
+     */
+    private final long time;
+
+    /**
+     * the text of the log field, or null when it is formatted back from the time, see LogTime
+     */
+    private final String log;
+
+    private final int nameId;
+    private final int actionId;
+    private final int restId;
+
+    /**
+     * ids of the words in the rest of the sentence
+     */
+    private final int[] restIds;
+
+    private final TokenDictionary dictionary;
+
+    /**
+     * offset of the line in the input, -1 when unknown
+     */
+    private final long offset;
+
+    public Record(String log, String name, String action , String restStr, TokenDictionary dictionary) {
+        this(log, name, action, restStr, -1, dictionary);
+    }
+
+    public Record(String log, String name, String action , String restStr, long offset, TokenDictionary dictionary) {
+        this(LogTime.DEFAULT.toSeconds(log), log, name, action, restStr, offset, dictionary, true);
+    }
+
+    /**
+     * @param time the time of the log field in epoch seconds, or LogTime.UNKNOWN
+     * @param log the text of the log field, or null when it is LogTime.DEFAULT.format(time)
+     */
+    public Record(long time, String log, String name, String action , String restStr, long offset, TokenDictionary dictionary) {
+        this(time, log, name, action, restStr, offset, dictionary, false);
+    }
+
+    /**
+     * @param defaultFormat the log is in LogTime.DEFAULT format, so it is not kept when it can be formatted back
+     */
+    private Record(long time, String log, String name, String action , String restStr, long offset, TokenDictionary dictionary,
+                   boolean defaultFormat) {
+        this.time = time;
+        this.log = defaultFormat && LogTime.DEFAULT.isRestorable(time) ? null : log;
+        this.offset = offset;
+        this.nameId = dictionary.getId(name);
+        this.actionId = dictionary.getId(action);
+        this.restId = dictionary.getSequenceId(dictionary.getIds(restStr));
+        this.restIds = dictionary.getSequence(restId);
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * create the record from the ids of its words in the dictionary
+     * @param log the text of the log field, or null when it is LogTime.DEFAULT.format(time)
+     */
+    public Record(long time, String log, int nameId, int actionId, int restId, long offset, TokenDictionary dictionary) {
+        this.time = time;
         this.log = log;
-        this.action = action;
-        this.name = name;
-        this.restStr = restStr;
+        this.offset = offset;
+        this.nameId = nameId;
+        this.actionId = actionId;
+        this.restId = restId;
+        this.restIds = dictionary.getSequence(restId);
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * create the record from the ids of its words in the dictionary
+     */
+    public Record(String log, int nameId, int actionId, int restId, long offset, TokenDictionary dictionary) {
+        this.time = LogTime.DEFAULT.toSeconds(log);
+        this.log = LogTime.DEFAULT.isRestorable(time) ? null : log;
+        this.offset = offset;
+        this.nameId = nameId;
+        this.actionId = actionId;
+        this.restId = restId;
+        this.restIds = dictionary.getSequence(restId);
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @return true if the text of the log field is kept, since it is not formatted back from the time
+     */
+    public boolean hasLogText() {
+        return log != null;
+    }
+
+    public String getLog() {
+        return log != null ? log : LogTime.DEFAULT.format(time);
+    }
+
+    public String getName() {
+        return dictionary.getWord(nameId);
+    }
+
+    public String getAction() {
+        return dictionary.getWord(actionId);
+    }
+
+    public String getRestStr() {
+        return dictionary.getSequenceStr(restId);
     }
 
     public String getWordAccorfingType(PatternType type){
         switch(type){
             case NAME:
-                return name;
+                return getName();
+            case ACTION:
+                return getAction();
+            default:
+                return getRestStr();
+        }
+    }
+
+    /**
+     * @return number of words in the part of the given type
+     */
+    public int getWordCount(PatternType type) {
+        return type == PatternType.REST ? restIds.length : 1;
+    }
+
+    /**
+     * @return the id of the word in the given position of the part of the given type
+     */
+    public int getWordId(PatternType type, int position) {
+        switch (type) {
+            case NAME:
+                return nameId;
+            case ACTION:
+                return actionId;
+            default:
+                return restIds[position];
+        }
+    }
+
+    /**
+     * @return the id of the whole part of the given type
+     */
+    public int getPartId(PatternType type) {
+        switch (type) {
+            case NAME:
+                return nameId;
+            case ACTION:
+                return actionId;
+            default:
+                return restId;
+        }
+    }
+
+    /**
+     * The key of the sentences which has the same 2 parts and the part of the given type is changing
+     */
+    public GroupKey constructKeyAccordingType(PatternType type) {
+        return GroupKey.unpack(getKeyAccordingType(type));
+    }
+
+    /**
+     * The key of the sentences which has the same 2 parts and the part of the given type is changing,
+     * packed into a long without allocating. See GroupKey.pack
+     */
+    public long getKeyAccordingType(PatternType type) {
+        switch (type) {
+            case NAME:
+                return GroupKey.pack(type, actionId, restId);
             case ACTION:
-                return action;
+                return GroupKey.pack(type, nameId, restId);
             default:
-                return restStr;
+                return GroupKey.pack(type, nameId, actionId);
         }
     }
 
-    public String constructKeyAccordingType(PatternType type) {
+    /**
+     * The key as written in the results, see keyStr
+     */
+    public String constructKeyStrAccordingType(PatternType type) {
         switch (type) {
             case NAME:
-                return action + "_" + restStr;
+                return keyStr(type, getAction(), getRestStr());
             case ACTION:
-                return name + restStr;
+                return keyStr(type, getName(), getRestStr());
             case REST:
-                return name + "_" + action;
+                return keyStr(type, getName(), getAction());
         }
         return null;
 
     }
 
-    public String getFullRecord(){
-        return log + " " + name + " is " + action + " " + restStr;
+    /**
+     * The key of a group as string: [type]:[first identical part] [second identical part].
+     * The first part is a single word, so different groups have different keys
+     */
+    public static String keyStr(PatternType type, String first, String second) {
+        return type + ":" + first + " " + second;
     }
 }
@@ -0,0 +1,30 @@
+package nava.polak.onik.model;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The records parsed from a chunk of the input, in the order of the lines in the chunk
+ */
+@Getter
+public class RecordBatch {
+    private final List<Record> records = new ArrayList<>();
+
+    /**
+     * index of the template of each record, when there are several templates
+     */
+    private final IntList templates = new IntList();
+    private final List<String> sentencesNotAccordingPattern = new ArrayList<>();
+    private int lineCount;
+
+    public void addLine() {
+        lineCount++;
+    }
+
+    public void addRecord(Record record, int template) {
+        records.add(record);
+        templates.add(template);
+    }
+}
@@ -0,0 +1,89 @@
+package nava.polak.onik.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * The sentences by their index, i.e. the order they were read.
+ * The oldest sentences can be removed while the indexes of the others stay the same,
+ * so a long running stream keeps only the sentences in its window.
+ */
+public class RecordStore extends AbstractList<Record> implements SentenceStore {
+
+    private Record[] records = new Record[1024];
+
+    /**
+     * position in records of the first sentence
+     */
+    private int head;
+    private int count;
+
+    /**
+     * index of the first sentence which was not removed
+     */
+    private int firstIndex;
+
+    @Override
+    public boolean add(Record record) {
+        if (head + count == records.length) {
+            //reuse the space of the removed sentences before growing
+            if (head >= records.length / 2) {
+                System.arraycopy(records, head, records, 0, count);
+                Arrays.fill(records, count, head + count, null);
+            } else {
+                records = Arrays.copyOfRange(records, head, head + count * 2);
+            }
+            head = 0;
+        }
+        records[head + count] = record;
+        count++;
+        return true;
+    }
+
+    /**
+     * @param index the sentence index. Should not be a removed sentence
+     */
+    @Override
+    public Record get(int index) {
+        if (index < firstIndex || index >= firstIndex + count)
+            throw new IndexOutOfBoundsException("Sentence " + index + " is not in " + firstIndex + ".." + (firstIndex + count - 1));
+        return records[head + index - firstIndex];
+    }
+
+    /**
+     * @return the number of sentences added, including the removed ones
+     */
+    @Override
+    public int size() {
+        return firstIndex + count;
+    }
+
+    @Override
+    public int getFirstIndex() {
+        return firstIndex;
+    }
+
+    /**
+     * @return the number of sentences which were not removed
+     */
+    @Override
+    public int getLiveCount() {
+        return count;
+    }
+
+    /**
+     * remove the sentences smaller than the watermark
+     */
+    public void removeBefore(int watermark) {
+        int removed = Math.min(Math.max(0, watermark - firstIndex), count);
+        Arrays.fill(records, head, head + removed, null);
+        head += removed;
+        count -= removed;
+        firstIndex += removed;
+        //shrink when most of the array is empty
+        if (records.length > 1024 && count * 4 < records.length) {
+            records = Arrays.copyOfRange(records, head, head + Math.max(1024, count * 2));
+            head = 0;
+        }
+    }
+}
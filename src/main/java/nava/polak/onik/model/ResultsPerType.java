@@ -1,37 +1,95 @@
 package nava.polak.onik.model;
 
-import lombok.Data;
+import lombok.Getter;
+import nava.polak.onik.parse.LineFormat;
 
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Set;
 
-@Data
+/**
+ * The sentences in a group of similar sentences, i.e. having the same 2 parts, and the type of the changing part
+ */
 public class ResultsPerType {
 
-    private Set<Integer> recordsIndex = new HashSet<>();
-    private PatternType type;
+    private final IntList records = new IntList();
+    @Getter
+    private final PatternType type;
 
     public ResultsPerType(PatternType type) {
         this.type = type;
     }
 
+    /**
+     * add sentence to the group. The caller makes sure a sentence is added once
+     */
     public void addRecord(int index){
-        recordsIndex.add(index);
+        records.add(index);
     }
 
-    public String getRecordsStr(List<Record> sentences){
+    /**
+     * add the sentences of other group which are not in this group
+     */
+    public void addRecords(ResultsPerType other) {
+        int[] current = getRecordsIndex();
+        for (int i = 0; i < other.size(); i++) {
+            int index = other.getRecord(i);
+            if (Arrays.binarySearch(current, index) < 0)
+                records.add(index);
+        }
+    }
+
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * @return the sentence in position i, in the order the sentences were added
+     */
+    public int getRecord(int i) {
+        return records.get(i);
+    }
+
+    /**
+     * @return the sentences indexes sorted
+     */
+    public int[] getRecordsIndex() {
+        int[] indexes = records.toArray();
+        Arrays.sort(indexes);
+        return indexes;
+    }
+
+    /**
+     * remove the sentences smaller than the watermark, i.e. out of the window
+     */
+    public void removeBefore(int watermark) {
+        records.removeBelow(watermark);
+    }
+
+    /**
+     * @param lineFormat the layout of the lines of the template of the sentences
+     */
+    public String getRecordsStr(List<Record> sentences, LineFormat lineFormat){
+        return getRecordsStr(sentences, lineFormat, 0);
+    }
+
+    /**
+     * @param lineFormat the layout of the lines of the template of the sentences
+     * @param windowStart sentences before it are not written
+     */
+    public String getRecordsStr(List<Record> sentences, LineFormat lineFormat, int windowStart){
         StringBuilder recordsStr = new StringBuilder();
         StringBuilder changedParamStr = new StringBuilder("The changing word was: ");
 
-        recordsIndex.stream().forEach(index->{
+        for (int index : getRecordsIndex()) {
+            if (index < windowStart)
+                continue;
             Record record = sentences.get(index);
-            recordsStr.append(record.getFullRecord());
+            recordsStr.append(lineFormat.format(record));
             recordsStr.append("\n");
             String word_sep = " , ";
             changedParamStr.append(record.getWordAccorfingType(type)).append(word_sep);
 
-        });
+        }
 
         recordsStr.append(changedParamStr.substring(0,changedParamStr.length()-3));
         recordsStr.append("\n");
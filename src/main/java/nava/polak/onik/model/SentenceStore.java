@@ -0,0 +1,25 @@
+package nava.polak.onik.model;
+
+import java.util.List;
+
+/**
+ * The sentences by their index, i.e. the order they were read, however they are kept: see RecordStore,
+ * DedupRecordStore and OffsetRecordStore.
+ * Only RecordStore removes the oldest sentences, so only it is used with ReaderMode.TAIL (see RunOptions).
+ */
+public interface SentenceStore extends List<Record> {
+
+    /**
+     * @return the index of the first sentence which was not removed
+     */
+    default int getFirstIndex() {
+        return 0;
+    }
+
+    /**
+     * @return the number of sentences which were not removed
+     */
+    default int getLiveCount() {
+        return size();
+    }
+}
@@ -0,0 +1,12 @@
+package nava.polak.onik.model;
+
+/**
+ * How the sentences are kept after they are indexed.
+ * RECORDS - the parsed records, with the ids of their words.
+ * OFFSETS - only the offset and length of each line in the input. A record is parsed again from the memory mapped
+ * input when it is needed, and the original line is written in the results. Supports the signature, sharded and approximate
+ * indexes, which do not compare the stored sentences while indexing.
+ */
+public enum StoreMode {
+    RECORDS,OFFSETS;
+}
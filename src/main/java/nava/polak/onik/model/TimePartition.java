@@ -0,0 +1,21 @@
+package nava.polak.onik.model;
+
+/**
+ * How the sentences are partitioned by their time.
+ * NONE - all the sentences are kept together.
+ * HOUR, DAY - the sentences are kept in a partition per hour or day, see PartitionedRecordStore.
+ * The pairwise index is kept per partition too, so a whole partition out of the window is dropped at once.
+ */
+public enum TimePartition {
+    NONE(0),HOUR(60 * 60),DAY(24 * 60 * 60);
+
+    private final long seconds;
+
+    TimePartition(long seconds) {
+        this.seconds = seconds;
+    }
+
+    public long getSeconds() {
+        return seconds;
+    }
+}
@@ -0,0 +1,106 @@
+package nava.polak.onik.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Map each distinct word to int id, so the sentences are kept and compared as arrays of ids.
+ * The rest of sentence, as a sequence of word ids, is mapped to id as well.
+ * The dictionary can be used by several parsing threads. Looking up a known word does not lock.
+ */
+public class TokenDictionary {
+
+    private final ConcurrentHashMap<String, Integer> wordToId = new ConcurrentHashMap<>();
+    private volatile String[] words = new String[1024];
+    private int wordCount;
+
+    private final ConcurrentHashMap<IntArrayKey, Integer> sequenceToId = new ConcurrentHashMap<>();
+    private volatile int[][] sequences = new int[1024][];
+    private int sequenceCount;
+
+    /**
+     * get the id of the word. A new id is given to a word which was not seen yet
+     */
+    public int getId(String word) {
+        Integer id = wordToId.get(word);
+        if (id != null)
+            return id;
+        synchronized (this) {
+            id = wordToId.get(word);
+            if (id == null) {
+                id = wordCount;
+                if (id == words.length)
+                    words = Arrays.copyOf(words, id * 2);
+                //the word is saved before the id is published
+                words[id] = word;
+                wordCount++;
+                wordToId.put(word, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * get the ids of the words in the sentence. The words are separated by single space
+     */
+    public int[] getIds(String sentence) {
+        String[] sentenceWords = sentence.split(" ");
+        int[] ids = new int[sentenceWords.length];
+        for (int i = 0; i < sentenceWords.length; i++)
+            ids[i] = getId(sentenceWords[i]);
+        return ids;
+    }
+
+    /**
+     * get the id of the words sequence. Identical sequences get the same id and share the same array
+     */
+    public int getSequenceId(int[] ids) {
+        IntArrayKey key = new IntArrayKey(ids);
+        Integer id = sequenceToId.get(key);
+        if (id != null)
+            return id;
+        synchronized (this) {
+            id = sequenceToId.get(key);
+            if (id == null) {
+                id = sequenceCount;
+                if (id == sequences.length)
+                    sequences = Arrays.copyOf(sequences, id * 2);
+                sequences[id] = ids;
+                sequenceCount++;
+                sequenceToId.put(key, id);
+            }
+            return id;
+        }
+    }
+
+    public String getWord(int id) {
+        return words[id];
+    }
+
+    public int[] getSequence(int id) {
+        return sequences[id];
+    }
+
+    /**
+     * construct back the sentence from the words sequence
+     */
+    public String getSequenceStr(int id) {
+        int[] ids = sequences[id];
+        String[] currWords = words;
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0)
+                sentence.append(' ');
+            sentence.append(currWords[ids[i]]);
+        }
+        return sentence.toString();
+    }
+
+    public int size() {
+        return wordToId.size();
+    }
+
+    public int getSequenceCount() {
+        return sequenceToId.size();
+    }
+}
@@ -0,0 +1,161 @@
+package nava.polak.onik.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Encode into a large buffer which is written into the file channel only when it is full.
+ * Strings are encoded as UTF-8 without creating byte arrays, ascii chars are copied as is.
+ * Not thread safe.
+ */
+public class OutputBuffer implements Closeable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    public OutputBuffer(Path path, int bufferSize) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    public OutputBuffer putByte(int b) throws IOException {
+        ensure(1);
+        buffer.put((byte) b);
+        return this;
+    }
+
+    public OutputBuffer putInt(int value) throws IOException {
+        ensure(4);
+        buffer.putInt(value);
+        return this;
+    }
+
+    public OutputBuffer putLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+        return this;
+    }
+
+    /**
+     * put the decimal digits of the value
+     */
+    public OutputBuffer putDecimal(long value) throws IOException {
+        return put(Long.toString(value));
+    }
+
+    /**
+     * put the string as UTF-8
+     */
+    public OutputBuffer put(CharSequence str) throws IOException {
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                if (!buffer.hasRemaining())
+                    drain();
+                buffer.put((byte) c);
+            } else {
+                i = putNonAscii(str, i);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * put the remaining bytes of the source
+     */
+    public OutputBuffer put(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            if (!buffer.hasRemaining())
+                drain();
+            int count = Math.min(source.remaining(), buffer.remaining());
+            ByteBuffer part = source.duplicate();
+            part.limit(part.position() + count);
+            buffer.put(part);
+            source.position(source.position() + count);
+        }
+        return this;
+    }
+
+    /**
+     * put the string as json string, with quotes
+     */
+    public OutputBuffer putJson(CharSequence str) throws IOException {
+        putByte('"');
+        int length = str.length();
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if (c == '"' || c == '\\') {
+                putByte('\\').putByte(c);
+            } else if (c < 0x20) {
+                putByte('\\').putByte('u').putByte('0').putByte('0')
+                        .putByte(HEX[c >> 4]).putByte(HEX[c & 0xf]);
+            } else if (c < 0x80) {
+                putByte(c);
+            } else {
+                i = putNonAscii(str, i);
+            }
+        }
+        return putByte('"');
+    }
+
+    /**
+     * @return the index of the last char used
+     */
+    private int putNonAscii(CharSequence str, int i) throws IOException {
+        char c = str.charAt(i);
+        ensure(4);
+        if (c < 0x800) {
+            buffer.put((byte) (0xc0 | c >> 6));
+            buffer.put((byte) (0x80 | c & 0x3f));
+        } else if (Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+            int codePoint = Character.toCodePoint(c, str.charAt(i + 1));
+            buffer.put((byte) (0xf0 | codePoint >> 18));
+            buffer.put((byte) (0x80 | codePoint >> 12 & 0x3f));
+            buffer.put((byte) (0x80 | codePoint >> 6 & 0x3f));
+            buffer.put((byte) (0x80 | codePoint & 0x3f));
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            //unpaired surrogate is replaced like String.getBytes does
+            buffer.put((byte) '?');
+        } else {
+            buffer.put((byte) (0xe0 | c >> 12));
+            buffer.put((byte) (0x80 | c >> 6 & 0x3f));
+            buffer.put((byte) (0x80 | c & 0x3f));
+        }
+        return i;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes)
+            drain();
+    }
+
+    /**
+     * write the buffer into the channel
+     */
+    public void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package nava.polak.onik.output;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.io.OffsetRecordStore;
+import nava.polak.onik.model.OutputFormat;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.ResultsPerType;
+import nava.polak.onik.model.TokenDictionary;
+import nava.polak.onik.parse.LineFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Write the groups into the output file on a dedicated thread.
+ * The groups are sent to the thread in batches, and it encodes them straight from the records into a large
+ * buffer which is written only when full. So the caller does not wait for the encoding and the disk,
+ * and no string is built per group.
+ * The records must not change until the writer is closed. When they are kept as offsets the original lines are written.
+ */
+@Slf4j
+public class ResultWriter implements Closeable {
+
+    /**
+     * Start of the binary format, followed by the version
+     */
+    public static final int BINARY_MAGIC = 0x50534752;
+    public static final int BINARY_VERSION = 1;
+
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_CAPACITY = 16;
+
+    private final Path path;
+    private final OutputFormat format;
+    private final List<Record> sentences;
+
+    /**
+     * The layout of the lines of the template of the records, to write them back in the text format
+     */
+    private final LineFormat lineFormat;
+
+    /**
+     * Set when the sentences are kept as offsets, so their original lines are copied from the input
+     */
+    private final OffsetRecordStore lines;
+    private final OutputBuffer out;
+
+    private final BlockingQueue<GroupBatch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private volatile Throwable failure;
+
+    private GroupBatch pending = new GroupBatch();
+    private int groupCount;
+
+    /**
+     * @param sentences the records the groups refer to
+     * @param lineFormat the layout of the lines of the template of the records
+     */
+    public ResultWriter(Path path, OutputFormat format, List<Record> sentences, LineFormat lineFormat) throws IOException {
+        this(path, format, sentences, lineFormat, OutputBuffer.DEFAULT_BUFFER_SIZE);
+    }
+
+    public ResultWriter(Path path, OutputFormat format, List<Record> sentences, LineFormat lineFormat, int bufferSize)
+            throws IOException {
+        this.path = path;
+        this.format = format;
+        this.sentences = sentences;
+        this.lineFormat = lineFormat;
+        this.lines = sentences instanceof OffsetRecordStore ? (OffsetRecordStore) sentences : null;
+        this.out = new OutputBuffer(path, bufferSize);
+        if (format == OutputFormat.BINARY)
+            out.putInt(BINARY_MAGIC).putInt(BINARY_VERSION);
+        thread = new Thread(this::run, "result-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * send the group to be written. The groups get ids in the order they are sent
+     * @param key the key of the group
+     */
+    public void write(String key, ResultsPerType group) {
+        pending.add(key, group);
+        groupCount++;
+        if (pending.size == BATCH_SIZE) {
+            send(pending);
+            pending = new GroupBatch();
+        }
+    }
+
+    /**
+     * @return the number of batches of groups waiting for the writer thread
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * wait until all groups are written and close the file
+     */
+    @Override
+    public void close() throws IOException {
+        send(pending);
+        send(GroupBatch.END);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing results into " + path, e);
+        } finally {
+            out.close();
+        }
+        if (failure != null)
+            throw new IOException("Failed writing results into " + path, failure);
+    }
+
+    private void send(GroupBatch batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sending groups to " + thread.getName(), e);
+        }
+    }
+
+    private void run() {
+        int groupId = 0;
+        try {
+            while (true) {
+                GroupBatch batch = queue.take();
+                if (batch == GroupBatch.END)
+                    return;
+                for (int i = 0; i < batch.size; i++)
+                    writeGroup(groupId++, batch.keys[i], batch.groups[i]);
+            }
+        } catch (Throwable e) {
+            log.error("Writing results into " + path + " failed", e);
+            failure = e;
+            //keep taking batches so the sender is not blocked
+            drain();
+        }
+    }
+
+    private void drain() {
+        try {
+            while (queue.take() != GroupBatch.END) {
+                //ignore the groups
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeGroup(int groupId, String key, ResultsPerType group) throws IOException {
+        int[] indexes = group.getRecordsIndex();
+        switch (format) {
+            case TEXT:
+                writeText(indexes, group.getType());
+                break;
+            case JSONL:
+                writeJson(groupId, key, indexes, group.getType());
+                break;
+            default:
+                for (int index : indexes)
+                    out.putInt(groupId).putLong(sentences.get(index).getOffset());
+        }
+    }
+
+    /**
+     * the same layout as ResultsPerType.getRecordsStr followed by a new line
+     */
+    private void writeText(int[] indexes, PatternType type) throws IOException {
+        for (int index : indexes) {
+            if (lines != null) {
+                out.put(lines.getLine(index)).putByte('\n');
+                continue;
+            }
+            putLine(sentences.get(index));
+            out.putByte('\n');
+        }
+        out.put("The changing word was: ");
+        for (int i = 0; i < indexes.length; i++) {
+            if (i > 0)
+                out.put(" , ");
+            putWord(sentences.get(indexes[i]), type);
+        }
+        out.putByte('\n').put(System.lineSeparator());
+    }
+
+    private void writeJson(int groupId, String key, int[] indexes, PatternType type) throws IOException {
+        out.put("{\"group\":").putDecimal(groupId)
+                .put(",\"type\":\"").put(type.name())
+                .put("\",\"key\":").putJson(key)
+                .put(",\"words\":[");
+        for (int i = 0; i < indexes.length; i++) {
+            if (i > 0)
+                out.putByte(',');
+            out.putJson(sentences.get(indexes[i]).getWordAccorfingType(type));
+        }
+        out.put("],\"offsets\":[");
+        for (int i = 0; i < indexes.length; i++) {
+            if (i > 0)
+                out.putByte(',');
+            out.putDecimal(sentences.get(indexes[i]).getOffset());
+        }
+        out.put("]}\n");
+    }
+
+    /**
+     * write the record back as the line of its template, see LineFormat
+     */
+    private void putLine(Record record) throws IOException {
+        for (int part = 0; part < lineFormat.size(); part++) {
+            switch (lineFormat.getPart(part)) {
+                case LITERAL:
+                    out.put(lineFormat.getLiteral(part));
+                    break;
+                case LOG:
+                    out.put(record.getLog());
+                    break;
+                case NAME:
+                    putWord(record, PatternType.NAME);
+                    break;
+                case ACTION:
+                    putWord(record, PatternType.ACTION);
+                    break;
+                case REST:
+                    putRest(record);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void putWord(Record record, PatternType type) throws IOException {
+        if (type == PatternType.REST)
+            putRest(record);
+        else
+            out.put(record.getDictionary().getWord(record.getPartId(type)));
+    }
+
+    private void putRest(Record record) throws IOException {
+        TokenDictionary dictionary = record.getDictionary();
+        int[] restIds = record.getRestIds();
+        for (int i = 0; i < restIds.length; i++) {
+            if (i > 0)
+                out.putByte(' ');
+            out.put(dictionary.getWord(restIds[i]));
+        }
+    }
+
+    /**
+     * Groups sent together to the writer thread
+     */
+    private static class GroupBatch {
+        private static final GroupBatch END = new GroupBatch();
+
+        private final String[] keys = new String[BATCH_SIZE];
+        private final ResultsPerType[] groups = new ResultsPerType[BATCH_SIZE];
+        private int size;
+
+        private void add(String key, ResultsPerType group) {
+            keys[size] = key;
+            groups[size] = group;
+            size++;
+        }
+    }
+}
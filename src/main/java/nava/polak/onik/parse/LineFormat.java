@@ -0,0 +1,72 @@
+package nava.polak.onik.parse;
+
+import nava.polak.onik.model.Record;
+
+/**
+ * The layout of the lines of a template, to write a record back as the line it was parsed from:
+ * the text out of the fields exactly as in the template, and the fields from the record.
+ * The text before the template in the line is not kept, and neither are fields other than log, name, action and rest,
+ * so they are written empty.
+ */
+public class LineFormat {
+
+    public static final LineFormat DEFAULT = new SentenceTemplate(SentenceTemplate.DEFAULT).getLineFormat();
+
+    /**
+     * What is written in a part of the line
+     */
+    public enum Part {LITERAL, LOG, NAME, ACTION, REST, OTHER}
+
+    private final Part[] parts;
+
+    /**
+     * The text of each LITERAL part, null for the other parts
+     */
+    private final String[] literals;
+
+    LineFormat(Part[] parts, String[] literals) {
+        this.parts = parts;
+        this.literals = literals;
+    }
+
+    public int size() {
+        return parts.length;
+    }
+
+    public Part getPart(int part) {
+        return parts[part];
+    }
+
+    public String getLiteral(int part) {
+        return literals[part];
+    }
+
+    /**
+     * @return the line of the record
+     */
+    public String format(Record record) {
+        StringBuilder line = new StringBuilder();
+        for (int part = 0; part < parts.length; part++) {
+            switch (parts[part]) {
+                case LITERAL:
+                    line.append(literals[part]);
+                    break;
+                case LOG:
+                    line.append(record.getLog());
+                    break;
+                case NAME:
+                    line.append(record.getName());
+                    break;
+                case ACTION:
+                    line.append(record.getAction());
+                    break;
+                case REST:
+                    line.append(record.getRestStr());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return line.toString();
+    }
+}
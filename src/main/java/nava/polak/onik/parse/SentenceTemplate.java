@@ -0,0 +1,293 @@
+package nava.polak.onik.parse;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parser of sentences with fixed layout, which scans the line once without regular expression.
+ * The template is a string with fields in curly brackets. The text out of the fields should be exactly in the line.
+ * {field} - a word, i.e. one or more characters which are not white space.
+ *           When it is the last part of the template it is the rest of the line.
+ * {field:layout} - text in fixed layout where 'd' is a digit and any other character should be exactly in the line.
+ * For example the default template "{log:dd-dd-dddd dd:dd:dd} {name} is {action} {rest}" parses the line
+ * "01-01-2012 20:12:39 Naomi is eating at a restaurant"
+ * A line matches the template the same way it matches the regular expression created by toRegex() with Matcher.find()
+ */
+public class SentenceTemplate {
+
+    public static final String DEFAULT = "{log:dd-dd-dddd dd:dd:dd} {name} is {action} {rest}";
+
+    private enum OpType {LITERAL, LAYOUT, WORD, REST}
+
+    /**
+     * A step of the scan
+     */
+    private static class Op {
+        private final OpType type;
+        private final char[] text;
+        private final int field;
+
+        private Op(OpType type, String text, int field) {
+            this.type = type;
+            this.text = text == null ? null : text.toCharArray();
+            this.field = field;
+        }
+    }
+
+    private final String template;
+    private final Op[] ops;
+    private final Map<String, Integer> fieldToIndex = new HashMap<>();
+
+    /**
+     * The regular expression is used only for lines which do not match
+     */
+    private final Pattern regex;
+
+    public SentenceTemplate(String template) {
+        this.template = template;
+        this.ops = compile(template);
+        this.regex = Pattern.compile(toRegex());
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public int getFieldCount() {
+        return fieldToIndex.size();
+    }
+
+    /**
+     * @return the index of the field in TemplateMatch
+     * @throws IllegalArgumentException if the template has no such field
+     */
+    public int fieldIndex(String field) {
+        Integer index = fieldToIndex.get(field);
+        if (index == null)
+            throw new IllegalArgumentException("Template " + template + " has no field " + field);
+        return index;
+    }
+
+    public TemplateMatch newMatch() {
+        return new TemplateMatch(getFieldCount());
+    }
+
+    /**
+     * @return the text out of the fields, which should be exactly in each line matching the template
+     */
+    List<String> getLiterals() {
+        List<String> literals = new ArrayList<>();
+        for (Op op : ops) {
+            if (op.type == OpType.LITERAL)
+                literals.add(new String(op.text));
+        }
+        return literals;
+    }
+
+    /**
+     * @return the layout of the lines of the template, to write the records back
+     */
+    public LineFormat getLineFormat() {
+        String[] fields = new String[getFieldCount()];
+        fieldToIndex.forEach((field, index) -> fields[index] = field);
+        LineFormat.Part[] parts = new LineFormat.Part[ops.length];
+        String[] literals = new String[ops.length];
+        for (int i = 0; i < ops.length; i++) {
+            if (ops[i].type == OpType.LITERAL) {
+                parts[i] = LineFormat.Part.LITERAL;
+                literals[i] = new String(ops[i].text);
+                continue;
+            }
+            switch (fields[ops[i].field]) {
+                case "log":
+                    parts[i] = LineFormat.Part.LOG;
+                    break;
+                case "name":
+                    parts[i] = LineFormat.Part.NAME;
+                    break;
+                case "action":
+                    parts[i] = LineFormat.Part.ACTION;
+                    break;
+                case "rest":
+                    parts[i] = LineFormat.Part.REST;
+                    break;
+                default:
+                    parts[i] = LineFormat.Part.OTHER;
+            }
+        }
+        return new LineFormat(parts, literals);
+    }
+
+    /**
+     * find the template in the trimmed line
+     * @param match filled with the offsets of the fields in the line
+     * @return true if the line matches the template
+     */
+    public boolean match(CharSequence line, TemplateMatch match) {
+        return match(line, 0, line.length(), match);
+    }
+
+    /**
+     * find the template in the trimmed part of the line between from and to
+     */
+    public boolean match(CharSequence line, int from, int to, TemplateMatch match) {
+        while (from < to && line.charAt(from) <= ' ')
+            from++;
+        while (to > from && line.charAt(to - 1) <= ' ')
+            to--;
+
+        //same as Matcher.find() - the template may start in any position
+        for (int start = from; start <= to; start++) {
+            int end = matchAt(line, start, to, match);
+            if (end >= 0) {
+                match.setMatch(line, start, end);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Explain why the line does not match. The regular expression is used here, so it is done only for such lines
+     */
+    public String diagnose(CharSequence line) {
+        Matcher matcher = regex.matcher(line.toString().trim());
+        if (matcher.find())
+            return "The line matches the regular expression " + regex + " but not the template " + template;
+        return "The line does not match the template " + template;
+    }
+
+    /**
+     * The regular expression matching the same lines as the template
+     */
+    public String toRegex() {
+        StringBuilder regexStr = new StringBuilder();
+        for (Op op : ops) {
+            switch (op.type) {
+                case LITERAL:
+                    regexStr.append(Pattern.quote(new String(op.text)));
+                    break;
+                case LAYOUT:
+                    regexStr.append('(');
+                    for (char c : op.text)
+                        regexStr.append(c == 'd' ? "\\d" : Pattern.quote(String.valueOf(c)));
+                    regexStr.append(')');
+                    break;
+                case WORD:
+                    regexStr.append("([^\\s]+)");
+                    break;
+                case REST:
+                    regexStr.append("(.*)");
+                    break;
+            }
+        }
+        return regexStr.toString();
+    }
+
+    /**
+     * @return the end of the match or -1 if the template does not match in this position
+     */
+    private int matchAt(CharSequence line, int start, int to, TemplateMatch match) {
+        int pos = start;
+        for (Op op : ops) {
+            switch (op.type) {
+                case LITERAL:
+                    if (pos + op.text.length > to)
+                        return -1;
+                    for (char c : op.text) {
+                        if (line.charAt(pos++) != c)
+                            return -1;
+                    }
+                    break;
+                case LAYOUT:
+                    if (pos + op.text.length > to)
+                        return -1;
+                    int fieldStart = pos;
+                    for (char c : op.text) {
+                        char lineChar = line.charAt(pos++);
+                        if (c == 'd' ? (lineChar < '0' || lineChar > '9') : lineChar != c)
+                            return -1;
+                    }
+                    match.set(op.field, fieldStart, pos);
+                    break;
+                case WORD:
+                    int wordStart = pos;
+                    while (pos < to && !isWhiteSpace(line.charAt(pos)))
+                        pos++;
+                    if (pos == wordStart)
+                        return -1;
+                    match.set(op.field, wordStart, pos);
+                    break;
+                case REST:
+                    int restStart = pos;
+                    while (pos < to && !isLineTerminator(line.charAt(pos)))
+                        pos++;
+                    match.set(op.field, restStart, pos);
+                    break;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * same as \s in regular expression
+     */
+    private static boolean isWhiteSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * the characters not matched by . in regular expression
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private Op[] compile(String template) {
+        List<Op> compiled = new ArrayList<>();
+        int pos = 0;
+        while (pos < template.length()) {
+            int open = template.indexOf('{', pos);
+            if (open < 0) {
+                compiled.add(new Op(OpType.LITERAL, template.substring(pos), -1));
+                break;
+            }
+            if (open > pos)
+                compiled.add(new Op(OpType.LITERAL, template.substring(pos, open), -1));
+            int close = template.indexOf('}', open);
+            if (close < 0)
+                throw new IllegalArgumentException("Missing } in template " + template);
+
+            String field = template.substring(open + 1, close);
+            String layout = null;
+            int sep = field.indexOf(':');
+            if (sep >= 0) {
+                layout = field.substring(sep + 1);
+                field = field.substring(0, sep);
+            }
+            if (field.isEmpty() || fieldToIndex.containsKey(field))
+                throw new IllegalArgumentException("Empty or duplicate field name in template " + template);
+            int fieldIndex = fieldToIndex.size();
+            fieldToIndex.put(field, fieldIndex);
+
+            boolean last = close == template.length() - 1;
+            if (layout != null)
+                compiled.add(new Op(OpType.LAYOUT, layout, fieldIndex));
+            else
+                compiled.add(new Op(last ? OpType.REST : OpType.WORD, null, fieldIndex));
+            pos = close + 1;
+        }
+
+        //a word ends in white space, so the scan is the same as the regular expression without backtracking
+        for (int i = 0; i < compiled.size() - 1; i++) {
+            Op next = compiled.get(i + 1);
+            if (compiled.get(i).type == OpType.WORD && (next.type != OpType.LITERAL || !isWhiteSpace(next.text[0])))
+                throw new IllegalArgumentException("A word field should be followed by white space in template " + template);
+        }
+        return compiled.toArray(new Op[0]);
+    }
+}
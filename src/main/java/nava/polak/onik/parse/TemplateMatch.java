@@ -0,0 +1,62 @@
+package nava.polak.onik.parse;
+
+/**
+ * The offsets of the fields found by SentenceTemplate in a line.
+ * The same instance is reused for all lines, so no memory is allocated per line.
+ */
+public class TemplateMatch {
+    private final int[] starts;
+    private final int[] ends;
+    private CharSequence line;
+    private int matchStart;
+    private int matchEnd;
+
+    public TemplateMatch(int fieldCount) {
+        starts = new int[fieldCount];
+        ends = new int[fieldCount];
+    }
+
+    void set(int field, int start, int end) {
+        starts[field] = start;
+        ends[field] = end;
+    }
+
+    void setMatch(CharSequence line, int matchStart, int matchEnd) {
+        this.line = line;
+        this.matchStart = matchStart;
+        this.matchEnd = matchEnd;
+    }
+
+    public int getStart(int field) {
+        return starts[field];
+    }
+
+    public int getEnd(int field) {
+        return ends[field];
+    }
+
+    /**
+     * @return where the template match begins in the line
+     */
+    public int getMatchStart() {
+        return matchStart;
+    }
+
+    /**
+     * @return where the template match ends in the line
+     */
+    public int getMatchEnd() {
+        return matchEnd;
+    }
+
+    public CharSequence getLine() {
+        return line;
+    }
+
+    /**
+     * copy the field out of the line
+     */
+    public String getField(int field) {
+        return line.subSequence(starts[field], ends[field]).toString();
+    }
+}
@@ -0,0 +1,124 @@
+package nava.polak.onik.parse;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Find the template of a line among several templates, without trying each of them.
+ * The longest text out of the fields of each template is its keyword. Such a keyword is in every line the template matches.
+ * The keywords are kept in a trie, so a single scan of the line finds the keywords in it, and only the templates
+ * of these keywords are matched. Templates without text out of the fields are always matched.
+ * A line belongs to the first template, in the given order, it matches.
+ */
+public class TemplateRouter {
+
+    public static final int MAX_TEMPLATES = Long.SIZE;
+
+    private final SentenceTemplate[] templates;
+    private final TrieNode root = new TrieNode();
+
+    /**
+     * bits of the templates which have no keyword
+     */
+    private long alwaysMatched;
+
+    public TemplateRouter(List<SentenceTemplate> templates) {
+        if (templates.size() > MAX_TEMPLATES)
+            throw new IllegalArgumentException("At most " + MAX_TEMPLATES + " templates are supported, got " + templates.size());
+        this.templates = templates.toArray(new SentenceTemplate[0]);
+        for (int i = 0; i < this.templates.length; i++) {
+            String keyword = "";
+            for (String literal : this.templates[i].getLiterals()) {
+                if (literal.length() > keyword.length())
+                    keyword = literal;
+            }
+            if (keyword.isEmpty())
+                alwaysMatched |= 1L << i;
+            else
+                root.add(keyword, 0).templates |= 1L << i;
+        }
+    }
+
+    /**
+     * @return new match per template, to be given to route
+     */
+    public TemplateMatch[] newMatches() {
+        TemplateMatch[] matches = new TemplateMatch[templates.length];
+        for (int i = 0; i < templates.length; i++)
+            matches[i] = templates[i].newMatch();
+        return matches;
+    }
+
+    /**
+     * find the template of the line
+     * @param matches match per template. The match of the returned template is filled
+     * @return the index of the template, or -1 when the line matches no template
+     */
+    public int route(CharSequence line, TemplateMatch[] matches) {
+        long candidates = alwaysMatched | findKeywords(line);
+        while (candidates != 0) {
+            int i = Long.numberOfTrailingZeros(candidates);
+            if (templates[i].match(line, matches[i]))
+                return i;
+            candidates &= candidates - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * @return bits of the templates whose keyword is in the line
+     */
+    private long findKeywords(CharSequence line) {
+        long found = 0;
+        int length = line.length();
+        for (int start = 0; start < length; start++) {
+            TrieNode node = root;
+            for (int pos = start; pos < length; pos++) {
+                node = node.child(line.charAt(pos));
+                if (node == null)
+                    break;
+                found |= node.templates;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Node of the keywords trie. The children are few, so they are kept in arrays
+     */
+    private static class TrieNode {
+        private char[] chars = new char[0];
+        private TrieNode[] children = new TrieNode[0];
+
+        /**
+         * bits of the templates whose keyword ends in this node
+         */
+        private long templates;
+
+        private TrieNode child(char c) {
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c)
+                    return children[i];
+            }
+            return null;
+        }
+
+        /**
+         * @return the node of the end of the keyword, added if missing
+         */
+        private TrieNode add(String keyword, int pos) {
+            if (pos == keyword.length())
+                return this;
+            char c = keyword.charAt(pos);
+            TrieNode child = child(c);
+            if (child == null) {
+                child = new TrieNode();
+                chars = Arrays.copyOf(chars, chars.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                chars[chars.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child.add(keyword, pos + 1);
+        }
+    }
+}
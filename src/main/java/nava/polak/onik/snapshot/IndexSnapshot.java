@@ -0,0 +1,203 @@
+package nava.polak.onik.snapshot;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.index.GroupTable;
+import nava.polak.onik.index.IntPostingList;
+import nava.polak.onik.index.KeyToPostingListMap;
+import nava.polak.onik.model.GroupKey;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.ResultsPerType;
+import nava.polak.onik.model.SentenceStore;
+import nava.polak.onik.model.TokenDictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Binary file of the index built from an input, so a later run continues from it instead of reading the input again.
+ * It has the token dictionary, the sentences as word ids, the posting lists of the parts and the groups.
+ * The snapshot is memory mapped when loaded, and the id arrays (sequences, posting lists and group sentences) are
+ * copied from it in bulk. The dictionary, sentences, posting lists and groups are then rebuilt by adding their items
+ * in the order they were saved, so the sentences are not parsed or compared again, but each item is inserted again.
+ * Format, in the byte order of DataOutputStream:
+ * header: magic, version, template, input offset and checksum (see InputPosition)
+ * words: count, each as length and UTF-8 bytes, in the order of their ids
+ * sequences: count, each as length and word ids, in the order of their ids
+ * sentences: count, each as log, name id, action id, rest id, offset in the input
+ * posting lists of name, action and rest: count, each as key, size and sentence indexes
+ * groups: count, each as type, 2 key ids, size and sentence indexes
+ */
+@Slf4j
+public class IndexSnapshot {
+
+    private static final int MAGIC = 0x5053494d;
+    private static final int VERSION = 2;
+
+    private final TokenDictionary dictionary;
+    private final SentenceStore sentences;
+    private final KeyToPostingListMap nameToIndexMap;
+    private final KeyToPostingListMap actionToIndexMap;
+    private final KeyToPostingListMap restToIndexMap;
+    private final GroupTable groups;
+
+    public IndexSnapshot(TokenDictionary dictionary, SentenceStore sentences, KeyToPostingListMap nameToIndexMap,
+                         KeyToPostingListMap actionToIndexMap, KeyToPostingListMap restToIndexMap,
+                         GroupTable groups) {
+        this.dictionary = dictionary;
+        this.sentences = sentences;
+        this.nameToIndexMap = nameToIndexMap;
+        this.actionToIndexMap = actionToIndexMap;
+        this.restToIndexMap = restToIndexMap;
+        this.groups = groups;
+    }
+
+    /**
+     * write the index into the file. The file is replaced only when it was written completely
+     * @param template the template the sentences were parsed with
+     * @param position the part of the input in the index
+     */
+    public void save(Path path, String template, InputPosition position) throws IOException {
+        if (sentences.getFirstIndex() > 0)
+            throw new IllegalStateException("Snapshot of removed sentences is not supported");
+        Path partial = path.resolveSibling(path.getFileName() + ".partial");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partial), 1 << 20))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, template);
+            out.writeLong(position.getOffset());
+            out.writeLong(position.getChecksum());
+
+            out.writeInt(dictionary.size());
+            for (int id = 0; id < dictionary.size(); id++)
+                writeString(out, dictionary.getWord(id));
+            out.writeInt(dictionary.getSequenceCount());
+            for (int id = 0; id < dictionary.getSequenceCount(); id++)
+                writeInts(out, dictionary.getSequence(id), dictionary.getSequence(id).length);
+
+            out.writeInt(sentences.size());
+            for (Record record : sentences) {
+                writeString(out, record.getLog());
+                out.writeInt(record.getNameId());
+                out.writeInt(record.getActionId());
+                out.writeInt(record.getRestId());
+                out.writeLong(record.getOffset());
+            }
+
+            int[] buffer = new int[sentences.size()];
+            writePostingLists(out, nameToIndexMap, buffer);
+            writePostingLists(out, actionToIndexMap, buffer);
+            writePostingLists(out, restToIndexMap, buffer);
+
+            out.writeInt(groups.size());
+            for (int groupId = 0; groupId < groups.size(); groupId++) {
+                GroupKey key = groups.getKey(groupId);
+                out.writeByte(key.getType().ordinal());
+                out.writeInt(key.getFirst());
+                out.writeInt(key.getSecond());
+                ResultsPerType group = groups.getGroup(groupId);
+                out.writeInt(group.size());
+                for (int i = 0; i < group.size(); i++)
+                    out.writeInt(group.getRecord(i));
+            }
+        }
+        Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING);
+        log.debug("Saved snapshot of " + sentences.size() + " sentences and " + groups.size() + " groups into " + path);
+    }
+
+    /**
+     * read the index from the file into the empty structures
+     * @param template the template the sentences are parsed with. Should be the one of the snapshot
+     * @return the part of the input in the index
+     */
+    public InputPosition load(Path path, String template) throws IOException {
+        if (sentences.size() > 0 || dictionary.size() > 0)
+            throw new IllegalStateException("Snapshot is loaded into an index which is not empty");
+        try (MappedInput in = new MappedInput(path)) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(path + " is not a snapshot");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Snapshot " + path + " has version " + version + " instead of " + VERSION);
+            String snapshotTemplate = in.readString();
+            if (!snapshotTemplate.equals(template))
+                throw new IllegalArgumentException("Snapshot " + path + " was created with template " + snapshotTemplate);
+            InputPosition position = new InputPosition(in.readLong(), in.readLong());
+
+            //the words and sequences get the same ids when added in the order of their ids
+            int wordCount = in.readInt();
+            for (int id = 0; id < wordCount; id++)
+                dictionary.getId(in.readString());
+            int sequenceCount = in.readInt();
+            for (int id = 0; id < sequenceCount; id++)
+                dictionary.getSequenceId(readInts(in));
+
+            int sentenceCount = in.readInt();
+            for (int i = 0; i < sentenceCount; i++)
+                sentences.add(new Record(in.readString(), in.readInt(), in.readInt(), in.readInt(), in.readLong(), dictionary));
+
+            readPostingLists(in, nameToIndexMap);
+            readPostingLists(in, actionToIndexMap);
+            readPostingLists(in, restToIndexMap);
+
+            int groupCount = in.readInt();
+            PatternType[] types = PatternType.values();
+            for (int i = 0; i < groupCount; i++) {
+                PatternType type = types[in.readByte()];
+                int groupId = groups.getGroupId(new GroupKey(type, in.readInt(), in.readInt()));
+                for (int index : readInts(in))
+                    groups.join(groupId, index);
+            }
+            log.debug("Loaded snapshot of " + sentenceCount + " sentences and " + groupCount + " groups from " + path);
+            return position;
+        }
+    }
+
+    private static void writePostingLists(DataOutputStream out, KeyToPostingListMap map, int[] buffer)
+            throws IOException {
+        out.writeInt(map.size());
+        IOException[] failure = new IOException[1];
+        map.forEach((key, postingList) -> {
+            try {
+                out.writeInt(key);
+                writeInts(out, buffer, postingList.toArray(buffer));
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null)
+            throw failure[0];
+    }
+
+    private static void readPostingLists(MappedInput in, KeyToPostingListMap map) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int key = in.readInt();
+            for (int index : readInts(in))
+                map.put(key, index);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int length) throws IOException {
+        out.writeInt(length);
+        for (int i = 0; i < length; i++)
+            out.writeInt(values[i]);
+    }
+
+    private static int[] readInts(MappedInput in) throws IOException {
+        int[] values = new int[in.readInt()];
+        in.readInts(values);
+        return values;
+    }
+}
@@ -0,0 +1,54 @@
+package nava.polak.onik.snapshot;
+
+import lombok.Value;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The part of the input which is in a snapshot: its length, and the checksum of its last bytes.
+ * A later input continues the snapshot if it starts with the same bytes, e.g. the same log file after it grew.
+ */
+@Value
+public class InputPosition {
+
+    /**
+     * The bytes before the offset which are compared
+     */
+    private static final int CHECKED_BYTES = 64 * 1024;
+
+    private long offset;
+    private long checksum;
+
+    /**
+     * @param offset the length of the input which was read
+     */
+    public static InputPosition of(Path input, long offset) throws IOException {
+        return new InputPosition(offset, checksum(input, offset));
+    }
+
+    /**
+     * @return true if the input starts with the part in the snapshot
+     */
+    public boolean isContinuedBy(Path input) throws IOException {
+        return Files.size(input) >= offset && checksum(input, offset) == checksum;
+    }
+
+    private static long checksum(Path input, long offset) throws IOException {
+        long start = Math.max(0, offset - CHECKED_BYTES);
+        ByteBuffer bytes = ByteBuffer.allocate((int) (offset - start));
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            while (bytes.hasRemaining() && channel.read(bytes, start + bytes.position()) > 0) {
+                //read until the offset
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.array(), 0, bytes.position());
+        return crc.getValue();
+    }
+}
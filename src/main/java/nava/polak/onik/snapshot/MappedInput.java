@@ -0,0 +1,83 @@
+package nava.polak.onik.snapshot;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read a memory mapped file of any size. The file is mapped in windows, and the next window is mapped
+ * from the current position when a value does not fit in the current window.
+ * The values are read in the format written by DataOutputStream, with strings as length and UTF-8 bytes.
+ */
+class MappedInput implements Closeable {
+
+    private static final int WINDOW_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final long size;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    MappedInput(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+    }
+
+    byte readByte() throws IOException {
+        return take(Byte.BYTES).get();
+    }
+
+    int readInt() throws IOException {
+        return take(Integer.BYTES).getInt();
+    }
+
+    long readLong() throws IOException {
+        return take(Long.BYTES).getLong();
+    }
+
+    String readString() throws IOException {
+        byte[] bytes = new byte[readInt()];
+        take(bytes.length).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * fill the array with the next ints, copied in bulk from the mapped file
+     */
+    void readInts(int[] values) throws IOException {
+        int done = 0;
+        while (done < values.length) {
+            int count = Math.min(values.length - done, WINDOW_SIZE / Integer.BYTES);
+            take(count * Integer.BYTES).asIntBuffer().get(values, done, count);
+            done += count;
+        }
+    }
+
+    /**
+     * @return the window positioned on the next bytes, which are skipped by the next read
+     */
+    private ByteBuffer take(int bytes) throws IOException {
+        if (window == null || position + bytes > windowStart + window.limit()) {
+            if (position + bytes > size)
+                throw new EOFException("Snapshot ended at " + size + " while reading " + bytes + " bytes at " + position);
+            windowStart = position;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(WINDOW_SIZE, size - windowStart));
+        }
+        window.position((int) (position - windowStart));
+        position += bytes;
+        return window;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
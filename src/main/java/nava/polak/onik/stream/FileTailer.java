@@ -0,0 +1,103 @@
+package nava.polak.onik.stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read the lines added to a growing file.
+ * Each poll reads the complete lines written since the last poll. A line is complete when its \n was written,
+ * so a line being written is returned by a later poll. A \r before the \n is removed.
+ * When the file gets shorter it was truncated or rotated, and it is read again from its start.
+ */
+@Slf4j
+public class FileTailer implements Closeable {
+
+    private static final int READ_SIZE = 64 * 1024;
+
+    /**
+     * Maximal bytes read in a poll, so the lines are handled while a big file is read
+     */
+    private static final int MAX_POLL_BYTES = 16 * READ_SIZE;
+
+    private final Path path;
+    private FileChannel channel;
+    private long position;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(READ_SIZE);
+
+    /**
+     * the start of a line which was not completed yet
+     */
+    private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+
+    public FileTailer(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * @return the complete lines written since the last poll. Empty if there are none, or the file does not exist yet
+     */
+    public List<String> poll() throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (channel == null) {
+            if (!Files.exists(path))
+                return lines;
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        if (channel.size() < position) {
+            log.warn(path + " got shorter, reading it from the start");
+            position = 0;
+            partialLine.reset();
+        }
+
+        long pollEnd = position + MAX_POLL_BYTES;
+        while (position < pollEnd) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0)
+                break;
+            position += read;
+            int lineStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) != '\n')
+                    continue;
+                partialLine.write(buffer.array(), lineStart, i - lineStart);
+                lines.add(takeLine());
+                lineStart = i + 1;
+            }
+            partialLine.write(buffer.array(), lineStart, read - lineStart);
+        }
+        return lines;
+    }
+
+    /**
+     * @return true if the last poll stopped before the end of the file
+     */
+    public boolean hasMore() throws IOException {
+        return channel != null && channel.size() > position;
+    }
+
+    private String takeLine() {
+        byte[] bytes = partialLine.toByteArray();
+        partialLine.reset();
+        int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null)
+            channel.close();
+    }
+}
@@ -0,0 +1,71 @@
+package nava.polak.onik.stream;
+
+import nava.polak.onik.model.LogTime;
+
+/**
+ * The time of each sentence in the stream, in the order of the sentences, to find the sentences out of the window.
+ * The window ends in the latest time seen. A sentence is out of the window when it is older than the window,
+ * and all the sentences before it are out of the window as well - so sentences a bit out of order are kept
+ * until the sentences before them are out.
+ * A sentence which time can not be parsed gets the latest time seen.
+ */
+public class TimeWindow {
+
+    private final long windowSeconds;
+
+    /**
+     * the times in seconds of the sentences in the window, as a ring
+     */
+    private long[] times = new long[1024];
+    private int head;
+    private int count;
+
+    private long latest = LogTime.UNKNOWN;
+
+    public TimeWindow(long windowSeconds) {
+        this.windowSeconds = windowSeconds;
+    }
+
+    /**
+     * add the time of the next sentence
+     * @param time epoch seconds, or LogTime.UNKNOWN
+     */
+    public void add(long time) {
+        long seconds = time == LogTime.UNKNOWN ? latest : time;
+        latest = Math.max(latest, seconds);
+        if (count == times.length) {
+            long[] bigger = new long[times.length * 2];
+            for (int i = 0; i < count; i++)
+                bigger[i] = times[(head + i) % times.length];
+            times = bigger;
+            head = 0;
+        }
+        times[(head + count) % times.length] = seconds;
+        count++;
+    }
+
+    /**
+     * remove the oldest sentences which are out of the window
+     * @return the number of sentences removed
+     */
+    public int removeExpired() {
+        int removed = 0;
+        //no time was parsed yet
+        if (latest == LogTime.UNKNOWN)
+            return removed;
+        while (count > 0 && times[head] < latest - windowSeconds) {
+            head = (head + 1) % times.length;
+            count--;
+            removed++;
+        }
+        if (count == 0 && times.length > 1024) {
+            times = new long[1024];
+            head = 0;
+        }
+        return removed;
+    }
+
+    public int size() {
+        return count;
+    }
+}
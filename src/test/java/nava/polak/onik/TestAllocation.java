@@ -0,0 +1,96 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.IndexMode;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.TokenDictionary;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests that handling a record in steady state allocates only the growth of the arrays it is appended into.
+ * The measured records repeat the sentences of the records before them, so they join existing groups and signatures.
+ * The arrays double when they are full, which allocates about 2 values per value appended with these records:
+ * 70 bytes per record with the pairwise index and 47 with the signature index, with compressed references.
+ */
+@Slf4j
+public class TestAllocation {
+
+    private static final int RECORDS = 100000;
+
+    @Test
+    public void testPairwiseAllocation() {
+        log.debug("run test testPairwiseAllocation");
+        PatternSimilarity similarity = newSimilarity(IndexMode.PAIRWISE);
+        List<Record> records = records();
+        //the sentence, its 3 parts in the posting lists and its 3 groups
+        long bytesPerRecord = bytesPerRecord(similarity, records);
+        Assert.assertTrue(bytesPerRecord < 80, "Allocated " + bytesPerRecord + " bytes per record");
+
+        //matching a sentence against the index, when its groups exist, does not allocate at all
+        com.sun.management.ThreadMXBean threads = threads();
+        long threadId = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 2 * RECORDS; i++)
+            similarity.findMatches(i);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - start;
+        log.debug("Allocated " + allocated + " bytes while matching " + 2 * RECORDS + " records");
+        Assert.assertTrue(allocated < RECORDS, "Allocated " + allocated + " bytes while matching");
+    }
+
+    @Test
+    public void testSignatureAllocation() {
+        log.debug("run test testSignatureAllocation");
+        //the sentence, its 3 groups, and the 2 signatures where it waits for a sentence with another word
+        long bytesPerRecord = bytesPerRecord(newSimilarity(IndexMode.SIGNATURE), records());
+        Assert.assertTrue(bytesPerRecord < 56, "Allocated " + bytesPerRecord + " bytes per record");
+    }
+
+    /**
+     * sentences matching others in all types, with word ids which are not cached as Integer.
+     * The second half repeats the sentences of the first half
+     */
+    private List<Record> records() {
+        TokenDictionary dictionary = new TokenDictionary();
+        List<Record> records = new ArrayList<>();
+        for (int i = 0; i < 2 * RECORDS; i++)
+            records.add(new Record("01-01-2012 19:45:00", "name" + i % 500, "action" + i / 500 % 20,
+                    "at word" + i % RECORDS / 10000 + " diner", dictionary));
+        return records;
+    }
+
+    private PatternSimilarity newSimilarity(IndexMode indexMode) {
+        RunOptions options = new RunOptions();
+        options.setIndexMode(indexMode);
+        return new PatternSimilarity(TestData.DIR_PATH, TestData.outputFile("testAllocation"), options);
+    }
+
+    /**
+     * @return the bytes allocated per record of the second half of the records
+     */
+    private long bytesPerRecord(PatternSimilarity similarity, List<Record> records) {
+        com.sun.management.ThreadMXBean threads = threads();
+        //the first half creates the groups and the signatures
+        for (int i = 0; i < RECORDS; i++)
+            similarity.handleRecord(records.get(i));
+        long threadId = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = RECORDS; i < 2 * RECORDS; i++)
+            similarity.handleRecord(records.get(i));
+        long bytesPerRecord = (threads.getThreadAllocatedBytes(threadId) - start) / RECORDS;
+        log.debug("Allocated " + bytesPerRecord + " bytes per record");
+        return bytesPerRecord;
+    }
+
+    private com.sun.management.ThreadMXBean threads() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            throw new SkipException("The allocated bytes of a thread are not available");
+        return (com.sun.management.ThreadMXBean) bean;
+    }
+}
@@ -0,0 +1,103 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.index.LshIndex;
+import nava.polak.onik.model.IndexMode;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.ResultsPerType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Tests the approximate index, which finds rests differing by up to k words substituted, inserted or deleted
+ */
+@Slf4j
+public class TestApproximate {
+
+    private static final String[] SENTENCES = {
+            "01-01-2012 19:45:00 Naomi is eating at a diner",
+            "01-01-2012 19:45:01 Naomi is eating at the diner",
+            "01-01-2012 19:45:02 Naomi is eating at diner",
+            "01-01-2012 19:45:03 Naomi is eating at a nice diner",
+            "01-01-2012 19:45:04 Naomi is eating at a very big nice diner",
+            "01-01-2012 19:45:05 Naomi is eating something else entirely now",
+            "01-01-2012 19:45:06 Lea is eating at a diner",
+            "01-01-2012 19:45:07 Naomi is eating at a diner"
+    };
+
+    @Test
+    public void testEditDistance() {
+        log.debug("run test testEditDistance");
+        Assert.assertEquals(LshIndex.editDistance(new int[]{1, 2, 3}, new int[]{1, 2, 3}, 1), 0);
+        Assert.assertEquals(LshIndex.editDistance(new int[]{1, 2, 3}, new int[]{1, 5, 3}, 1), 1);
+        Assert.assertEquals(LshIndex.editDistance(new int[]{1, 2, 3}, new int[]{1, 3}, 1), 1);
+        Assert.assertEquals(LshIndex.editDistance(new int[]{1, 3}, new int[]{1, 2, 3}, 1), 1);
+        Assert.assertEquals(LshIndex.editDistance(new int[]{1, 2, 3, 4}, new int[]{2, 3, 4, 5}, 2), 2);
+        Assert.assertEquals(LshIndex.editDistance(new int[]{1, 2, 3, 4}, new int[]{2, 3, 4, 5}, 1), 2);
+        Assert.assertEquals(LshIndex.editDistance(new int[]{1}, new int[]{1, 2, 3}, 1), 2);
+        Assert.assertEquals(LshIndex.editDistance(new int[]{1, 2, 3}, new int[]{4, 5, 6}, 5), 3);
+        Assert.assertEquals(LshIndex.editDistance(new int[]{}, new int[]{7}, 1), 1);
+    }
+
+    @Test
+    public void testInsertedAndDeletedWords() {
+        log.debug("run test testInsertedAndDeletedWords");
+        HashMap<String, ResultsPerType> results = run(1);
+
+        ResultsPerType rest = results.get("REST:Naomi eating");
+        Assert.assertEquals(rest.getType(), PatternType.REST);
+        Assert.assertEquals(rest.getRecordsIndex(), new int[]{0, 1, 2, 3, 7});
+        //the name is still matched exactly
+        Assert.assertEquals(results.get("NAME:eating at a diner").getRecordsIndex(), new int[]{0, 6, 7});
+    }
+
+    @Test
+    public void testMaxDistance() {
+        log.debug("run test testMaxDistance");
+        HashMap<String, ResultsPerType> results = run(2);
+
+        Assert.assertEquals(results.get("REST:Naomi eating").getRecordsIndex(), new int[]{0, 1, 2, 3, 4, 7});
+    }
+
+    @Test
+    public void testIncludesExactMatches() {
+        log.debug("run test testIncludesExactMatches");
+        String inputFile = TestData.createInputFile("testApproximateRandom", TestData.randomSentences(71, 3000));
+        RunOptions options = new RunOptions();
+        options.setIndexMode(IndexMode.SIGNATURE);
+        HashMap<String, ResultsPerType> exact = new PatternSimilarity(inputFile, TestData.outputFile("testApproximate"), options)
+                .findSentensesWithSingleDifference();
+        options.setIndexMode(IndexMode.APPROXIMATE);
+        HashMap<String, ResultsPerType> approximate = new PatternSimilarity(inputFile, TestData.outputFile("testApproximate"), options)
+                .findSentensesWithSingleDifference();
+
+        Assert.assertTrue(approximate.size() >= exact.size());
+        exact.forEach((key, results) -> {
+            int[] approximateIndexes = approximate.get(key).getRecordsIndex();
+            for (int index : results.getRecordsIndex())
+                Assert.assertTrue(Arrays.binarySearch(approximateIndexes, index) >= 0, key + " " + index);
+        });
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*approximate index.*")
+    public void testOverMemoryBudgetFails() {
+        log.debug("run test testOverMemoryBudgetFails");
+        String inputFile = TestData.createInputFile("testApproximateOverBudget", SENTENCES);
+        RunOptions options = new RunOptions();
+        options.setIndexMode(IndexMode.APPROXIMATE);
+        //the exact external mode would not find the approximate matches
+        options.setMemoryBudget(10);
+        new PatternSimilarity(inputFile, TestData.outputFile("testApproximate"), options).findSentensesWithSingleDifference();
+    }
+
+    private HashMap<String, ResultsPerType> run(int maxDistance) {
+        String inputFile = TestData.createInputFile("testApproximate", SENTENCES);
+        RunOptions options = new RunOptions();
+        options.setIndexMode(IndexMode.APPROXIMATE);
+        options.setMaxDistance(maxDistance);
+        return new PatternSimilarity(inputFile, TestData.outputFile("testApproximate"), options).findSentensesWithSingleDifference();
+    }
+}
@@ -0,0 +1,76 @@
+package nava.polak.onik;
+
+import nava.polak.onik.model.ResultsPerType;
+import org.testng.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Input files and expected results shared by the tests
+ */
+public class TestData {
+    public static final String DIR_PATH = System.getProperty("user.dir") + File.separator + "output";
+
+    private static final String[] NAMES = {"Naomi", "George", "Lea", "Ido", "Mike"};
+    private static final String[] ACTIONS = {"eating", "getting", "making", "doing"};
+    private static final String[] WORDS = {"at", "a", "the", "diner", "car", "into", "dinner", "something"};
+
+    /**
+     * create random sentences with small vocabulary so many of them are similar
+     */
+    public static List<String> randomSentences(long seed, int count) {
+        Random random = new Random(seed);
+        List<String> sentences = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder sentence = new StringBuilder(String.format("%02d-01-2012 %02d:%02d:%02d ",
+                    1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60)));
+            sentence.append(NAMES[random.nextInt(NAMES.length)]).append(" is ")
+                    .append(ACTIONS[random.nextInt(ACTIONS.length)]);
+            int restLength = 1 + random.nextInt(3);
+            for (int w = 0; w < restLength; w++)
+                sentence.append(" ").append(WORDS[random.nextInt(WORDS.length)]);
+            sentences.add(sentence.toString());
+        }
+        return sentences;
+    }
+
+    public static String createInputFile(String name, List<String> data) {
+        new File(DIR_PATH).mkdirs();
+        String testFilePath = DIR_PATH + File.separator + name + ".txt";
+        try {
+            Files.write(Paths.get(testFilePath), data, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing the input file", e);
+        }
+        return testFilePath;
+    }
+
+    public static String createInputFile(String name, String[] data) {
+        return createInputFile(name, Arrays.asList(data));
+    }
+
+    public static String outputFile(String name) {
+        new File(DIR_PATH).mkdirs();
+        return DIR_PATH + File.separator + name + "_output.txt";
+    }
+
+    /**
+     * The results are equal when they have the same keys with the same type and sentences, in any order
+     */
+    public static void assertSameResults(Map<String, ResultsPerType> actual, Map<String, ResultsPerType> expected) {
+        Assert.assertEquals(actual.keySet(), expected.keySet());
+        expected.forEach((key, results) -> {
+            Assert.assertEquals(actual.get(key).getType(), results.getType(), key);
+            Assert.assertEquals(actual.get(key).getRecordsIndex(), results.getRecordsIndex(), key);
+        });
+    }
+}
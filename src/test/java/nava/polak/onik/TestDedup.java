@@ -0,0 +1,83 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.DedupRecordStore;
+import nava.polak.onik.model.IndexMode;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.ResultsPerType;
+import nava.polak.onik.model.TokenDictionary;
+import nava.polak.onik.parse.LineFormat;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests that identical sentences are kept once and indexed once, with the same results as without dedup
+ */
+@Slf4j
+public class TestDedup {
+
+    @Test
+    public void testIdenticalSentencesKeptOnce() {
+        log.debug("run test testIdenticalSentencesKeptOnce");
+        TokenDictionary dictionary = new TokenDictionary();
+        DedupRecordStore store = new DedupRecordStore();
+        store.add(new Record("01-01-2012 19:45:00", "Naomi", "eating", "at a diner", 0, dictionary));
+        store.add(new Record("01-01-2012 19:46:00", "Naomi", "eating", "at the diner", 47, dictionary));
+        store.add(new Record("01-01-2012 19:47:00", "Naomi", "eating", "at a diner", 96, dictionary));
+        //the log text is kept, so the sentence is not collapsed
+        store.add(new Record("not a time", "Naomi", "eating", "at a diner", 143, dictionary));
+
+        Assert.assertEquals(store.size(), 4);
+        Assert.assertFalse(store.isDuplicate(0));
+        Assert.assertTrue(store.isDuplicate(2));
+        Assert.assertFalse(store.isDuplicate(3));
+        Assert.assertEquals(store.getDuplicateCount(), 1);
+        Assert.assertEquals(store.getCount(2), 2);
+        Assert.assertEquals(store.getCount(1), 1);
+        Assert.assertEquals(LineFormat.DEFAULT.format(store.get(2)), "01-01-2012 19:47:00 Naomi is eating at a diner");
+        Assert.assertEquals(store.get(2).getOffset(), 96);
+        Assert.assertEquals(store.get(3).getLog(), "not a time");
+
+        ResultsPerType group = new ResultsPerType(PatternType.REST);
+        group.addRecord(1);
+        group.addRecord(0);
+        store.expand(group);
+        Assert.assertEquals(group.getRecordsIndex(), new int[]{0, 1, 2});
+    }
+
+    @Test
+    public void testSameResultsAsWithoutDedup() throws IOException {
+        log.debug("run test testSameResultsAsWithoutDedup");
+        //each sentence is repeated at other times
+        List<String> sentences = new ArrayList<>();
+        List<String> random = TestData.randomSentences(43, 500);
+        for (int repeat = 0; repeat < 4; repeat++) {
+            for (String sentence : random)
+                sentences.add(String.format("%02d", 10 + repeat) + sentence.substring(2));
+        }
+        String inputFile = TestData.createInputFile("testDedup", sentences);
+        for (IndexMode indexMode : new IndexMode[]{IndexMode.PAIRWISE, IndexMode.SIGNATURE, IndexMode.SHARDED, IndexMode.APPROXIMATE}) {
+            RunOptions options = new RunOptions();
+            options.setIndexMode(indexMode);
+            PatternSimilarity plain = new PatternSimilarity(inputFile, TestData.outputFile("testDedupPlain"), options);
+            HashMap<String, ResultsPerType> expected = plain.findSentensesWithSingleDifference();
+            plain.printResults();
+
+            options.setDedup(true);
+            PatternSimilarity dedup = new PatternSimilarity(inputFile, TestData.outputFile("testDedup"), options);
+            HashMap<String, ResultsPerType> results = dedup.findSentensesWithSingleDifference();
+            dedup.printResults();
+            TestData.assertSameResults(results, expected);
+            Assert.assertEquals(Files.readAllLines(Paths.get(TestData.outputFile("testDedup"))),
+                    Files.readAllLines(Paths.get(TestData.outputFile("testDedupPlain"))), indexMode.toString());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.external.SpillSorter;
+import nava.polak.onik.external.TupleCodec;
+import nava.polak.onik.model.IndexMode;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests that the external mode writes the same groups as the in memory index
+ */
+@Slf4j
+public class TestExternalEngine {
+
+    private static final TupleCodec<Integer> INT_CODEC = new TupleCodec<Integer>() {
+        @Override
+        public void write(DataOutputStream out, Integer tuple) throws IOException {
+            out.writeInt(tuple);
+        }
+
+        @Override
+        public Integer read(DataInputStream in) throws IOException {
+            return in.readInt();
+        }
+
+        @Override
+        public long sizeInBytes(Integer tuple) {
+            return 16;
+        }
+    };
+
+    @Test
+    public void testSameResultsAsPairwise() throws IOException {
+        log.debug("run test testSameResultsAsPairwise");
+        List<String> sentences = TestData.randomSentences(23, 5000);
+        String inputFile = TestData.createInputFile("testExternalSameResultsAsPairwise", sentences);
+
+        RunOptions options = new RunOptions();
+        String expected = run(inputFile, "testExternalPairwise", options);
+        options.setIndexMode(IndexMode.EXTERNAL);
+        //small budget so the signatures are spilled into several runs
+        options.setMemoryBudget(200 * 1024);
+        options.setSpillDir(TestData.DIR_PATH);
+        String actual = run(inputFile, "testExternal", options);
+
+        Assert.assertFalse(readGroups(expected).isEmpty());
+        Assert.assertEquals(readGroups(actual), readGroups(expected));
+    }
+
+    @Test
+    public void testKeysOfSimilarParts() throws IOException {
+        log.debug("run test testKeysOfSimilarParts");
+        //the identical parts of the names a and ab are the same when their words are concatenated
+        String inputFile = TestData.createInputFile("testExternalKeys", new String[]{
+                "01-01-2012 19:45:00 a is x bc d",
+                "01-01-2012 19:46:00 a is y bc d",
+                "01-01-2012 19:47:00 ab is x c d",
+                "01-01-2012 19:48:00 ab is z c d"});
+
+        RunOptions options = new RunOptions();
+        String expected = run(inputFile, "testExternalKeysPairwise", options);
+        options.setIndexMode(IndexMode.EXTERNAL);
+        options.setSpillDir(TestData.DIR_PATH);
+        String actual = run(inputFile, "testExternalKeys", options);
+
+        Assert.assertEquals(readGroups(expected).size(), 2);
+        Assert.assertEquals(readGroups(actual), readGroups(expected));
+    }
+
+    @Test
+    public void testKeysOfDifferentTypes() throws IOException {
+        log.debug("run test testKeysOfDifferentTypes");
+        //the name and rest of the ACTION group are the action and rest of the NAME group
+        String inputFile = TestData.createInputFile("testExternalKeyTypes", new String[]{
+                "01-01-2012 19:45:00 cook is baking bread",
+                "01-01-2012 19:46:00 cook is making bread",
+                "01-01-2012 19:47:00 Naomi is cook bread",
+                "01-01-2012 19:48:00 Lea is cook bread"});
+
+        RunOptions options = new RunOptions();
+        String expected = run(inputFile, "testExternalKeyTypesPairwise", options);
+        options.setIndexMode(IndexMode.EXTERNAL);
+        options.setSpillDir(TestData.DIR_PATH);
+        String actual = run(inputFile, "testExternalKeyTypes", options);
+
+        Assert.assertEquals(readGroups(expected).size(), 2);
+        Assert.assertEquals(readGroups(actual), readGroups(expected));
+    }
+
+    @Test
+    public void testLongWords() throws IOException {
+        log.debug("run test testLongWords");
+        StringBuilder longWord = new StringBuilder();
+        for (int i = 0; i < 70000; i++)
+            longWord.append((char) ('a' + i % 26));
+        List<String> sentences = TestData.randomSentences(29, 2000);
+        sentences.add("01-01-2012 19:45:00 Naomi is eating at " + longWord);
+        sentences.add("01-01-2012 19:46:00 Naomi is eating at the " + longWord);
+        sentences.add("01-01-2012 19:47:00 Lea is eating at the " + longWord);
+        String inputFile = TestData.createInputFile("testExternalLongWords", sentences);
+
+        RunOptions options = new RunOptions();
+        String expected = run(inputFile, "testExternalLongWordsPairwise", options);
+        options.setIndexMode(IndexMode.EXTERNAL);
+        //the tuples of a field longer than 64KB, moved into the sorter by the parsing threads
+        options.setMemoryBudget(400 * 1024);
+        options.setThreads(2);
+        options.setSpillDir(TestData.DIR_PATH);
+        String actual = run(inputFile, "testExternalLongWords", options);
+
+        Assert.assertEquals(readGroups(actual), readGroups(expected));
+    }
+
+    @Test
+    public void testSwitchToExternalWhenOverBudget() throws IOException {
+        log.debug("run test testSwitchToExternalWhenOverBudget");
+        String inputFile = TestData.createInputFile("testExternalOverBudget", new String[]{
+                "01-01-2012 19:45:00 Naomi is eating at a diner",
+                "01-01-2012 19:46:00 Naomi is eating at the diner",
+                "not a sentence"});
+        RunOptions options = new RunOptions();
+        options.setMemoryBudget(100);
+        options.setSpillDir(TestData.DIR_PATH);
+        String outputFile = TestData.outputFile("testExternalOverBudget");
+        PatternSimilarity patternSimilarity = new PatternSimilarity(inputFile, outputFile, options);
+
+        //the groups are not kept in memory
+        Assert.assertTrue(patternSimilarity.findSentensesWithSingleDifference().isEmpty());
+        patternSimilarity.printResults();
+
+        Assert.assertEquals(patternSimilarity.getSentencesNotAccordingPattern(), Collections.singletonList("not a sentence"));
+        Set<List<String>> groups = readGroups(outputFile);
+        Assert.assertEquals(groups, Collections.singleton(Arrays.asList(
+                "01-01-2012 19:45:00 Naomi is eating at a diner",
+                "01-01-2012 19:46:00 Naomi is eating at the diner",
+                "The changing word was: at a diner , at the diner")));
+    }
+
+    @Test
+    public void testSpillSorterMergesManyRuns() throws IOException {
+        log.debug("run test testSpillSorterMergesManyRuns");
+        Random random = new Random(5);
+        List<Integer> expected = new ArrayList<>();
+        SpillSorter<Integer> sorter = new SpillSorter<>(Paths.get(TestData.DIR_PATH), "testSpill",
+                Comparator.naturalOrder(), INT_CODEC, 16 * 100);
+        for (int i = 0; i < 20000; i++) {
+            int value = random.nextInt(1000);
+            expected.add(value);
+            sorter.add(value);
+        }
+        sorter.finish();
+        Collections.sort(expected);
+
+        //more runs than merged at once are merged into bigger runs first
+        Assert.assertTrue(sorter.getRunCount() <= 64);
+        for (int pass = 0; pass < 2; pass++) {
+            List<Integer> actual = new ArrayList<>();
+            try (SpillSorter<Integer>.SortedIterator iterator = sorter.iterator()) {
+                Integer value;
+                while ((value = iterator.next()) != null)
+                    actual.add(value);
+            }
+            Assert.assertEquals(actual, expected);
+        }
+        sorter.delete();
+    }
+
+    private String run(String inputFile, String name, RunOptions options) {
+        String outputFile = TestData.outputFile(name);
+        new PatternSimilarity(inputFile, outputFile, options).findSentencesSingleDifferenceAndPrint();
+        return outputFile;
+    }
+
+    /**
+     * read the groups of the output, each as its sorted sentences followed by the changing words
+     */
+    private Set<List<String>> readGroups(String outputFile) throws IOException {
+        Set<List<String>> groups = new HashSet<>();
+        String content = new String(Files.readAllBytes(Paths.get(outputFile)), StandardCharsets.UTF_8);
+        for (String block : content.split("\n\\s*\n")) {
+            List<String> lines = new ArrayList<>(Arrays.asList(block.trim().split("\n")));
+            if (lines.get(0).isEmpty())
+                continue;
+            String changingWords = lines.remove(lines.size() - 1);
+            List<String> words = new ArrayList<>(Arrays.asList(changingWords.substring("The changing word was: ".length()).split(" , ")));
+            Collections.sort(lines);
+            Collections.sort(words);
+            lines.add("The changing word was: " + String.join(" , ", words));
+            groups.add(lines);
+        }
+        return groups;
+    }
+}
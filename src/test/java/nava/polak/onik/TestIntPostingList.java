@@ -0,0 +1,131 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.index.IntPostingList;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Tests for the primitive posting lists and their intersection
+ */
+@Slf4j
+public class TestIntPostingList {
+
+    @Test
+    public void testDenseListIsBitmap() {
+        log.debug("run test testDenseListIsBitmap");
+        IntPostingList list = new IntPostingList();
+        for (int i = 100; i < 10_000; i++)
+            list.add(i);
+
+        Assert.assertTrue(list.isBitmap());
+        Assert.assertEquals(list.size(), 9_900);
+        Assert.assertTrue(list.contains(5_000));
+        Assert.assertFalse(list.contains(99));
+        //a bitmap takes 1 bit per index instead of 4 bytes
+        Assert.assertTrue(list.sizeInBytes() * 16 < 9_900 * Integer.BYTES);
+    }
+
+    @Test
+    public void testSparseListIsArray() {
+        log.debug("run test testSparseListIsArray");
+        IntPostingList list = new IntPostingList();
+        for (int i = 0; i < 1_000; i++)
+            list.add(i * 1_000);
+
+        Assert.assertFalse(list.isBitmap());
+        Assert.assertTrue(list.contains(999_000));
+        Assert.assertFalse(list.contains(999_001));
+    }
+
+    @Test
+    public void testRemoveBefore() {
+        log.debug("run test testRemoveBefore");
+        IntPostingList array = new IntPostingList();
+        IntPostingList bitmap = new IntPostingList();
+        for (int i = 0; i < 1_000; i++) {
+            array.add(i * 1_000);
+            bitmap.add(i);
+        }
+        array.removeBefore(500_500);
+        bitmap.removeBefore(700);
+        bitmap.add(2_000);
+
+        Assert.assertEquals(array.size(), 499);
+        Assert.assertFalse(array.contains(500_000));
+        Assert.assertTrue(array.contains(501_000));
+        Assert.assertTrue(bitmap.isBitmap());
+        Assert.assertEquals(bitmap.size(), 301);
+        Assert.assertFalse(bitmap.contains(699));
+        Assert.assertTrue(bitmap.contains(700));
+        Assert.assertTrue(bitmap.contains(2_000));
+
+        int[] buffer = new int[301];
+        Assert.assertEquals(IntPostingList.intersect(array, bitmap, buffer), 0);
+        Assert.assertEquals(IntPostingList.intersect(bitmap, bitmap, buffer), 301);
+        Assert.assertEquals(buffer[0], 700);
+    }
+
+    @Test
+    public void testListBecomesSparse() {
+        log.debug("run test testListBecomesSparse");
+        IntPostingList list = new IntPostingList();
+        for (int i = 0; i < 100; i++)
+            list.add(i);
+        Assert.assertTrue(list.isBitmap());
+        for (int i = 1; i < 100; i++)
+            list.add(i * 100_000);
+
+        Assert.assertFalse(list.isBitmap());
+        Assert.assertEquals(list.size(), 199);
+        Assert.assertTrue(list.contains(50));
+        Assert.assertTrue(list.contains(9_900_000));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testAddSmallerIndex() {
+        log.debug("run test testAddSmallerIndex");
+        IntPostingList list = new IntPostingList(10);
+        list.add(5);
+    }
+
+    /**
+     * intersect lists of different densities (array/bitmap, similar/skewed sizes) and compare to sets intersection
+     */
+    @Test
+    public void testIntersection() {
+        log.debug("run test testIntersection");
+        Random random = new Random(3);
+        double[] densities = {0.9, 0.5, 0.05, 0.001};
+        int[] buffer = new int[100_000];
+        for (double firstDensity : densities) {
+            for (double secondDensity : densities) {
+                TreeSet<Integer> first = new TreeSet<>();
+                TreeSet<Integer> second = new TreeSet<>();
+                IntPostingList firstList = randomList(random, firstDensity, first);
+                IntPostingList secondList = randomList(random, secondDensity, second);
+
+                first.retainAll(second);
+                int[] expected = first.stream().mapToInt(Integer::intValue).toArray();
+                int size = IntPostingList.intersect(firstList, secondList, buffer);
+                Assert.assertEquals(Arrays.copyOf(buffer, size), expected, firstDensity + " " + secondDensity);
+            }
+        }
+    }
+
+    private IntPostingList randomList(Random random, double density, TreeSet<Integer> set) {
+        IntPostingList list = new IntPostingList();
+        int start = random.nextInt(1_000);
+        for (int i = start; i < 50_000; i++) {
+            if (random.nextDouble() < density) {
+                list.add(i);
+                set.add(i);
+            }
+        }
+        return list;
+    }
+}
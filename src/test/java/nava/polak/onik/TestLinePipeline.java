@@ -0,0 +1,104 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.io.ChunkParser;
+import nava.polak.onik.io.LinePipeline;
+import nava.polak.onik.metrics.Metrics;
+import nava.polak.onik.metrics.Stage;
+import nava.polak.onik.model.ResultsPerType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests for reading the lines in stages connected by bounded queues
+ */
+@Slf4j
+public class TestLinePipeline {
+
+    @Test
+    public void testLinesInOrderWithOffsets() throws IOException {
+        log.debug("run test testLinesInOrderWithOffsets");
+        StringBuilder content = new StringBuilder();
+        List<String> expected = new ArrayList<>();
+        List<Long> expectedOffsets = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String line = "line " + i;
+            expected.add(line);
+            expectedOffsets.add((long) content.length());
+            content.append(line).append('\n');
+        }
+        Path path = Paths.get(TestData.DIR_PATH, "testLinePipeline.txt");
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<String> lines = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        Metrics metrics = new Metrics(true);
+        //small batches and queues, so the stages wait for each other
+        long count = new LinePipeline(path, 0, 3, 7, 1, metrics).read(new ChunkParser<List<Object[]>>() {
+            @Override
+            public List<Object[]> newBatch() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public void parseLine(List<Object[]> batch, CharSequence line, long offset) {
+                batch.add(new Object[]{line.toString(), offset});
+            }
+        }, batch -> batch.forEach(line -> {
+            lines.add((String) line[0]);
+            offsets.add((Long) line[1]);
+        }));
+
+        Assert.assertEquals(count, 1000);
+        Assert.assertEquals(lines, expected);
+        Assert.assertEquals(offsets, expectedOffsets);
+        Assert.assertTrue(metrics.getQueueDepths(Stage.INDEX).getCount() > 0);
+        Assert.assertTrue(metrics.getQueueDepths(Stage.INDEX).getMax() <= 1);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testParserFailure() throws IOException {
+        log.debug("run test testParserFailure");
+        String inputFile = TestData.createInputFile("testLinePipelineFailure", TestData.randomSentences(3, 100));
+        new LinePipeline(Paths.get(inputFile), 0, 2, 10, 2, Metrics.DISABLED).read(new ChunkParser<Object>() {
+            @Override
+            public Object newBatch() {
+                return new Object();
+            }
+
+            @Override
+            public void parseLine(Object batch, CharSequence line, long offset) {
+                throw new IllegalStateException("failed parsing " + line);
+            }
+        }, batch -> {
+        });
+    }
+
+    @Test
+    public void testSameResultsWithSmallBatches() {
+        log.debug("run test testSameResultsWithSmallBatches");
+        List<String> sentences = TestData.randomSentences(17, 2000);
+        sentences.add(50, "not a sentence");
+        String inputFile = TestData.createInputFile("testLinePipelineResults", sentences);
+
+        PatternSimilarity defaults = new PatternSimilarity(inputFile, TestData.outputFile("testLinePipelineDefaults"));
+        HashMap<String, ResultsPerType> expected = defaults.findSentensesWithSingleDifference();
+
+        RunOptions options = new RunOptions();
+        options.setThreads(4);
+        options.setBatchLines(3);
+        options.setQueueDepth(1);
+        PatternSimilarity small = new PatternSimilarity(inputFile, TestData.outputFile("testLinePipelineSmall"), options);
+        TestData.assertSameResults(small.findSentensesWithSingleDifference(), expected);
+    }
+}
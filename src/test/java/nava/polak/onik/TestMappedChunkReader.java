@@ -0,0 +1,82 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.io.ChunkParser;
+import nava.polak.onik.io.MappedChunkReader;
+import nava.polak.onik.model.ReaderMode;
+import nava.polak.onik.model.ResultsPerType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for reading the input by parsing chunks of the mapped file in parallel
+ */
+@Slf4j
+public class TestMappedChunkReader {
+
+    @Test
+    public void testLinesSameAsBufferedReader() throws IOException {
+        log.debug("run test testLinesSameAsBufferedReader");
+        StringBuilder content = new StringBuilder();
+        String[] terminators = {"\n", "\r\n", "\r"};
+        for (int i = 0; i < 500; i++)
+            content.append("line ").append(i).append(i % 7 == 0 ? " na\u00efve caf\u00e9" : "").append(terminators[i % 3]);
+        content.append("last line without terminator");
+        Path path = Paths.get(TestData.DIR_PATH, "testMappedLines.txt");
+        Files.createDirectories(path.getParent());
+        Files.write(path, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<String> expected = new BufferedReader(new StringReader(content.toString())).lines().collect(Collectors.toList());
+        List<String> actual = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        //small chunks so lines are split between many chunks
+        new MappedChunkReader(path, 100, pool).read(new ChunkParser<List<String>>() {
+            @Override
+            public List<String> newBatch() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public void parseLine(List<String> batch, CharSequence line, long offset) {
+                batch.add(line.toString());
+            }
+        }, actual::addAll);
+        pool.shutdown();
+
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test
+    public void testSameResultsAsLines() {
+        log.debug("run test testSameResultsAsLines");
+        List<String> sentences = TestData.randomSentences(13, 3000);
+        sentences.add(100, "01-01-2012 20:12:40 George and Neomi are getting into the restaurant");
+        String inputFile = TestData.createInputFile("testMappedSameResultsAsLines", sentences);
+
+        PatternSimilarity lines = new PatternSimilarity(inputFile, TestData.outputFile("testMapped"));
+        HashMap<String, ResultsPerType> expected = lines.findSentensesWithSingleDifference();
+
+        RunOptions options = new RunOptions();
+        options.setReaderMode(ReaderMode.MAPPED);
+        options.setChunkSize(1000);
+        options.setThreads(4);
+        PatternSimilarity mapped = new PatternSimilarity(inputFile, TestData.outputFile("testMapped"), options);
+        HashMap<String, ResultsPerType> actual = mapped.findSentensesWithSingleDifference();
+
+        TestData.assertSameResults(actual, expected);
+        Assert.assertEquals(mapped.getSentencesNotAccordingPattern(), lines.getSentencesNotAccordingPattern());
+    }
+}
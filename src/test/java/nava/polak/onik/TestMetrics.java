@@ -0,0 +1,68 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.metrics.Metrics;
+import nava.polak.onik.metrics.Phase;
+import nava.polak.onik.model.PatternType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Tests that the metrics count the run, and are not collected unless asked
+ */
+@Slf4j
+public class TestMetrics {
+
+    private static final String[] SENTENCES = {
+            "01-01-2012 19:45:00 Naomi is eating at a diner",
+            "01-01-2012 19:46:00 Naomi is eating at the diner",
+            "01-01-2012 20:12:40 George and Neomi are getting into the restaurant",
+            "01-01-2012 19:47:00 George is eating at a diner"};
+
+    @Test
+    public void testMetricsOfRun() throws Exception {
+        log.debug("run test testMetricsOfRun");
+        String inputFile = TestData.createInputFile("testMetricsOfRun", SENTENCES);
+        RunOptions options = new RunOptions();
+        options.setMetricsFile(TestData.outputFile("testMetrics") + ".json");
+        PatternSimilarity patternSimilarity = new PatternSimilarity(inputFile, TestData.outputFile("testMetrics"), options);
+        patternSimilarity.findSentencesSingleDifferenceAndPrint();
+
+        Metrics metrics = patternSimilarity.getMetrics();
+        Assert.assertEquals(metrics.getLines(), 4);
+        Assert.assertEquals(metrics.getMalformedLines(), 1);
+        Assert.assertEquals(metrics.getMalformedRate(), 0.25);
+        Assert.assertEquals(metrics.getPhaseCount(Phase.PARSE), 4);
+        Assert.assertEquals(metrics.getPhaseCount(Phase.INDEX), 3);
+        Assert.assertEquals(metrics.getPhaseCount(Phase.WRITE), 1);
+        Assert.assertEquals(metrics.getMatches(), 2);
+        //the last sentence has 2 sentences with the same action, of which one has the same rest
+        Assert.assertEquals(metrics.getPostingListSizes(PatternType.NAME).getMax(), 2);
+        Assert.assertEquals(metrics.getIntersectionSizes(PatternType.NAME).getMax(), 1);
+
+        String json = new String(Files.readAllBytes(Paths.get(options.getMetricsFile())), StandardCharsets.UTF_8);
+        Assert.assertTrue(json.startsWith("{\"lines\":4,\"malformedLines\":1,"), json);
+        Assert.assertTrue(json.contains("\"PARSE\":{\"count\":4,"), json);
+
+        ObjectName name = new ObjectName("nava.polak.onik:type=Metrics,name=" + ObjectName.quote(inputFile));
+        Assert.assertEquals(ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Lines"), 4L);
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        log.debug("run test testDisabledByDefault");
+        String inputFile = TestData.createInputFile("testMetricsDisabled", SENTENCES);
+        PatternSimilarity patternSimilarity = new PatternSimilarity(inputFile, TestData.outputFile("testMetricsDisabled"));
+        patternSimilarity.findSentencesSingleDifferenceAndPrint();
+
+        Assert.assertFalse(patternSimilarity.getMetrics().isEnabled());
+        Assert.assertEquals(patternSimilarity.getMetrics().getLines(), 0);
+        Assert.assertEquals(patternSimilarity.getMetrics().getPhaseCount(Phase.PARSE), 0);
+    }
+}
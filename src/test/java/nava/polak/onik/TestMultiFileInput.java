@@ -0,0 +1,113 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.io.InputFiles;
+import nava.polak.onik.model.IndexMode;
+import nava.polak.onik.model.OutputFormat;
+import nava.polak.onik.model.ResultsPerType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests reading a directory or glob of files, some of them compressed, as one input
+ */
+@Slf4j
+public class TestMultiFileInput {
+
+    @Test
+    public void testSameResultsAsConcatenated() throws IOException {
+        log.debug("run test testSameResultsAsConcatenated");
+        List<String> sentences = TestData.randomSentences(19, 3000);
+        String inputFile = TestData.createInputFile("testMultiFileConcatenated", sentences);
+        Path dir = inputDir("testMultiFileInput");
+        writeGzip(dir.resolve("a.log.gz"), sentences.subList(0, 1000));
+        Files.write(dir.resolve("b.log"), sentences.subList(1000, 1700), StandardCharsets.UTF_8);
+        writeGzip(dir.resolve("c.log.gz"), sentences.subList(1700, 3000));
+
+        for (IndexMode indexMode : new IndexMode[]{IndexMode.PAIRWISE, IndexMode.SIGNATURE}) {
+            RunOptions options = new RunOptions();
+            options.setIndexMode(indexMode);
+            options.setThreads(3);
+            HashMap<String, ResultsPerType> expected = new PatternSimilarity(inputFile, TestData.outputFile("testMultiFileInput"), options)
+                    .findSentensesWithSingleDifference();
+            HashMap<String, ResultsPerType> fromDir = new PatternSimilarity(dir.toString(), TestData.outputFile("testMultiFileInput"), options)
+                    .findSentensesWithSingleDifference();
+            TestData.assertSameResults(fromDir, expected);
+            HashMap<String, ResultsPerType> fromGlob = new PatternSimilarity(dir + File.separator + "*.log*", TestData.outputFile("testMultiFileInput"), options)
+                    .findSentensesWithSingleDifference();
+            TestData.assertSameResults(fromGlob, expected);
+        }
+    }
+
+    @Test
+    public void testMalformedLinesWithLocation() throws IOException {
+        log.debug("run test testMalformedLinesWithLocation");
+        Path dir = inputDir("testMultiFileMalformed");
+        writeGzip(dir.resolve("a.gz"), Arrays.asList(
+                "01-01-2012 19:45:00 Naomi is eating at a diner",
+                "not a sentence"));
+        writeGzip(dir.resolve("b.gz"), Arrays.asList(
+                "01-01-2012 19:46:00 Naomi is eating at the diner"));
+        PatternSimilarity patternSimilarity = new PatternSimilarity(dir.resolve("*.gz").toString(), TestData.outputFile("testMultiFileMalformed"));
+        HashMap<String, ResultsPerType> results = patternSimilarity.findSentensesWithSingleDifference();
+        Assert.assertEquals(results.get("REST:Naomi eating").getRecordsIndex(), new int[]{0, 1});
+        Assert.assertEquals(patternSimilarity.getSentencesNotAccordingPattern(), Arrays.asList(dir.resolve("a.gz") + ":2: not a sentence"));
+    }
+
+    @Test
+    public void testResolveGlob() throws IOException {
+        log.debug("run test testResolveGlob");
+        Path dir = inputDir("testResolveGlob");
+        Files.createDirectories(dir.resolve("day2"));
+        for (String name : new String[]{"b.gz", "a.gz", "a.txt", "day2/c.gz"})
+            Files.write(dir.resolve(name), new byte[0]);
+        Assert.assertEquals(names(dir, InputFiles.resolve(dir + File.separator + "*.gz")), Arrays.asList("a.gz", "b.gz"));
+        Assert.assertEquals(names(dir, InputFiles.resolve(dir + File.separator + "**.gz")), Arrays.asList("a.gz", "b.gz", "day2" + File.separator + "c.gz"));
+        Assert.assertEquals(names(dir, InputFiles.resolve(dir.toString())), Arrays.asList("a.gz", "a.txt", "b.gz"));
+        Assert.assertTrue(InputFiles.resolve(dir + File.separator + "*.zip").isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testOffsetsOutputRejected() throws IOException {
+        log.debug("run test testOffsetsOutputRejected");
+        Path dir = inputDir("testMultiFileRejected");
+        writeGzip(dir.resolve("a.gz"), Arrays.asList("01-01-2012 19:45:00 Naomi is eating at a diner"));
+        RunOptions options = new RunOptions();
+        options.setOutputFormat(OutputFormat.JSONL);
+        new PatternSimilarity(dir.toString(), TestData.outputFile("testMultiFileRejected"), options).findSentensesWithSingleDifference();
+    }
+
+    private Path inputDir(String name) throws IOException {
+        Path dir = Paths.get(TestData.DIR_PATH, name);
+        if (Files.exists(dir)) {
+            List<Path> old = Files.walk(dir).sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList());
+            for (Path path : old)
+                Files.delete(path);
+        }
+        return Files.createDirectories(dir);
+    }
+
+    private void writeGzip(Path file, List<String> lines) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            for (String line : lines)
+                out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private List<String> names(Path dir, List<Path> files) {
+        return files.stream().map(file -> dir.relativize(file).toString()).collect(Collectors.toList());
+    }
+}
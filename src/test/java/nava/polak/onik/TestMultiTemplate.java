@@ -0,0 +1,125 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.IndexMode;
+import nava.polak.onik.model.ReaderMode;
+import nava.polak.onik.model.ResultsPerType;
+import nava.polak.onik.parse.SentenceTemplate;
+import nava.polak.onik.parse.TemplateMatch;
+import nava.polak.onik.parse.TemplateRouter;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests that several templates read in a single pass find the same results as a run per template
+ */
+@Slf4j
+public class TestMultiTemplate {
+
+    private static final String WAS_TEMPLATE = "{log:dd-dd-dddd dd:dd:dd} {name} was {action} {rest}";
+    private static final String HAS_TEMPLATE = "{log:dd-dd-dddd dd:dd:dd} {name} has {action} {rest}";
+
+    @Test
+    public void testRoute() {
+        log.debug("run test testRoute");
+        TemplateRouter router = new TemplateRouter(Arrays.asList(new SentenceTemplate(SentenceTemplate.DEFAULT),
+                new SentenceTemplate(WAS_TEMPLATE), new SentenceTemplate(HAS_TEMPLATE), new SentenceTemplate("{name} {rest}")));
+        TemplateMatch[] matches = router.newMatches();
+
+        Assert.assertEquals(router.route("01-01-2012 20:12:22 Naomi is eating at a diner", matches), 0);
+        Assert.assertEquals(router.route("01-01-2012 20:12:22 Naomi was eating at a diner", matches), 1);
+        Assert.assertEquals(matches[1].getField(1), "Naomi");
+        Assert.assertEquals(router.route("01-01-2012 20:12:22 Naomi has eaten at a diner", matches), 2);
+        //the template without keyword matches any line with 2 words, after the templates before it
+        Assert.assertEquals(router.route("Naomi ate", matches), 3);
+        Assert.assertEquals(router.route("Naomi", matches), -1);
+    }
+
+    @Test
+    public void testSameResultsAsRunPerTemplate() throws IOException {
+        log.debug("run test testSameResultsAsRunPerTemplate");
+        List<String> lines = new ArrayList<>();
+        for (String sentence : TestData.randomSentences(61, 3000)) {
+            if (sentence.hashCode() % 3 == 1)
+                sentence = sentence.replace(" is ", " was ");
+            else if (sentence.hashCode() % 3 == 2)
+                sentence = sentence.replace(" is ", " has ");
+            lines.add(sentence);
+        }
+        lines.add("not a sentence");
+        String inputFile = TestData.createInputFile("testMultiTemplate", lines);
+        String[] templates = {SentenceTemplate.DEFAULT, WAS_TEMPLATE, HAS_TEMPLATE};
+
+        for (IndexMode indexMode : new IndexMode[]{IndexMode.PAIRWISE, IndexMode.SHARDED}) {
+            for (ReaderMode readerMode : new ReaderMode[]{ReaderMode.LINES, ReaderMode.MAPPED}) {
+                RunOptions options = RunOptions.parse(new String[]{"--template=" + templates[0],
+                        "--template=" + templates[1], "--template=" + templates[2]}, 0);
+                options.setIndexMode(indexMode);
+                options.setReaderMode(readerMode);
+                options.setChunkSize(4096);
+                String outputFile = TestData.outputFile("testMultiTemplate");
+                PatternSimilarity patternSimilarity = new PatternSimilarity(inputFile, outputFile, options);
+                patternSimilarity.findSentensesWithSingleDifference();
+                patternSimilarity.printResults();
+
+                Assert.assertEquals(patternSimilarity.getSentencesNotAccordingPattern(), Arrays.asList("not a sentence"));
+                List<HashMap<String, ResultsPerType>> results = patternSimilarity.getResultsPerTemplate();
+                Assert.assertEquals(results.size(), templates.length);
+                for (int i = 0; i < templates.length; i++) {
+                    RunOptions single = new RunOptions();
+                    single.setTemplate(templates[i]);
+                    HashMap<String, ResultsPerType> expected = new PatternSimilarity(inputFile,
+                            TestData.outputFile("testMultiTemplateSingle"), single).findSentensesWithSingleDifference();
+                    Assert.assertFalse(expected.isEmpty());
+                    TestData.assertSameResults(results.get(i), expected);
+                }
+                Assert.assertTrue(Files.size(Paths.get(outputFile + ".2")) > 0);
+            }
+        }
+    }
+
+    @Test
+    public void testLinesOfTemplates() throws IOException {
+        log.debug("run test testLinesOfTemplates");
+        String inputFile = TestData.createInputFile("testMultiTemplateLines", new String[]{
+                "01-01-2012 19:45:00 Naomi was eating at a diner",
+                "01-01-2012 19:46:00 Naomi was eating at the diner",
+                "01-01-2012 19:47:00 Lea has eaten at a diner",
+                "01-01-2012 19:48:00 Lea has eaten at the diner"});
+        List<String> wasLines = Arrays.asList("01-01-2012 19:45:00 Naomi was eating at a diner",
+                "01-01-2012 19:46:00 Naomi was eating at the diner",
+                "The changing word was: at a diner , at the diner", "");
+
+        //the sentences are written back by the template they matched
+        String outputFile = TestData.outputFile("testMultiTemplateLines");
+        RunOptions options = RunOptions.parse(new String[]{"--template=" + WAS_TEMPLATE, "--template=" + HAS_TEMPLATE}, 0);
+        new PatternSimilarity(inputFile, outputFile, options).findSentencesSingleDifferenceAndPrint();
+        Assert.assertEquals(Files.readAllLines(Paths.get(outputFile)), wasLines);
+        Assert.assertEquals(Files.readAllLines(Paths.get(outputFile + ".1")), Arrays.asList(
+                "01-01-2012 19:47:00 Lea has eaten at a diner",
+                "01-01-2012 19:48:00 Lea has eaten at the diner",
+                "The changing word was: at a diner , at the diner", ""));
+
+        options = RunOptions.parse(new String[]{"--template=" + WAS_TEMPLATE, "--index=external"}, 0);
+        options.setSpillDir(TestData.DIR_PATH);
+        new PatternSimilarity(inputFile, outputFile, options).findSentencesSingleDifferenceAndPrint();
+        Assert.assertEquals(Files.readAllLines(Paths.get(outputFile)), wasLines);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testExternalFails() {
+        log.debug("run test testExternalFails");
+        String inputFile = TestData.createInputFile("testMultiTemplateExternal", TestData.randomSentences(67, 10));
+        RunOptions options = RunOptions.parse(new String[]{"--index=external", "--template=" + SentenceTemplate.DEFAULT,
+                "--template=" + WAS_TEMPLATE}, 0);
+        new PatternSimilarity(inputFile, TestData.outputFile("testMultiTemplateExternal"), options).findSentensesWithSingleDifference();
+    }
+}
@@ -0,0 +1,105 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.IndexMode;
+import nava.polak.onik.model.ReaderMode;
+import nava.polak.onik.model.ResultsPerType;
+import nava.polak.onik.model.StoreMode;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests that keeping only the offsets of the sentences finds and writes the same results as keeping the records
+ */
+@Slf4j
+public class TestOffsetRecordStore {
+
+    @Test
+    public void testSameResultsAsRecords() throws IOException {
+        log.debug("run test testSameResultsAsRecords");
+        String inputFile = TestData.createInputFile("testOffsetStore", TestData.randomSentences(53, 3000));
+
+        for (IndexMode indexMode : new IndexMode[]{IndexMode.SIGNATURE, IndexMode.SHARDED}) {
+            for (ReaderMode readerMode : new ReaderMode[]{ReaderMode.LINES, ReaderMode.MAPPED}) {
+                String expected = run(inputFile, "testOffsetStoreRecords", indexMode, readerMode, StoreMode.RECORDS);
+                String actual = run(inputFile, "testOffsetStoreOffsets", indexMode, readerMode, StoreMode.OFFSETS);
+                Assert.assertEquals(actual, expected, indexMode + " " + readerMode);
+            }
+        }
+    }
+
+    @Test
+    public void testOriginalLinesWritten() throws IOException {
+        log.debug("run test testOriginalLinesWritten");
+        //lines in windows format with non ascii words
+        String input = "01-01-2012 20:12:22 Zo\u00eb is eating at a diner\r\n"
+                + "01-01-2012 20:13:22 Lea is eating at a diner\r\n"
+                + "bad line\r\n"
+                + "01-01-2012 20:14:22 Lea is eating at a caf\u00e9\r\n";
+        String inputFile = TestData.DIR_PATH + "/testOffsetStoreLines.txt";
+        Files.write(Paths.get(inputFile), input.getBytes(StandardCharsets.UTF_8));
+
+        RunOptions options = offsetsOptions(IndexMode.SIGNATURE, ReaderMode.LINES);
+        PatternSimilarity patternSimilarity = new PatternSimilarity(inputFile, TestData.outputFile("testOffsetStoreLines"), options);
+        HashMap<String, ResultsPerType> results = patternSimilarity.findSentensesWithSingleDifference();
+        Assert.assertEquals(results.keySet().size(), 2);
+        Assert.assertEquals(results.get("NAME:eating at a diner").getType().name(), "NAME");
+        patternSimilarity.printResults();
+
+        List<String> output = Files.readAllLines(Paths.get(TestData.outputFile("testOffsetStoreLines")), StandardCharsets.UTF_8);
+        Assert.assertTrue(output.contains("01-01-2012 20:12:22 Zo\u00eb is eating at a diner"));
+        Assert.assertTrue(output.contains("01-01-2012 20:14:22 Lea is eating at a caf\u00e9"));
+        Assert.assertTrue(output.contains("The changing word was: Zo\u00eb , Lea"));
+        Assert.assertTrue(output.contains("The changing word was: at a diner , at a caf\u00e9"));
+    }
+
+    @Test
+    public void testTrimmedLinesWritten() throws IOException {
+        log.debug("run test testTrimmedLinesWritten");
+        //white space around the lines, which the template parser trims
+        String input = "01-01-2012 20:12:22 Naomi is eating at a diner \t\r\n"
+                + "  01-01-2012 20:13:22 Lea is eating at a diner\r\n"
+                + "\t01-01-2012 20:14:22 Lea is eating at a cafe  \n";
+        String inputFile = TestData.DIR_PATH + "/testOffsetStoreTrimmed.txt";
+        Files.write(Paths.get(inputFile), input.getBytes(StandardCharsets.UTF_8));
+
+        for (ReaderMode readerMode : new ReaderMode[]{ReaderMode.LINES, ReaderMode.MAPPED}) {
+            String expected = run(inputFile, "testOffsetStoreTrimmedRecords", IndexMode.SIGNATURE, readerMode, StoreMode.RECORDS);
+            String actual = run(inputFile, "testOffsetStoreTrimmedOffsets", IndexMode.SIGNATURE, readerMode, StoreMode.OFFSETS);
+            Assert.assertTrue(actual.contains("01-01-2012 20:12:22 Naomi is eating at a diner\n"), actual);
+            Assert.assertEquals(actual, expected, readerMode.toString());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPairwiseFails() {
+        log.debug("run test testPairwiseFails");
+        String inputFile = TestData.createInputFile("testOffsetStorePairwise", TestData.randomSentences(59, 10));
+        new PatternSimilarity(inputFile, TestData.outputFile("testOffsetStorePairwise"),
+                offsetsOptions(IndexMode.PAIRWISE, ReaderMode.LINES)).findSentensesWithSingleDifference();
+    }
+
+    private RunOptions offsetsOptions(IndexMode indexMode, ReaderMode readerMode) {
+        RunOptions options = new RunOptions();
+        options.setIndexMode(indexMode);
+        options.setReaderMode(readerMode);
+        options.setChunkSize(4096);
+        options.setStoreMode(StoreMode.OFFSETS);
+        return options;
+    }
+
+    private String run(String inputFile, String name, IndexMode indexMode, ReaderMode readerMode, StoreMode storeMode) throws IOException {
+        RunOptions options = offsetsOptions(indexMode, readerMode);
+        options.setStoreMode(storeMode);
+        String outputFile = TestData.outputFile(name);
+        new PatternSimilarity(inputFile, outputFile, options).findSentencesSingleDifferenceAndPrint();
+        return new String(Files.readAllBytes(Paths.get(outputFile)), StandardCharsets.UTF_8);
+    }
+}
@@ -125,6 +125,25 @@ public class TestPatternSimilarity {
         testScenario("testSingleSentenceScenario",examples,new String[]{});
     }
 
+    @Test
+    public void testKeysOfDifferentTypes(){
+        log.debug("run test testKeysOfDifferentTypes");
+        //the identical parts of the REST group are x and y_z, and of the ACTION group x_y and z
+        String [] sentences = new String[]{ "01-01-2012 19:45:00 x is y_z a",
+                "01-01-2012 19:45:01 x is y_z b",
+                "01-01-2012 19:45:02 x_y is c z",
+                "01-01-2012 19:45:03 x_y is d z"};
+
+        String inputFile = "testKeysOfDifferentTypes";
+        String outputFile = DIR_PATH + File.separator + inputFile + "_output.txt";
+        PatternSimilarity patternSimilarity = new PatternSimilarity(createInputFile(inputFile,sentences), outputFile);
+        HashMap<String, ResultsPerType> results =  patternSimilarity.findSentensesWithSingleDifference();
+
+        Assert.assertEquals(results.size(), 2);
+        Assert.assertEquals(results.get("REST:x y_z").getRecordsIndex(), new int[]{0, 1});
+        Assert.assertEquals(results.get("ACTION:x_y z").getRecordsIndex(), new int[]{2, 3});
+    }
+
     @Test(expectedExceptions = RuntimeException.class)
     public void testInputFileNotExistsScenario(){
         log.debug("run test testInputFileNotExistsScenario");
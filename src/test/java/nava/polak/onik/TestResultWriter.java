@@ -0,0 +1,164 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.OutputFormat;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.ReaderMode;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.ResultsPerType;
+import nava.polak.onik.model.TokenDictionary;
+import nava.polak.onik.output.ResultWriter;
+import nava.polak.onik.parse.LineFormat;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the formats of the result writer
+ */
+@Slf4j
+public class TestResultWriter {
+
+    private final TokenDictionary dictionary = new TokenDictionary();
+    private final List<Record> sentences = new ArrayList<>();
+    private final Map<String, ResultsPerType> groups = new LinkedHashMap<>();
+
+    public TestResultWriter() {
+        sentences.add(new Record("01-01-2012 20:12:22", "Naomi", "eating", "at a \"diner\"", 0, dictionary));
+        sentences.add(new Record("01-01-2012 20:13:22", "Zo\u00eb", "eating", "at a \"diner\"", 45, dictionary));
+        sentences.add(new Record("01-01-2012 20:14:22", "Naomi", "eating", "at a restaurant", 88, dictionary));
+        for (int i = 0; i < 1000; i++)
+            sentences.add(new Record("02-01-2012 10:00:00", "Lea", "doing", "thing " + i, 128 + i * 40, dictionary));
+
+        addGroup("NAME:eating at a \"diner\"", PatternType.NAME, 1, 0);
+        addGroup("REST:Naomi eating", PatternType.REST, 0, 2);
+        //more groups than a batch
+        for (int i = 3; i < sentences.size() - 1; i += 2)
+            addGroup("REST:Lea doing" + i, PatternType.REST, i, i + 1);
+    }
+
+    @Test
+    public void testTextSameAsRecordsStr() throws IOException {
+        log.debug("run test testTextSameAsRecordsStr");
+        StringBuilder expected = new StringBuilder();
+        groups.values().forEach(group -> expected.append(group.getRecordsStr(sentences, LineFormat.DEFAULT)).append(System.lineSeparator()));
+
+        //small buffer so it is written many times
+        Path output = write("testResultWriterText", OutputFormat.TEXT, 64);
+
+        Assert.assertEquals(new String(Files.readAllBytes(output), StandardCharsets.UTF_8), expected.toString());
+    }
+
+    @Test
+    public void testJsonl() throws IOException {
+        log.debug("run test testJsonl");
+        Path output = write("testResultWriterJsonl", OutputFormat.JSONL, 1024);
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        Assert.assertEquals(lines.size(), groups.size());
+        Assert.assertEquals(lines.get(0), "{\"group\":0,\"type\":\"NAME\",\"key\":\"NAME:eating at a \\\"diner\\\"\","
+                + "\"words\":[\"Naomi\",\"Zo\u00eb\"],\"offsets\":[0,45]}");
+        Assert.assertEquals(lines.get(1), "{\"group\":1,\"type\":\"REST\",\"key\":\"REST:Naomi eating\","
+                + "\"words\":[\"at a \\\"diner\\\"\",\"at a restaurant\"],\"offsets\":[0,88]}");
+    }
+
+    @Test
+    public void testBinary() throws IOException {
+        log.debug("run test testBinary");
+        Path output = write("testResultWriterBinary", OutputFormat.BINARY, 100);
+
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(output))) {
+            Assert.assertEquals(in.readInt(), ResultWriter.BINARY_MAGIC);
+            Assert.assertEquals(in.readInt(), ResultWriter.BINARY_VERSION);
+            int groupId = 0;
+            for (ResultsPerType group : groups.values()) {
+                for (int index : group.getRecordsIndex()) {
+                    Assert.assertEquals(in.readInt(), groupId);
+                    Assert.assertEquals(in.readLong(), sentences.get(index).getOffset());
+                }
+                groupId++;
+            }
+            Assert.assertEquals(in.read(), -1);
+        }
+    }
+
+    @Test
+    public void testOffsetsPointToLines() throws IOException {
+        log.debug("run test testOffsetsPointToLines");
+        List<String> lines = TestData.randomSentences(47, 3000);
+        //lines which are not parsed move the offsets
+        lines.add(100, "not a sentence");
+        lines.add(200, "");
+        Path input = Paths.get(TestData.createInputFile("testResultWriterOffsets", lines));
+        byte[] bytes = Files.readAllBytes(input);
+
+        for (ReaderMode readerMode : Arrays.asList(ReaderMode.LINES, ReaderMode.MAPPED)) {
+            RunOptions options = new RunOptions();
+            options.setReaderMode(readerMode);
+            options.setChunkSize(4096);
+            options.setOutputFormat(OutputFormat.BINARY);
+            String output = TestData.outputFile("testResultWriterOffsets");
+            new PatternSimilarity(input.toString(), output, options).findSentencesSingleDifferenceAndPrint();
+
+            int count = 0;
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(Paths.get(output)))) {
+                in.readInt();
+                in.readInt();
+                while (in.available() > 0) {
+                    in.readInt();
+                    int offset = (int) in.readLong();
+                    Assert.assertTrue(offset == 0 || bytes[offset - 1] == '\n', readerMode + " " + offset);
+                    Assert.assertTrue(lines.contains(lineAt(bytes, offset)), readerMode + " " + offset);
+                    count++;
+                }
+            }
+            Assert.assertTrue(count > 0);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = ".*text output.*")
+    public void testOverMemoryBudgetFails() {
+        log.debug("run test testOverMemoryBudgetFails");
+        String input = TestData.createInputFile("testResultWriterOverBudget", TestData.randomSentences(59, 100));
+        RunOptions options = new RunOptions();
+        options.setOutputFormat(OutputFormat.JSONL);
+        //the input is switched to external mode, which writes only the text output
+        options.setMemoryBudget(10);
+        new PatternSimilarity(input, TestData.outputFile("testResultWriterOverBudget"), options).findSentencesSingleDifferenceAndPrint();
+    }
+
+    private String lineAt(byte[] bytes, int offset) {
+        int end = offset;
+        while (bytes[end] != '\n' && bytes[end] != '\r')
+            end++;
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private void addGroup(String key, PatternType type, int... indexes) {
+        ResultsPerType group = new ResultsPerType(type);
+        for (int index : indexes)
+            group.addRecord(index);
+        groups.put(key, group);
+    }
+
+    private Path write(String name, OutputFormat format, int bufferSize) throws IOException {
+        Path output = Paths.get(TestData.outputFile(name));
+        try (ResultWriter writer = new ResultWriter(output, format, sentences, LineFormat.DEFAULT, bufferSize)) {
+            groups.forEach(writer::write);
+            Assert.assertEquals(writer.getGroupCount(), groups.size());
+        }
+        return output;
+    }
+}
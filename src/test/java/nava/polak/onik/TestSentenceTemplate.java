@@ -0,0 +1,74 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.parse.SentenceTemplate;
+import nava.polak.onik.parse.TemplateMatch;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tests that the template parser matches the same lines and fields as the regular expression
+ */
+@Slf4j
+public class TestSentenceTemplate {
+
+    private static final String PATTERN_STR = "(\\d\\d-\\d\\d-\\d\\d\\d\\d \\d\\d:\\d\\d:\\d\\d) ([^\\s]+) is ([^\\s]+) (.*)";
+    private static final char[] MUTATIONS = {' ', '\t', 'x', '1', '-', ':', '\r', '\u0085', 'i', 's'};
+
+    @Test
+    public void testSameAsRegex() {
+        log.debug("run test testSameAsRegex");
+        SentenceTemplate template = new SentenceTemplate(SentenceTemplate.DEFAULT);
+        Assert.assertEquals(template.toRegex().replace("\\Q", "").replace("\\E", ""), PATTERN_STR);
+
+        Pattern pattern = Pattern.compile(PATTERN_STR);
+        TemplateMatch match = template.newMatch();
+        Random random = new Random(11);
+        List<String> sentences = TestData.randomSentences(5, 3000);
+        for (String sentence : sentences) {
+            //change some characters so part of the lines do not match
+            StringBuilder line = new StringBuilder(sentence);
+            int changes = random.nextInt(3);
+            for (int i = 0; i < changes; i++)
+                line.setCharAt(random.nextInt(line.length()), MUTATIONS[random.nextInt(MUTATIONS.length)]);
+            if (random.nextInt(10) == 0)
+                line.insert(0, "  junk ");
+
+            Matcher matcher = pattern.matcher(line.toString().trim());
+            boolean expected = matcher.find();
+            Assert.assertEquals(template.match(line, match), expected, line.toString());
+            if (expected) {
+                for (int field = 0; field < 4; field++)
+                    Assert.assertEquals(match.getField(field), matcher.group(field + 1), line.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testOtherLayout() {
+        log.debug("run test testOtherLayout");
+        SentenceTemplate template = new SentenceTemplate("[{log:dddd/dd/dd}] {name} was {action} {rest}");
+        TemplateMatch match = template.newMatch();
+        String line = "[2012/01/31] Naomi was eating at a diner";
+
+        Assert.assertTrue(template.match(line, match));
+        Assert.assertEquals(match.getField(template.fieldIndex("log")), "2012/01/31");
+        Assert.assertEquals(match.getField(template.fieldIndex("name")), "Naomi");
+        Assert.assertEquals(match.getField(template.fieldIndex("action")), "eating");
+        Assert.assertEquals(match.getStart(template.fieldIndex("rest")), line.indexOf("at a diner"));
+        Assert.assertEquals(match.getEnd(template.fieldIndex("rest")), line.length());
+
+        Assert.assertFalse(template.match("[2012/01/31] Naomi is eating at a diner", match));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWordFollowedByText() {
+        log.debug("run test testWordFollowedByText");
+        new SentenceTemplate("{name}:{rest}");
+    }
+}
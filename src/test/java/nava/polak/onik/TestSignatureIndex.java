@@ -0,0 +1,66 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.IndexMode;
+import nava.polak.onik.model.ResultsPerType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests that the signature index finds the same matches as the pairwise comparison
+ */
+@Slf4j
+public class TestSignatureIndex {
+
+    @Test
+    public void testSameResultsAsPairwise() {
+        log.debug("run test testSameResultsAsPairwise");
+        List<String> sentences = TestData.randomSentences(7, 2000);
+        String inputFile = TestData.createInputFile("testSignatureSameResultsAsPairwise", sentences);
+
+        HashMap<String, ResultsPerType> expected = run(inputFile, IndexMode.PAIRWISE);
+        HashMap<String, ResultsPerType> actual = run(inputFile, IndexMode.SIGNATURE);
+
+        Assert.assertFalse(expected.isEmpty());
+        TestData.assertSameResults(actual, expected);
+    }
+
+    @Test
+    public void testShardedSameResultsAsPairwise() {
+        log.debug("run test testShardedSameResultsAsPairwise");
+        List<String> sentences = TestData.randomSentences(17, 5000);
+        String inputFile = TestData.createInputFile("testShardedSameResultsAsPairwise", sentences);
+
+        HashMap<String, ResultsPerType> expected = run(inputFile, IndexMode.PAIRWISE);
+        HashMap<String, ResultsPerType> actual = run(inputFile, IndexMode.SHARDED);
+
+        TestData.assertSameResults(actual, expected);
+    }
+
+    /**
+     * Identical sentences are not a match until a sentence with a different word arrives
+     */
+    @Test
+    public void testIdenticalSentencesWaitForDifferentWord() {
+        log.debug("run test testIdenticalSentencesWaitForDifferentWord");
+        String inputFile = TestData.createInputFile("testSignatureIdenticalSentences", new String[]{
+                "01-01-2012 19:45:00 Naomi is eating at a diner",
+                "01-01-2012 19:46:00 Naomi is eating at a diner",
+                "01-01-2012 19:47:00 Naomi is eating at the diner"});
+
+        HashMap<String, ResultsPerType> results = run(inputFile, IndexMode.SIGNATURE);
+
+        Assert.assertEquals(results.size(), 1);
+        Assert.assertEquals(results.get("REST:Naomi eating").size(), 3);
+    }
+
+    private HashMap<String, ResultsPerType> run(String inputFile, IndexMode indexMode) {
+        RunOptions options = new RunOptions();
+        options.setIndexMode(indexMode);
+        return new PatternSimilarity(inputFile, TestData.outputFile("testSignature"), options)
+                .findSentensesWithSingleDifference();
+    }
+}
@@ -0,0 +1,149 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.IndexMode;
+import nava.polak.onik.model.ResultsPerType;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests the similarity server by posting batches of lines and querying the groups
+ */
+@Slf4j
+public class TestSimilarityServer {
+
+    private SimilarityServer server;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        RunOptions options = new RunOptions();
+        options.setIndexMode(IndexMode.SIGNATURE);
+        options.setThreads(4);
+        server = new SimilarityServer(0, options);
+        server.start();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop();
+    }
+
+    @Test
+    public void testBatchesAndQueries() throws IOException {
+        log.debug("run test testBatchesAndQueries");
+        String response = request("POST", "/lines", "01-01-2012 19:45:00 Zed is cooking in a kitchen\n"
+                + "01-01-2012 19:45:01 Zed is cooking in the kitchen\r\n"
+                + "not a sentence\n");
+        Assert.assertTrue(response.startsWith("{\"lines\":3,\"malformed\":1,\"groups\":[{\"group\":"), response);
+        Assert.assertTrue(response.contains("\"type\":\"REST\",\"key\":\"REST:Zed cooking\",\"size\":2}"), response);
+
+        response = request("POST", "/lines", "01-01-2012 19:45:02 Yan is cooking in a kitchen");
+        Assert.assertTrue(response.contains("\"type\":\"NAME\",\"key\":\"NAME:cooking in a kitchen\",\"size\":2}"), response);
+        Assert.assertFalse(response.contains("REST:Zed cooking"), response);
+
+        response = request("GET", "/groups?name=Zed", null);
+        Assert.assertTrue(response.contains("\"key\":\"REST:Zed cooking\",\"sentences\":[\"01-01-2012 19:45:00 Zed is cooking in a kitchen\","
+                + "\"01-01-2012 19:45:01 Zed is cooking in the kitchen\"],\"words\":[\"in a kitchen\",\"in the kitchen\"]}"), response);
+        Assert.assertTrue(response.contains("\"key\":\"NAME:cooking in a kitchen\""), response);
+        Assert.assertEquals(request("GET", "/groups?name=Yan", null).split("\"group\"").length, 2);
+        Assert.assertEquals(request("GET", "/groups?name=Nobody", null), "[]");
+
+        //only the groups with at least 2 sentences in the time range
+        response = request("GET", "/groups?name=Zed&from=01-01-2012%2019:45:00&to=01-01-2012%2019:45:01", null);
+        Assert.assertTrue(response.contains("\"key\":\"REST:Zed cooking\""), response);
+        Assert.assertFalse(response.contains("\"key\":\"NAME:cooking in a kitchen\""), response);
+    }
+
+    @Test
+    public void testBadRequests() throws IOException {
+        log.debug("run test testBadRequests");
+        HttpURLConnection connection = connect("GET", "/groups?id=100000000");
+        Assert.assertEquals(connection.getResponseCode(), 400);
+        connection = connect("GET", "/groups?name=Zed&from=yesterday");
+        Assert.assertEquals(connection.getResponseCode(), 400);
+        connection = connect("GET", "/lines");
+        Assert.assertEquals(connection.getResponseCode(), 405);
+    }
+
+    @Test(dependsOnMethods = {"testBatchesAndQueries", "testBadRequests"})
+    public void testConcurrentProducers() throws Exception {
+        log.debug("run test testConcurrentProducers");
+        String stats = request("GET", "/stats", null);
+        List<String> all = new ArrayList<>();
+        List<String> batches = new ArrayList<>();
+        for (int producer = 0; producer < 8; producer++) {
+            List<String> sentences = TestData.randomSentences(73 + producer, 1000);
+            all.addAll(sentences);
+            batches.add(String.join("\n", sentences));
+        }
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        List<Future<String>> responses = new ArrayList<>();
+        for (String batch : batches)
+            responses.add(producers.submit(() -> request("POST", "/lines", batch)));
+        for (Future<String> response : responses)
+            Assert.assertTrue(response.get().startsWith("{\"lines\":1000,\"malformed\":0"));
+        producers.shutdown();
+
+        //a new server gets all the lines in one batch
+        String inputFile = TestData.createInputFile("testSimilarityServer", all);
+        RunOptions options = new RunOptions();
+        options.setIndexMode(IndexMode.SIGNATURE);
+        HashMap<String, ResultsPerType> expected = new PatternSimilarity(inputFile, TestData.outputFile("testSimilarityServer"), options)
+                .findSentensesWithSingleDifference();
+        int groupsBefore = count(stats, "groups");
+        stats = request("GET", "/stats", null);
+        Assert.assertEquals(count(stats, "lines"), 8004);
+        Assert.assertEquals(count(stats, "sentences"), 8003);
+        //the sentences of the first test have other actions than the random ones
+        Assert.assertEquals(count(stats, "groups") - groupsBefore, expected.size());
+    }
+
+    private int count(String json, String name) {
+        int start = json.indexOf("\"" + name + "\":") + name.length() + 3;
+        int end = start;
+        while (Character.isDigit(json.charAt(end)))
+            end++;
+        return Integer.parseInt(json.substring(start, end));
+    }
+
+    private HttpURLConnection connect(String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        return connection;
+    }
+
+    private String request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = connect(method, path);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        Assert.assertEquals(connection.getResponseCode(), 200);
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0)
+                response.write(buffer, 0, read);
+        }
+        return new String(response.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,109 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.IndexMode;
+import nava.polak.onik.model.ResultsPerType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests that a run continuing from a snapshot finds the same results as a run over all the input
+ */
+@Slf4j
+public class TestSnapshot {
+
+    @Test
+    public void testContinueGrownInput() throws IOException {
+        log.debug("run test testContinueGrownInput");
+        List<String> sentences = TestData.randomSentences(31, 4000);
+        String snapshot = newSnapshot("testSnapshotGrownInput");
+        String inputFile = TestData.createInputFile("testSnapshotGrownInput", sentences.subList(0, 2500));
+        run(inputFile, snapshot);
+
+        TestData.createInputFile("testSnapshotGrownInput", sentences);
+        RunOptions options = snapshotOptions(snapshot);
+        options.setMetrics(true);
+        PatternSimilarity patternSimilarity = new PatternSimilarity(inputFile, TestData.outputFile("testSnapshot"), options);
+        HashMap<String, ResultsPerType> actual = patternSimilarity.findSentensesWithSingleDifference();
+
+        //only the lines after the snapshot are read
+        Assert.assertEquals(patternSimilarity.getMetrics().getLines(), 1500);
+        TestData.assertSameResults(actual, run(inputFile, null));
+    }
+
+    @Test
+    public void testAddOtherInput() throws IOException {
+        log.debug("run test testAddOtherInput");
+        List<String> first = TestData.randomSentences(37, 1500);
+        List<String> second = TestData.randomSentences(41, 1500);
+        List<String> all = new ArrayList<>(first);
+        all.addAll(second);
+        String snapshot = newSnapshot("testSnapshotOtherInput");
+        run(TestData.createInputFile("testSnapshotFirstInput", first), snapshot);
+
+        HashMap<String, ResultsPerType> actual = run(TestData.createInputFile("testSnapshotSecondInput", second), snapshot);
+
+        TestData.assertSameResults(actual, run(TestData.createInputFile("testSnapshotAllInput", all), null));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testOtherTemplateFails() throws IOException {
+        log.debug("run test testOtherTemplateFails");
+        String snapshot = newSnapshot("testSnapshotOtherTemplate");
+        String inputFile = TestData.createInputFile("testSnapshotOtherTemplate", TestData.randomSentences(43, 100));
+        run(inputFile, snapshot);
+
+        RunOptions options = snapshotOptions(snapshot);
+        options.setTemplate("{log:dd-dd-dddd dd:dd:dd} {name} was {action} {rest}");
+        new PatternSimilarity(inputFile, TestData.outputFile("testSnapshot"), options).findSentensesWithSingleDifference();
+    }
+
+    @Test
+    public void testOverMemoryBudget() throws IOException {
+        log.debug("run test testOverMemoryBudget");
+        List<String> sentences = TestData.randomSentences(47, 1000);
+        String snapshot = newSnapshot("testSnapshotOverBudget");
+        String inputFile = TestData.createInputFile("testSnapshotOverBudget", sentences);
+        RunOptions options = snapshotOptions(snapshot);
+        //the snapshot keeps the index in memory instead of switching to external mode
+        options.setMemoryBudget(10);
+        HashMap<String, ResultsPerType> actual = new PatternSimilarity(inputFile, TestData.outputFile("testSnapshot"), options)
+                .findSentensesWithSingleDifference();
+
+        Assert.assertTrue(Files.exists(Paths.get(snapshot)));
+        TestData.assertSameResults(actual, run(inputFile, null));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testExternalModeFails() {
+        log.debug("run test testExternalModeFails");
+        String inputFile = TestData.createInputFile("testSnapshotExternal", TestData.randomSentences(53, 100));
+        RunOptions options = snapshotOptions(TestData.DIR_PATH + "/testSnapshotExternal.snapshot");
+        options.setIndexMode(IndexMode.EXTERNAL);
+        new PatternSimilarity(inputFile, TestData.outputFile("testSnapshot"), options).findSentensesWithSingleDifference();
+    }
+
+    private String newSnapshot(String name) throws IOException {
+        String snapshot = TestData.DIR_PATH + "/" + name + ".snapshot";
+        Files.deleteIfExists(Paths.get(snapshot));
+        return snapshot;
+    }
+
+    private RunOptions snapshotOptions(String snapshot) {
+        RunOptions options = new RunOptions();
+        options.setSnapshot(snapshot);
+        return options;
+    }
+
+    private HashMap<String, ResultsPerType> run(String inputFile, String snapshot) {
+        return new PatternSimilarity(inputFile, TestData.outputFile("testSnapshot"), snapshotOptions(snapshot))
+                .findSentensesWithSingleDifference();
+    }
+}
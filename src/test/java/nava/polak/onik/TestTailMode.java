@@ -0,0 +1,97 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.ReaderMode;
+import nava.polak.onik.stream.FileTailer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Tests that the tail mode writes the groups as they are found, and ignores sentences out of the window
+ */
+@Slf4j
+public class TestTailMode {
+
+    @Test
+    public void testGroupsWrittenWhenChanged() throws IOException {
+        log.debug("run test testGroupsWrittenWhenChanged");
+        String inputFile = TestData.createInputFile("testTailGroupsWrittenWhenChanged", new String[]{
+                "01-01-2012 19:45:00 Naomi is eating at a diner",
+                "01-01-2012 19:46:00 Naomi is eating at the diner"});
+        PatternSimilarity patternSimilarity = new PatternSimilarity(inputFile, TestData.outputFile("testTail"), tailOptions(3600));
+        StringWriter out = new StringWriter();
+
+        try (FileTailer tailer = new FileTailer(Paths.get(inputFile))) {
+            Assert.assertEquals(patternSimilarity.tailOnce(tailer, out), 2);
+            Assert.assertEquals(out.toString(), "01-01-2012 19:45:00 Naomi is eating at a diner\n"
+                    + "01-01-2012 19:46:00 Naomi is eating at the diner\n"
+                    + "The changing word was: at a diner , at the diner\n" + System.lineSeparator());
+
+            //the line is not complete yet
+            out.getBuffer().setLength(0);
+            append(inputFile, "01-01-2012 19:47:00 Naomi is eating at my");
+            Assert.assertEquals(patternSimilarity.tailOnce(tailer, out), 0);
+            Assert.assertEquals(out.toString(), "");
+
+            append(inputFile, " diner\n01-01-2012 19:48:00 George is eating at a diner\n");
+            Assert.assertEquals(patternSimilarity.tailOnce(tailer, out), 2);
+        }
+        String written = out.toString();
+        Assert.assertTrue(written.contains("The changing word was: at a diner , at the diner , at my diner\n"), written);
+        Assert.assertTrue(written.contains("The changing word was: Naomi , George\n"), written);
+    }
+
+    @Test
+    public void testSentencesOutOfWindowIgnored() throws IOException {
+        log.debug("run test testSentencesOutOfWindowIgnored");
+        String inputFile = TestData.createInputFile("testTailSentencesOutOfWindow", new String[]{
+                "01-01-2012 19:45:00 Naomi is eating at a diner",
+                "01-01-2012 19:50:00 Lea is making a dinner",
+                "01-01-2012 19:50:30 Naomi is eating at the diner",
+                "01-01-2012 19:51:00 Lea is making the dinner"});
+        PatternSimilarity patternSimilarity = new PatternSimilarity(inputFile, TestData.outputFile("testTail"), tailOptions(60));
+        StringWriter out = new StringWriter();
+
+        try (FileTailer tailer = new FileTailer(Paths.get(inputFile))) {
+            Assert.assertEquals(patternSimilarity.tailOnce(tailer, out), 4);
+        }
+        Assert.assertEquals(out.toString(), "01-01-2012 19:50:00 Lea is making a dinner\n"
+                + "01-01-2012 19:51:00 Lea is making the dinner\n"
+                + "The changing word was: a dinner , the dinner\n" + System.lineSeparator());
+    }
+
+    @Test
+    public void testStoresWithoutRemovalFail() {
+        log.debug("run test testStoresWithoutRemovalFail");
+        String[][] invalid = {{"--reader=tail", "--store=offsets"}, {"--window=60", "--store=offsets"},
+                {"--reader=tail", "--dedup=true"}, {"--dedup=true", "--window=60"}, {"--reader=tail", "--workers=2"}};
+        //the options are rejected when parsed, before the input is read
+        for (String[] args : invalid) {
+            try {
+                RunOptions.parse(args, 0);
+                Assert.fail("Options accepted: " + String.join(" ", args));
+            } catch (IllegalArgumentException e) {
+                log.debug("Options rejected: " + e.getMessage());
+            }
+        }
+        RunOptions.parse(new String[]{"--reader=tail", "--window=60", "--partition=hour"}, 0);
+    }
+
+    private RunOptions tailOptions(long windowSeconds) {
+        RunOptions options = new RunOptions();
+        options.setReaderMode(ReaderMode.TAIL);
+        options.setWindowSeconds(windowSeconds);
+        return options;
+    }
+
+    private void append(String file, String data) throws IOException {
+        Files.write(Paths.get(file), data.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,136 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.LogTime;
+import nava.polak.onik.model.PartitionedRecordStore;
+import nava.polak.onik.model.ReaderMode;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.ResultsPerType;
+import nava.polak.onik.model.TimePartition;
+import nava.polak.onik.model.TokenDictionary;
+import nava.polak.onik.stream.FileTailer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the time of the sentences and the sentences partitioned by their time
+ */
+@Slf4j
+public class TestTimePartitions {
+
+    @Test
+    public void testLogTime() {
+        log.debug("run test testLogTime");
+        DateTimeFormatter format = DateTimeFormatter.ofPattern(LogTime.DEFAULT_FORMAT);
+        Random random = new Random(7);
+        for (int i = 0; i < 1000; i++) {
+            long seconds = random.nextInt(Integer.MAX_VALUE) * 2L - Integer.MAX_VALUE;
+            String text = LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC).format(format);
+            Assert.assertEquals(LogTime.DEFAULT.toSeconds(text), seconds, text);
+            Assert.assertEquals(LogTime.DEFAULT.format(seconds), text);
+        }
+        Assert.assertEquals(LogTime.DEFAULT.toSeconds("29-02-2012 23:59:59"), 1330559999L);
+        Assert.assertEquals(LogTime.DEFAULT.toSeconds("29-02-2011 10:00:00"), LogTime.UNKNOWN);
+        Assert.assertEquals(LogTime.DEFAULT.toSeconds("01-13-2012 10:00:00"), LogTime.UNKNOWN);
+        Assert.assertEquals(LogTime.DEFAULT.toSeconds("01-01-2012 24:00:00"), LogTime.UNKNOWN);
+        Assert.assertEquals(LogTime.DEFAULT.toSeconds("1-01-2012 10:00:00"), LogTime.UNKNOWN);
+        Assert.assertEquals(new LogTime("yyyy/MM/dd HH:mm").toSeconds("2012/01/01 00:01"), 1325376060L);
+
+        //the text is kept only when it is not formatted back from the time
+        TokenDictionary dictionary = new TokenDictionary();
+        Record valid = new Record("01-01-2012 20:12:22", "Naomi", "eating", "at a diner", dictionary);
+        Assert.assertEquals(valid.getTime(), 1325448742L);
+        Assert.assertEquals(valid.getLog(), "01-01-2012 20:12:22");
+        Record invalid = new Record("99-99-2012 20:12:22", "Naomi", "eating", "at a diner", dictionary);
+        Assert.assertEquals(invalid.getTime(), LogTime.UNKNOWN);
+        Assert.assertEquals(invalid.getLog(), "99-99-2012 20:12:22");
+    }
+
+    @Test
+    public void testPartitionedStore() {
+        log.debug("run test testPartitionedStore");
+        TokenDictionary dictionary = new TokenDictionary();
+        PartitionedRecordStore store = new PartitionedRecordStore(TimePartition.HOUR);
+        store.add(new Record("not a time", "Naomi", "eating", "at a diner", dictionary));
+        store.add(new Record("01-01-2012 19:45:00", "Naomi", "eating", "at the diner", dictionary));
+        store.add(new Record("01-01-2012 20:10:00", "Lea", "making", "a dinner", dictionary));
+        //out of order, so it is in the partition of 20:00
+        store.add(new Record("01-01-2012 19:59:00", "Lea", "making", "the dinner", dictionary));
+        store.add(new Record("01-01-2012 21:00:00", "Lea", "making", "my dinner", dictionary));
+
+        List<PartitionedRecordStore.Partition> partitions = store.getPartitions();
+        Assert.assertEquals(partitions.size(), 3);
+        Assert.assertEquals(partitions.get(0).getFirstIndex(), 0);
+        Assert.assertEquals(partitions.get(0).getEndIndex(), 2);
+        Assert.assertEquals(partitions.get(1).getStart(), LogTime.DEFAULT.toSeconds("01-01-2012 20:00:00"));
+        Assert.assertEquals(partitions.get(1).getMinTime(), LogTime.DEFAULT.toSeconds("01-01-2012 19:59:00"));
+        Assert.assertEquals(store.get(3).getRestStr(), "the dinner");
+        Assert.assertEquals(store.size(), 5);
+
+        List<PartitionedRecordStore.Partition> inRange = store.getPartitions(
+                LogTime.DEFAULT.toSeconds("01-01-2012 19:58:00"), LogTime.DEFAULT.toSeconds("01-01-2012 19:59:00"));
+        Assert.assertEquals(inRange.size(), 1);
+        Assert.assertEquals(inRange.get(0).getFirstIndex(), 2);
+
+        //only whole partitions are removed
+        store.removeBefore(3);
+        Assert.assertEquals(store.getFirstIndex(), 2);
+        Assert.assertEquals(store.getLiveCount(), 3);
+        Assert.assertEquals(store.get(2).getName(), "Lea");
+        Assert.expectThrows(IndexOutOfBoundsException.class, () -> store.get(1));
+        store.removeBefore(5);
+        Assert.assertEquals(store.getLiveCount(), 0);
+        store.add(new Record("01-01-2012 21:30:00", "Lea", "making", "a dinner", dictionary));
+        Assert.assertEquals(store.get(5).getRestStr(), "a dinner");
+    }
+
+    @Test
+    public void testSameResultsWhenPartitioned() {
+        log.debug("run test testSameResultsWhenPartitioned");
+        String inputFile = TestData.createInputFile("testTimePartitions", TestData.randomSentences(31, 3000));
+        HashMap<String, ResultsPerType> expected = new PatternSimilarity(inputFile, TestData.outputFile("testTimePartitions"))
+                .findSentensesWithSingleDifference();
+        RunOptions options = new RunOptions();
+        options.setTimePartition(TimePartition.DAY);
+        HashMap<String, ResultsPerType> partitioned = new PatternSimilarity(inputFile, TestData.outputFile("testTimePartitions"), options)
+                .findSentensesWithSingleDifference();
+        TestData.assertSameResults(partitioned, expected);
+    }
+
+    @Test
+    public void testTailDropsPartitions() throws IOException {
+        log.debug("run test testTailDropsPartitions");
+        String inputFile = TestData.createInputFile("testTailDropsPartitions", new String[]{
+                "01-01-2012 19:45:00 Naomi is eating at a diner",
+                "01-01-2012 20:50:00 Lea is making a dinner",
+                "01-01-2012 21:50:30 Naomi is eating at the diner",
+                "01-01-2012 21:51:00 Lea is making the dinner",
+                "01-01-2012 21:52:00 Lea is making my dinner"});
+        RunOptions options = new RunOptions();
+        options.setReaderMode(ReaderMode.TAIL);
+        options.setWindowSeconds(3600);
+        options.setTimePartition(TimePartition.HOUR);
+        PatternSimilarity patternSimilarity = new PatternSimilarity(inputFile, TestData.outputFile("testTailDropsPartitions"), options);
+        StringWriter out = new StringWriter();
+
+        try (FileTailer tailer = new FileTailer(Paths.get(inputFile))) {
+            Assert.assertEquals(patternSimilarity.tailOnce(tailer, out), 5);
+        }
+        //the sentences of 19:00 and 20:00 are out of the window and their partitions are dropped
+        Assert.assertEquals(out.toString(), "01-01-2012 21:51:00 Lea is making the dinner\n"
+                + "01-01-2012 21:52:00 Lea is making my dinner\n"
+                + "The changing word was: the dinner , my dinner\n" + System.lineSeparator());
+        Assert.assertEquals(patternSimilarity.getSentenceCount(), 5);
+        Assert.expectThrows(IndexOutOfBoundsException.class, () -> patternSimilarity.getSentence(1));
+    }
+}
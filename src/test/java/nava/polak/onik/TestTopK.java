@@ -0,0 +1,108 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.index.TopKGroups;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.ResultsPerType;
+import nava.polak.onik.model.TokenDictionary;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Tests that the top-K mode finds the largest groups of each type by counting the sentences in a fixed memory
+ */
+@Slf4j
+public class TestTopK {
+
+    @Test
+    public void testLargestGroupsAmongManyKeys() {
+        log.debug("run test testLargestGroupsAmongManyKeys");
+        TokenDictionary dictionary = new TokenDictionary();
+        TopKGroups topK = new TopKGroups(2);
+        Random random = new Random(7);
+        //2 large groups, and many small keys which are more than the monitored keys
+        for (int i = 0; i < 20000; i++) {
+            String time = "01-01-2012 19:45:00";
+            if (i % 10 == 0)
+                topK.add(new Record(time, "Naomi", "eating", i % 20 == 0 ? "at a diner" : "at the diner", dictionary));
+            else if (i % 20 == 5)
+                topK.add(new Record(time, "Lea", "making", i % 3 == 0 ? "a cake" : "a pie", dictionary));
+            else
+                topK.add(new Record(time, "name" + random.nextInt(5000), "doing", "word" + random.nextInt(5000), dictionary));
+        }
+
+        List<TopKGroups.TopGroup> groups = topK.getTopGroups(PatternType.REST);
+        Assert.assertEquals(groups.size(), 2);
+        long[] exactSizes = {2000, 1000};
+        for (int i = 0; i < groups.size(); i++) {
+            //the sentences before the key was monitored are not counted, and are at most the error
+            TopKGroups.TopGroup group = groups.get(i);
+            Assert.assertTrue(group.getSize() <= exactSizes[i]);
+            Assert.assertTrue(group.getSize() + group.getError() >= exactSizes[i]);
+            Assert.assertEquals(group.getSentences().size(), 2);
+            Assert.assertEquals(group.getCounts().stream().mapToLong(Long::longValue).sum(), group.getSize());
+        }
+        Assert.assertEquals(groups.get(0).getSentences().get(0).getName(), "Naomi");
+        Assert.assertEquals(groups.get(1).getSentences().get(0).getName(), "Lea");
+    }
+
+    @Test
+    public void testRestsWithoutSingleWordDifference() {
+        log.debug("run test testRestsWithoutSingleWordDifference");
+        TokenDictionary dictionary = new TokenDictionary();
+        TopKGroups topK = new TopKGroups(5);
+        String time = "01-01-2012 19:45:00";
+        topK.add(new Record(time, "Naomi", "eating", "at a diner", dictionary));
+        topK.add(new Record(time, "Naomi", "eating", "at a diner", dictionary));
+        topK.add(new Record(time, "Naomi", "eating", "in the car", dictionary));
+        topK.add(new Record(time, "Naomi", "eating", "at the diner", dictionary));
+        topK.add(new Record(time, "Ido", "getting", "into the car", dictionary));
+
+        List<TopKGroups.TopGroup> rests = topK.getTopGroups(PatternType.REST);
+        Assert.assertEquals(rests.size(), 1);
+        //the identical sentences are in the group, the rest with 2 words different is not
+        Assert.assertEquals(rests.get(0).getSize(), 3);
+        Assert.assertEquals(rests.get(0).getSentences().stream().map(Record::getRestStr).collect(Collectors.toList()),
+                Arrays.asList("at a diner", "at the diner"));
+        Assert.assertEquals(rests.get(0).getCounts(), Arrays.asList(2L, 1L));
+        //a single name of a key is not a group
+        Assert.assertTrue(topK.getTopGroups(PatternType.NAME).isEmpty());
+    }
+
+    @Test
+    public void testSameSizesAsExactGroups() {
+        log.debug("run test testSameSizesAsExactGroups");
+        String inputFile = TestData.createInputFile("testTopK", TestData.randomSentences(11, 500));
+        PatternSimilarity exact = new PatternSimilarity(inputFile, TestData.outputFile("testTopKExact"));
+        HashMap<String, ResultsPerType> expected = exact.findSentensesWithSingleDifference();
+
+        //all the keys of the input are monitored, so the top groups are exact
+        RunOptions options = new RunOptions();
+        options.setTopK(50);
+        PatternSimilarity top = new PatternSimilarity(inputFile, TestData.outputFile("testTopK"), options);
+        top.findSentensesWithSingleDifference();
+        top.printResults();
+        for (PatternType type : PatternType.values()) {
+            List<Long> expectedSizes = expected.values().stream()
+                    .filter(results -> results.getType() == type)
+                    .map(results -> (long) results.size())
+                    .sorted(Comparator.reverseOrder())
+                    .limit(50)
+                    .collect(Collectors.toList());
+            List<Long> sizes = new ArrayList<>();
+            for (TopKGroups.TopGroup group : top.getTopGroups())
+                if (group.getKey().getType() == type)
+                    sizes.add(group.getSize());
+            Assert.assertEquals(sizes, expectedSizes, type.toString());
+        }
+    }
+}
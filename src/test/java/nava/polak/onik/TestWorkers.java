@@ -0,0 +1,128 @@
+package nava.polak.onik;
+
+import lombok.extern.slf4j.Slf4j;
+import nava.polak.onik.model.IndexMode;
+import nava.polak.onik.model.PatternType;
+import nava.polak.onik.model.Record;
+import nava.polak.onik.model.ResultsPerType;
+import nava.polak.onik.model.TokenDictionary;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests that the groups found by the worker JVMs, each on a partition of the input, are the same as in a single run
+ */
+@Slf4j
+public class TestWorkers {
+
+    @Test
+    public void testWorkerOfKey() {
+        log.debug("run test testWorkerOfKey");
+        TokenDictionary dictionary = new TokenDictionary();
+        Record first = new Record("01-01-2012 19:45:00", "Naomi", "eating", "at a diner", dictionary);
+        Record second = new Record("01-01-2012 19:46:00", "Naomi", "eating", "at the diner", new TokenDictionary());
+        //the sentences of a group have the same worker, whatever their dictionary
+        Assert.assertEquals(Coordinator.workerOf(first, PatternType.REST, 7), Coordinator.workerOf(second, PatternType.REST, 7));
+        for (PatternType type : PatternType.values()) {
+            int worker = Coordinator.workerOf(first, type, 3);
+            Assert.assertTrue(worker >= 0 && worker < 3);
+        }
+    }
+
+    @Test
+    public void testSameResultsAsSingleRun() throws IOException {
+        log.debug("run test testSameResultsAsSingleRun");
+        List<String> sentences = TestData.randomSentences(29, 2000);
+        sentences.add(10, "not a sentence");
+        String inputFile = TestData.createInputFile("testWorkers", sentences);
+        for (IndexMode indexMode : new IndexMode[]{IndexMode.PAIRWISE, IndexMode.SIGNATURE}) {
+            RunOptions options = new RunOptions();
+            options.setIndexMode(indexMode);
+            PatternSimilarity single = new PatternSimilarity(inputFile, TestData.outputFile("testWorkersSingle"), options);
+            HashMap<String, ResultsPerType> expected = single.findSentensesWithSingleDifference();
+            single.printResults();
+
+            options.setWorkers(3);
+            PatternSimilarity workers = new PatternSimilarity(inputFile, TestData.outputFile("testWorkers"), options);
+            HashMap<String, ResultsPerType> results = workers.findSentensesWithSingleDifference();
+            workers.printResults();
+            TestData.assertSameResults(results, expected);
+            //the groups are merged in another order, so they may be written in another order
+            List<String> lines = Files.readAllLines(Paths.get(TestData.outputFile("testWorkers")));
+            List<String> expectedLines = Files.readAllLines(Paths.get(TestData.outputFile("testWorkersSingle")));
+            Collections.sort(lines);
+            Collections.sort(expectedLines);
+            Assert.assertEquals(lines, expectedLines, indexMode.toString());
+        }
+    }
+
+    @Test
+    public void testKeysOfDifferentTypes() throws IOException {
+        log.debug("run test testKeysOfDifferentTypes");
+        //groups of different types with the same identical words, and words joined by "_"
+        List<String> sentences = TestData.randomSentences(37, 500);
+        sentences.addAll(Arrays.asList("01-01-2012 19:45:00 cook is baking bread",
+                "01-01-2012 19:46:00 cook is making bread",
+                "01-01-2012 19:47:00 Naomi is cook bread",
+                "01-01-2012 19:48:00 Lea is cook bread",
+                "01-01-2012 19:49:00 x is y_z a",
+                "01-01-2012 19:50:00 x is y_z b",
+                "01-01-2012 19:51:00 x_y is c z",
+                "01-01-2012 19:52:00 x_y is d z"));
+        String inputFile = TestData.createInputFile("testWorkersKeys", sentences);
+        RunOptions options = new RunOptions();
+        new PatternSimilarity(inputFile, TestData.outputFile("testWorkersKeysSingle"), options).findSentencesSingleDifferenceAndPrint();
+
+        for (int workers = 1; workers <= 4; workers++) {
+            options.setWorkers(workers);
+            new PatternSimilarity(inputFile, TestData.outputFile("testWorkersKeys"), options).findSentencesSingleDifferenceAndPrint();
+            List<String> lines = Files.readAllLines(Paths.get(TestData.outputFile("testWorkersKeys")));
+            List<String> expectedLines = Files.readAllLines(Paths.get(TestData.outputFile("testWorkersKeysSingle")));
+            Collections.sort(lines);
+            Collections.sort(expectedLines);
+            Assert.assertEquals(lines, expectedLines, workers + " workers");
+        }
+    }
+
+    @Test
+    public void testTrimmedLines() throws IOException {
+        log.debug("run test testTrimmedLines");
+        //white space around the lines, which the template parser trims
+        String input = "01-01-2012 20:12:22 Naomi is eating at a diner \t\r\n"
+                + "  01-01-2012 20:13:22 Lea is eating at a diner\r\n"
+                + "\t01-01-2012 20:14:22 Lea is eating at a cafe  \n";
+        String inputFile = TestData.DIR_PATH + "/testWorkersTrimmed.txt";
+        Files.write(Paths.get(inputFile), input.getBytes(StandardCharsets.UTF_8));
+        RunOptions options = new RunOptions();
+        new PatternSimilarity(inputFile, TestData.outputFile("testWorkersTrimmedSingle"), options).findSentencesSingleDifferenceAndPrint();
+
+        options.setWorkers(2);
+        new PatternSimilarity(inputFile, TestData.outputFile("testWorkersTrimmed"), options).findSentencesSingleDifferenceAndPrint();
+        List<String> lines = Files.readAllLines(Paths.get(TestData.outputFile("testWorkersTrimmed")));
+        List<String> expectedLines = Files.readAllLines(Paths.get(TestData.outputFile("testWorkersTrimmedSingle")));
+        Collections.sort(lines);
+        Collections.sort(expectedLines);
+        Assert.assertTrue(lines.contains("01-01-2012 20:12:22 Naomi is eating at a diner"), lines.toString());
+        Assert.assertEquals(lines, expectedLines);
+    }
+
+    @Test(expectedExceptions = RuntimeException.class, expectedExceptionsMessageRegExp = ".*Worker 0 failed.*")
+    public void testWorkerFailure() {
+        log.debug("run test testWorkerFailure");
+        String inputFile = TestData.createInputFile("testWorkersFailure", TestData.randomSentences(31, 100));
+        RunOptions options = new RunOptions();
+        options.setWorkers(1);
+        //the worker JVM does not start
+        options.setWorkerHeap("not a size");
+        new PatternSimilarity(inputFile, TestData.outputFile("testWorkersFailure"), options).findSentensesWithSingleDifference();
+    }
+}